@@ -0,0 +1,24 @@
+package com.example.speechapp;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free holder for the latest microphone level (0..1). Writers overwrite it as often
+ * as the recognizer reports, readers sample it once per frame; intermediate values are
+ * simply dropped.
+ */
+public class AmplitudeSlot {
+    private final AtomicInteger bits = new AtomicInteger(Float.floatToRawIntBits(0f));
+
+    public void set(float amplitude) {
+        bits.lazySet(Float.floatToRawIntBits(amplitude));
+    }
+
+    public float get() {
+        return Float.intBitsToFloat(bits.get());
+    }
+
+    public void reset() {
+        set(0f);
+    }
+}
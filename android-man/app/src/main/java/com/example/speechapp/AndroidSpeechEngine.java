@@ -0,0 +1,104 @@
+package com.example.speechapp;
+
+import android.content.Context;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * SpeechEngine backed by the platform TextToSpeech. Utterances queued before the engine
+ * finishes initializing are held and played once it is ready.
+ */
+public class AndroidSpeechEngine implements SpeechEngine, TextToSpeech.OnInitListener {
+    private static final String TAG = "AndroidSpeechEngine";
+
+    private final TextToSpeech tts;
+    private final List<String[]> pendingUtterances = new ArrayList<>();
+    private Listener listener;
+    private Locale locale = Locale.US;
+    private boolean ready = false;
+
+    public AndroidSpeechEngine(Context context) {
+        this.tts = new TextToSpeech(context.getApplicationContext(), this);
+    }
+
+    @Override
+    public void onInit(int status) {
+        synchronized (this) {
+            ready = status == TextToSpeech.SUCCESS;
+            if (!ready) {
+                Log.e(TAG, "TextToSpeech init failed: " + status);
+                pendingUtterances.clear();
+                return;
+            }
+            applyLanguage();
+            tts.setOnUtteranceProgressListener(new UtteranceProgressListener() {
+                @Override
+                public void onStart(String utteranceId) {
+                    if (listener != null) listener.onUtteranceStart(utteranceId);
+                }
+
+                @Override
+                public void onDone(String utteranceId) {
+                    if (listener != null) listener.onUtteranceDone(utteranceId);
+                }
+
+                @Override
+                public void onError(String utteranceId) {
+                    Log.e(TAG, "TextToSpeech error for " + utteranceId);
+                    if (listener != null) listener.onUtteranceDone(utteranceId);
+                }
+            });
+            for (String[] utterance : pendingUtterances) {
+                tts.speak(utterance[1], TextToSpeech.QUEUE_ADD, null, utterance[0]);
+            }
+            pendingUtterances.clear();
+        }
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public synchronized void setLanguage(Locale locale) {
+        this.locale = locale;
+        if (ready) {
+            applyLanguage();
+        }
+    }
+
+    @Override
+    public synchronized void enqueue(String utteranceId, String text) {
+        if (ready) {
+            tts.speak(text, TextToSpeech.QUEUE_ADD, null, utteranceId);
+        } else {
+            pendingUtterances.add(new String[]{utteranceId, text});
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        pendingUtterances.clear();
+        if (ready) {
+            tts.stop();
+        }
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        pendingUtterances.clear();
+        tts.shutdown();
+    }
+
+    private void applyLanguage() {
+        int result = tts.setLanguage(locale);
+        if (result == TextToSpeech.LANG_MISSING_DATA || result == TextToSpeech.LANG_NOT_SUPPORTED) {
+            Log.w(TAG, "Voice for " + locale + " unavailable, using default");
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.speechapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.preference.PreferenceManager;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Application-scoped services shared by every screen, so Settings changes reach the same
+ * GeminiAPI the chat is using. Heavy objects are built on a background thread from
+ * Application.onCreate and handed to callers on the main thread once ready; nothing waits
+ * for them there.
+ */
+public class AppServices {
+    private static final String TAG = "AppServices";
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    // Default priority: the first screen is waiting for what it builds
+    private final ExecutorService initExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "AppServicesInit"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Executor mainExecutor = mainHandler::post;
+    private CompletableFuture<GeminiAPI> geminiAPI;
+    private LocalStandInServer standInServer;
+    private Outbox outbox;
+    // Outlives chat screens, so rotating does not reparse every reply
+    private final MarkdownRenderer markdownRenderer = new MarkdownRenderer();
+    // Created here because AppServices is built on the main thread
+    private final FrameDispatcher frameDispatcher = new FrameDispatcher();
+    private final MemoryBudget memoryBudget = new MemoryBudget();
+
+    // Held in a field: SharedPreferences only keeps weak references to its listeners
+    private final SharedPreferences.OnSharedPreferenceChangeListener preferenceListener = (sharedPreferences, key) -> {
+        if (key == null) return;
+        switch (key) {
+            case "gemini_api_key":
+            case "language":
+            case "quiz_mode":
+                whenGeminiAPIReady(api -> applyPreference(api, sharedPreferences, key));
+                break;
+            case "memory_soft_cap_mb":
+                applySoftCap(sharedPreferences);
+                break;
+            case "llm_backend":
+            case "api_base_url":
+            case "openai_base_url":
+            case "openai_model":
+            case "openai_api_key":
+                // On the init thread, in order: the stand-in server binds a socket when first used
+                whenGeminiAPIReady(api -> initExecutor.execute(() -> applyBackend(api, sharedPreferences)));
+                break;
+            default:
+                break;
+        }
+    };
+
+    AppServices(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = PreferenceManager.getDefaultSharedPreferences(this.context);
+        prefs.registerOnSharedPreferenceChangeListener(preferenceListener);
+        memoryBudget.register("Markdown cache", MemoryBudget.Priority.CACHE, markdownRenderer);
+        applySoftCap(prefs);
+    }
+
+    // A failed build is started over by the next caller
+    synchronized void prewarm() {
+        if (geminiAPI != null && !geminiAPI.isCompletedExceptionally()) return;
+        geminiAPI = CompletableFuture.supplyAsync(() -> {
+            long startedAt = SystemClock.elapsedRealtime();
+            GeminiAPI api = new GeminiAPI(context, frameDispatcher);
+            applyBackend(api, prefs);
+            memoryBudget.register("Conversation history", MemoryBudget.Priority.HISTORY, api.historyTrimmable());
+            Log.d(TAG, "GeminiAPI ready in " + (SystemClock.elapsedRealtime() - startedAt) + " ms");
+            return api;
+        }, initExecutor);
+        geminiAPI.exceptionally(e -> {
+            Log.e(TAG, "Could not create GeminiAPI", e);
+            return null;
+        });
+    }
+
+    /**
+     * Hands the shared GeminiAPI to the consumer on the main thread: right away when it is
+     * already built and the caller is on the main thread, otherwise once it is. If it could
+     * not be built, nothing is delivered; it is only logged.
+     */
+    public void whenGeminiAPIReady(Consumer<GeminiAPI> consumer) {
+        whenGeminiAPIReady(consumer, error -> {});
+    }
+
+    /** As above, but a failed build is passed to onFailure, also on the main thread. */
+    public void whenGeminiAPIReady(Consumer<GeminiAPI> consumer, Consumer<Throwable> onFailure) {
+        CompletableFuture<GeminiAPI> future;
+        synchronized (this) {
+            prewarm();
+            future = geminiAPI;
+        }
+        if (future.isDone() && !future.isCompletedExceptionally()
+                && Looper.myLooper() == Looper.getMainLooper()) {
+            consumer.accept(future.join());
+            return;
+        }
+        long startedAt = SystemClock.elapsedRealtime();
+        future.whenCompleteAsync((api, error) -> {
+            if (error != null) {
+                // Unwrapped from the CompletionException supplyAsync adds
+                onFailure.accept(error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+            Log.d(TAG, "GeminiAPI delivered after " + (SystemClock.elapsedRealtime() - startedAt) + " ms");
+            consumer.accept(api);
+        }, mainExecutor);
+    }
+
+    // Outlives chat screens, so a rotation neither resends turns in flight nor loses their replies
+    public Outbox getOutbox() {
+        if (outbox == null) {
+            outbox = new Outbox(context);
+        }
+        return outbox;
+    }
+
+    public FrameDispatcher getFrameDispatcher() {
+        return frameDispatcher;
+    }
+
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public MarkdownRenderer getMarkdownRenderer() {
+        return markdownRenderer;
+    }
+
+    private void applySoftCap(SharedPreferences prefs) {
+        try {
+            memoryBudget.setSoftCap(Long.parseLong(prefs.getString("memory_soft_cap_mb", "8")) * 1024 * 1024);
+        } catch (NumberFormatException e) {
+            memoryBudget.setSoftCap(MemoryBudget.DEFAULT_SOFT_CAP_BYTES);
+        }
+    }
+
+    private void applyBackend(GeminiAPI api, SharedPreferences prefs) {
+        switch (prefs.getString("llm_backend", "gemini")) {
+            case "openai":
+                api.setBackend(new OpenAiCompatibleBackend(prefs.getString("openai_base_url", ""),
+                        prefs.getString("openai_model", ""), prefs.getString("openai_api_key", "")));
+                break;
+            case "standin":
+                LocalStandInServer server = getStandInServer();
+                if (server != null) {
+                    api.setBackend(new GeminiRestBackend("Local stand-in", server.getGeminiBaseUrl(), () -> "standin"));
+                    break;
+                }
+                // Could not bind a port, stay on Gemini
+            default:
+                api.setBackend(new GeminiRestBackend("Gemini", prefs.getString("api_base_url", ""), api::getApiKey));
+                break;
+        }
+    }
+
+    // Started on first use and kept for the life of the process. Binds a socket, so only
+    // called on the init thread.
+    private synchronized LocalStandInServer getStandInServer() {
+        if (standInServer == null) {
+            try {
+                standInServer = new LocalStandInServer();
+                standInServer.setLogger((message, error) -> Log.w(TAG, "Stand-in server: " + message, error));
+                standInServer.start();
+                Log.d(TAG, "Stand-in server on port " + standInServer.getPort());
+            } catch (IOException e) {
+                Log.e(TAG, "Could not start stand-in server", e);
+            }
+        }
+        return standInServer;
+    }
+
+    private static void applyPreference(GeminiAPI api, SharedPreferences prefs, String key) {
+        switch (key) {
+            case "gemini_api_key":
+                String apiKey = prefs.getString(key, "");
+                if (!apiKey.isEmpty()) {
+                    api.setApiKey(apiKey);
+                }
+                break;
+            case "language":
+                api.setLanguage(prefs.getString(key, "english"));
+                break;
+            case "quiz_mode":
+                api.setQuizMode(prefs.getBoolean(key, false));
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.speechapp;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.media.audiofx.AcousticEchoCanceler;
+import android.os.Handler;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.util.Log;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Low-cost microphone stage that runs while VoiceManager waits for speech. It reads 20 ms
+ * PCM frames into preallocated buffers, keeps the last ~500 ms in a ring buffer and runs the
+ * VAD; speech start/end are posted to the listener on the given handler. Once speech starts
+ * the pre-roll followed by live audio can be streamed into a PcmSink, e.g. a pipe for the
+ * recognizer or an encoder for audio turns.
+ */
+public class AudioCaptureStage {
+    private static final String TAG = "AudioCaptureStage";
+    public static final int SAMPLE_RATE = 16000;
+    public static final int FRAME_SAMPLES = SAMPLE_RATE / 50; // 20 ms
+    public static final int PRE_ROLL_MILLIS = 500;
+
+    public interface Listener {
+        void onSpeechStart();
+        void onSpeechEnd();
+    }
+
+    // Called on the capture thread, or on the caller's thread once capture has stopped
+    public interface PcmSink {
+        void write(short[] samples, int count) throws IOException;
+        void close() throws IOException;
+    }
+
+    private final Handler handler;
+    private final AmplitudeSlot amplitude;
+    private final VoiceActivityDetector vad = new VoiceActivityDetector();
+    private final PcmRingBuffer preRoll = new PcmRingBuffer(SAMPLE_RATE * PRE_ROLL_MILLIS / 1000);
+    private final short[] frame = new short[FRAME_SAMPLES];
+    private final short[] preRollCopy = new short[preRoll.capacity()];
+    private final Runnable notifySpeechStart;
+    private final Runnable notifySpeechEnd;
+
+    private volatile boolean running = false;
+    private volatile PcmSink pendingSink;
+    private volatile boolean stopStreamingRequested = false;
+    private Thread thread;
+    private AcousticEchoCanceler echoCanceler;
+
+    public AudioCaptureStage(Handler handler, AmplitudeSlot amplitude, Listener listener) {
+        this.handler = handler;
+        this.amplitude = amplitude;
+        this.notifySpeechStart = listener::onSpeechStart;
+        this.notifySpeechEnd = listener::onSpeechEnd;
+    }
+
+    /** Opens the microphone and starts detecting. Returns false if the mic is unavailable. */
+    public synchronized boolean start() {
+        if (running) return true;
+        AudioRecord record;
+        try {
+            int minBuffer = AudioRecord.getMinBufferSize(SAMPLE_RATE, AudioFormat.CHANNEL_IN_MONO,
+                    AudioFormat.ENCODING_PCM_16BIT);
+            record = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION, SAMPLE_RATE,
+                    AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT,
+                    Math.max(minBuffer, FRAME_SAMPLES * 2 * 4));
+            if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+                record.release();
+                return false;
+            }
+            // Keep our own spoken replies from triggering the VAD (barge-in on ourselves)
+            if (AcousticEchoCanceler.isAvailable()) {
+                echoCanceler = AcousticEchoCanceler.create(record.getAudioSessionId());
+                if (echoCanceler != null) {
+                    echoCanceler.setEnabled(true);
+                }
+            }
+            record.startRecording();
+        } catch (SecurityException | IllegalStateException | IllegalArgumentException e) {
+            Log.e(TAG, "Could not open microphone", e);
+            return false;
+        }
+
+        vad.reset();
+        preRoll.clear();
+        running = true;
+        thread = new Thread(() -> captureLoop(record), "AudioCapture");
+        thread.start();
+        return true;
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        if (echoCanceler != null) {
+            echoCanceler.release();
+            echoCanceler = null;
+        }
+        stopStreaming();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Streams the buffered pre-roll and then live frames into the sink until stopStreaming. */
+    public void streamTo(PcmSink sink) {
+        stopStreamingRequested = false;
+        pendingSink = sink;
+    }
+
+    /** Sink writing 16-bit little-endian PCM into the write side of a pipe. */
+    public static PcmSink pipeSink(ParcelFileDescriptor writeSide) {
+        return new PipeSink(new ParcelFileDescriptor.AutoCloseOutputStream(writeSide));
+    }
+
+    public void stopStreaming() {
+        stopStreamingRequested = true;
+        if (!running) {
+            closeQuietly(pendingSink);
+            pendingSink = null;
+        }
+    }
+
+    private void captureLoop(AudioRecord record) {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        PcmSink sink = null;
+        try {
+            while (running) {
+                int read = record.read(frame, 0, FRAME_SAMPLES);
+                if (read <= 0) continue;
+                preRoll.write(frame, 0, read);
+
+                PcmSink next = pendingSink;
+                if (sink == null && next != null) {
+                    if (stopStreamingRequested) {
+                        closeQuietly(next);
+                    } else {
+                        sink = write(next, preRollCopy, preRoll.read(preRollCopy));
+                    }
+                } else if (sink != null) {
+                    sink = stopStreamingRequested ? closeQuietly(sink) : write(sink, frame, read);
+                }
+
+                int event = vad.process(frame, 0, read);
+                // Map roughly -60..0 dBFS onto the 0..1 range the mic button expects
+                amplitude.set(Math.min(1f, Math.max(0f, (vad.getLastEnergyDb() + 60f) / 60f)));
+                if (event == VoiceActivityDetector.EVENT_SPEECH_START) {
+                    handler.post(notifySpeechStart);
+                } else if (event == VoiceActivityDetector.EVENT_SPEECH_END) {
+                    handler.post(notifySpeechEnd);
+                }
+            }
+        } finally {
+            closeQuietly(sink);
+            closeQuietly(pendingSink);
+            record.stop();
+            record.release();
+        }
+    }
+
+    private PcmSink write(PcmSink sink, short[] samples, int count) {
+        try {
+            sink.write(samples, count);
+            return sink;
+        } catch (IOException e) {
+            // Consumer closed its end
+            Log.d(TAG, "Audio sink closed", e);
+            return closeQuietly(sink);
+        }
+    }
+
+    private PcmSink closeQuietly(PcmSink sink) {
+        if (sink != null) {
+            try {
+                sink.close();
+            } catch (IOException ignored) {
+            }
+            if (pendingSink == sink) {
+                pendingSink = null;
+            }
+        }
+        return null;
+    }
+
+    private static class PipeSink implements PcmSink {
+        private final OutputStream out;
+        private final byte[] bytes = new byte[SAMPLE_RATE * PRE_ROLL_MILLIS / 1000 * 2];
+
+        PipeSink(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(short[] samples, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                bytes[2 * i] = (byte) samples[i];
+                bytes[2 * i + 1] = (byte) (samples[i] >> 8);
+            }
+            out.write(bytes, 0, count * 2);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.speechapp;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.os.Handler;
+import android.os.Process;
+import android.util.Log;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * PcmSink that encodes one utterance to AAC (ADTS framing, ~24 kbit/s) while it is being
+ * captured, so only the last few frames are left to encode when speech ends. Falls back to
+ * a WAV container when no AAC encoder is available. The result is posted to the listener
+ * on the given handler when the sink is closed.
+ *
+ * The codec runs on the encoder's own thread: write and close only copy the samples into
+ * pooled frames and queue them, so the capture thread never waits on MediaCodec.
+ */
+public class AudioTurnEncoder implements AudioCaptureStage.PcmSink {
+    private static final String TAG = "AudioTurnEncoder";
+    public static final String MIME_AAC = "audio/aac";
+    public static final String MIME_WAV = "audio/wav";
+    private static final int BIT_RATE = 24000;
+    private static final int ADTS_SAMPLE_RATE_INDEX_16000 = 8;
+    private static final long DEQUEUE_TIMEOUT_US = 10000;
+    private static final int MAX_END_OF_STREAM_WAITS = 100;
+    private static final int POOLED_FRAMES = 50; // 1 s, enough for the pre-roll and some lag
+
+    private static final class Frame {
+        final short[] samples = new short[AudioCaptureStage.FRAME_SAMPLES];
+        int count;
+    }
+
+    private static final Frame END_OF_STREAM = new Frame();
+
+    public interface Listener {
+        void onEncoded(byte[] audio, String mimeType, int durationMillis);
+    }
+
+    private final Handler handler;
+    private final Listener listener;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    private final byte[] adtsHeader = new byte[7];
+    private final ArrayBlockingQueue<Frame> freeFrames = new ArrayBlockingQueue<>(POOLED_FRAMES);
+    private final LinkedBlockingQueue<Frame> queuedFrames = new LinkedBlockingQueue<>();
+    private byte[] chunk = new byte[1024];
+    private MediaCodec codec;
+    private long samplesWritten = 0;
+    private volatile boolean closed = false;
+
+    public AudioTurnEncoder(Handler handler, Listener listener) {
+        this.handler = handler;
+        this.listener = listener;
+        for (int i = 0; i < POOLED_FRAMES; i++) {
+            freeFrames.add(new Frame());
+        }
+        new Thread(this::encodeLoop, "AudioTurnEncoder").start();
+    }
+
+    // Called on the capture thread
+    @Override
+    public void write(short[] samples, int count) {
+        if (closed) return;
+        for (int offset = 0; offset < count; offset += AudioCaptureStage.FRAME_SAMPLES) {
+            Frame frame = freeFrames.poll();
+            if (frame == null) {
+                // The encoder fell behind; grow rather than drop audio or block capture
+                frame = new Frame();
+            }
+            frame.count = Math.min(AudioCaptureStage.FRAME_SAMPLES, count - offset);
+            System.arraycopy(samples, offset, frame.samples, 0, frame.count);
+            queuedFrames.add(frame);
+        }
+    }
+
+    /** Ends the utterance; the encoder thread finishes the stream and posts the result. */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        queuedFrames.add(END_OF_STREAM);
+    }
+
+    private void encodeLoop() {
+        // Below the capture thread, but ahead of the app's background work
+        Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+        openCodec();
+        try {
+            Frame frame;
+            while ((frame = queuedFrames.take()) != END_OF_STREAM) {
+                encode(frame.samples, frame.count);
+                freeFrames.offer(frame);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finish();
+    }
+
+    private void openCodec() {
+        try {
+            MediaFormat format = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC,
+                    AudioCaptureStage.SAMPLE_RATE, 1);
+            format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+            format.setInteger(MediaFormat.KEY_BIT_RATE, BIT_RATE);
+            codec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC);
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            codec.start();
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "AAC encoder unavailable, sending WAV", e);
+            if (codec != null) {
+                codec.release();
+            }
+            codec = null;
+        }
+    }
+
+    private void encode(short[] samples, int count) {
+        if (codec == null) {
+            writePcm(samples, count);
+            samplesWritten += count;
+            return;
+        }
+
+        int offset = 0;
+        while (offset < count) {
+            int index = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+            if (index < 0) {
+                drain(false);
+                continue;
+            }
+            ByteBuffer input = codec.getInputBuffer(index);
+            input.clear();
+            int n = Math.min(count - offset, input.remaining() / 2);
+            input.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().put(samples, offset, n);
+            codec.queueInputBuffer(index, 0, n * 2, presentationTimeUs(), 0);
+            samplesWritten += n;
+            offset += n;
+            drain(false);
+        }
+    }
+
+    private void finish() {
+        String mimeType = MIME_AAC;
+        byte[] audio;
+        if (codec != null) {
+            try {
+                int index;
+                while ((index = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US)) < 0) {
+                    drain(false);
+                }
+                codec.queueInputBuffer(index, 0, 0, presentationTimeUs(), MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                drain(true);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error finishing AAC stream", e);
+            } finally {
+                codec.stop();
+                codec.release();
+                codec = null;
+            }
+            audio = out.toByteArray();
+        } else {
+            mimeType = MIME_WAV;
+            audio = wrapWav(out.toByteArray());
+        }
+
+        int durationMillis = (int) (samplesWritten * 1000 / AudioCaptureStage.SAMPLE_RATE);
+        Log.d(TAG, "Encoded " + durationMillis + " ms of audio into " + audio.length + " bytes (" + mimeType + ")");
+        String finalMimeType = mimeType;
+        handler.post(() -> listener.onEncoded(audio, finalMimeType, durationMillis));
+    }
+
+    private long presentationTimeUs() {
+        return samplesWritten * 1000000L / AudioCaptureStage.SAMPLE_RATE;
+    }
+
+    private void drain(boolean untilEndOfStream) {
+        int waits = 0;
+        while (true) {
+            int index = codec.dequeueOutputBuffer(info, untilEndOfStream ? DEQUEUE_TIMEOUT_US : 0);
+            if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                if (!untilEndOfStream || ++waits > MAX_END_OF_STREAM_WAITS) return;
+                continue;
+            }
+            if (index < 0) continue; // Format or buffer changes
+
+            boolean endOfStream = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+            if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0 && info.size > 0) {
+                ByteBuffer output = codec.getOutputBuffer(index);
+                if (chunk.length < info.size) {
+                    chunk = new byte[info.size];
+                }
+                output.position(info.offset);
+                output.get(chunk, 0, info.size);
+                writeAdtsHeader(info.size);
+                out.write(adtsHeader, 0, adtsHeader.length);
+                out.write(chunk, 0, info.size);
+            }
+            codec.releaseOutputBuffer(index, false);
+            if (endOfStream) return;
+        }
+    }
+
+    private void writeAdtsHeader(int payloadLength) {
+        int packetLength = payloadLength + adtsHeader.length;
+        int profile = 2; // AAC LC
+        int channels = 1;
+        adtsHeader[0] = (byte) 0xFF;
+        adtsHeader[1] = (byte) 0xF1;
+        adtsHeader[2] = (byte) (((profile - 1) << 6) + (ADTS_SAMPLE_RATE_INDEX_16000 << 2) + (channels >> 2));
+        adtsHeader[3] = (byte) (((channels & 3) << 6) + (packetLength >> 11));
+        adtsHeader[4] = (byte) ((packetLength & 0x7FF) >> 3);
+        adtsHeader[5] = (byte) (((packetLength & 7) << 5) + 0x1F);
+        adtsHeader[6] = (byte) 0xFC;
+    }
+
+    private void writePcm(short[] samples, int count) {
+        for (int i = 0; i < count; i++) {
+            out.write(samples[i] & 0xFF);
+            out.write((samples[i] >> 8) & 0xFF);
+        }
+    }
+
+    private static byte[] wrapWav(byte[] pcm) {
+        int sampleRate = AudioCaptureStage.SAMPLE_RATE;
+        ByteBuffer wav = ByteBuffer.allocate(44 + pcm.length).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put(new byte[]{'R', 'I', 'F', 'F'}).putInt(36 + pcm.length);
+        wav.put(new byte[]{'W', 'A', 'V', 'E', 'f', 'm', 't', ' '});
+        wav.putInt(16).putShort((short) 1).putShort((short) 1);
+        wav.putInt(sampleRate).putInt(sampleRate * 2).putShort((short) 2).putShort((short) 16);
+        wav.put(new byte[]{'d', 'a', 't', 'a'}).putInt(pcm.length);
+        wav.put(pcm);
+        return wav.array();
+    }
+}
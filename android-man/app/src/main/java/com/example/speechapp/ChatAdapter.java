@@ -1,5 +1,6 @@
 package com.example.speechapp;
 
+import android.graphics.Color;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -9,10 +10,15 @@ import androidx.recyclerview.widget.RecyclerView;
 import java.util.List;
 
 public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.MessageViewHolder> {
+    private static final int HIGHLIGHT_COLOR = 0x40FFC107;
     private List<ChatMessage> messages;
+    private final MarkdownRenderer markdownRenderer;
+    private final MarkdownRenderer.Listener onRendered = this::onRendered;
+    private long highlightedId = -1;
 
-    public ChatAdapter(List<ChatMessage> messages) {
+    public ChatAdapter(List<ChatMessage> messages, MarkdownRenderer markdownRenderer) {
         this.messages = messages;
+        this.markdownRenderer = markdownRenderer;
     }
 
     @NonNull
@@ -32,10 +38,40 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.MessageViewHol
     @Override
     public void onBindViewHolder(@NonNull MessageViewHolder holder, int position) {
         ChatMessage message = messages.get(position);
-        holder.hindiText.setText(message.getHindiText());
+        // Bot replies show as plain text until their styled version is ready
+        CharSequence text = message.getType() == ChatMessage.TYPE_BOT
+                ? markdownRenderer.get(message.getId(), message.getHindiText(), onRendered)
+                : null;
+        holder.hindiText.setText(text != null ? text : message.getHindiText());
+        holder.itemView.setAlpha(message.isPending() ? 0.5f : 1f);
+        holder.itemView.setBackgroundColor(message.getId() == highlightedId ? HIGHLIGHT_COLOR : Color.TRANSPARENT);
         //holder.hinglishText.setText(message.getHinglishText());
     }
 
+    /** Marks the current search hit; -1 clears it. */
+    public void setHighlightedId(long messageId) {
+        if (messageId == highlightedId) return;
+        long previous = highlightedId;
+        highlightedId = messageId;
+        notifyMessageChanged(previous);
+        notifyMessageChanged(messageId);
+    }
+
+    private void onRendered(long messageId) {
+        notifyMessageChanged(messageId);
+    }
+
+    private void notifyMessageChanged(long messageId) {
+        if (messageId < 0) return;
+        // Fresh replies are at the bottom, so search from there
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i).getId() == messageId) {
+                notifyItemChanged(i);
+                return;
+            }
+        }
+    }
+
     @Override
     public int getItemCount() {
         return messages.size();
@@ -13,15 +13,46 @@ import java.util.List;
 
 public class ChatFragment extends Fragment {
     private static final String TAG = "ChatFragment";
+    private static final int MAX_SEARCH_RESULTS = 50;
+    // Object headers, fields and list slot of a ChatMessage, beside its text
+    private static final int MESSAGE_OVERHEAD_BYTES = 120;
     private RecyclerView chatRecyclerView;
     private ChatAdapter chatAdapter;
-    private List<ChatMessage> messages;
+    // Created up front so messages restored at startup survive until the fragment attaches
+    private final List<ChatMessage> messages = new ArrayList<>();
+    private ChatSearchIndex searchIndex = new ChatSearchIndex();
+    private FrameDispatcher ui;
+    private MemoryBudget memoryBudget;
+    // Read by MemoryBudget from other threads
+    private volatile long messageBytes = 0;
+    private volatile long indexBytes = 0;
+
+    private final MemoryBudget.Trimmable chatTrimmable = new MemoryBudget.Trimmable() {
+        @Override
+        public long sizeBytes() {
+            return messageBytes + indexBytes;
+        }
+
+        @Override
+        public void trim(float keep) {
+            ui.post(() -> trimMessages(keep));
+        }
+    };
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        messages = new ArrayList<>();
-        chatAdapter = new ChatAdapter(messages);
+        AppServices services = SpeechApp.services(requireContext());
+        chatAdapter = new ChatAdapter(messages, services.getMarkdownRenderer());
+        ui = services.getFrameDispatcher();
+        memoryBudget = services.getMemoryBudget();
+        memoryBudget.register("Chat messages", MemoryBudget.Priority.CONTENT, chatTrimmable);
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        memoryBudget.unregister("Chat messages", chatTrimmable);
     }
 
     @Override
@@ -36,11 +67,92 @@ public class ChatFragment extends Fragment {
 
     public void addMessage(ChatMessage message) {
         Log.d(TAG, "Adding message: " + message.getMessage());
-        if (messages != null && chatAdapter != null) {
-            messages.add(message);
+        messages.add(message);
+        index(message);
+        if (chatAdapter != null) {
             chatAdapter.notifyItemInserted(messages.size() - 1);
+        }
+        if (chatRecyclerView != null) {
             chatRecyclerView.smoothScrollToPosition(messages.size() - 1);
         }
+        if (memoryBudget != null) {
+            memoryBudget.checkSoftCap();
+        }
+    }
+
+    // Replies to a message that waited in the outbox go right under it, not at the bottom
+    public void insertMessagesAfter(ChatMessage anchor, List<ChatMessage> replies) {
+        int index = messages.indexOf(anchor);
+        if (index < 0) {
+            for (ChatMessage reply : replies) {
+                addMessage(reply);
+            }
+            return;
+        }
+        messages.addAll(index + 1, replies);
+        for (ChatMessage reply : replies) {
+            index(reply);
+        }
+        if (chatAdapter != null) {
+            chatAdapter.notifyItemRangeInserted(index + 1, replies.size());
+        }
+    }
+
+    public void updateMessage(ChatMessage message) {
+        int index = messages.indexOf(message);
+        if (index >= 0 && chatAdapter != null) {
+            chatAdapter.notifyItemChanged(index);
+        }
+    }
+
+    // Both the spoken and the displayed text, so a search in either script finds the message
+    private void index(ChatMessage message) {
+        String text = message.getMessage();
+        String displayed = message.getHindiText();
+        if (displayed != null && !displayed.equals(text)) {
+            text = text == null ? displayed : text + " " + displayed;
+        }
+        if (text != null) {
+            searchIndex.add(message.getId(), text);
+        }
+        messageBytes += MESSAGE_OVERHEAD_BYTES + 2L * ((message.getMessage() != null ? message.getMessage().length() : 0)
+                + (message.getHindiText() != null ? message.getHindiText().length() : 0));
+        indexBytes = searchIndex.sizeBytes();
+    }
+
+    // Drops the oldest messages. Posting lists cannot forget a document, so the search
+    // index is rebuilt from the messages that are left.
+    private void trimMessages(float keep) {
+        int remove = messages.size() - (int) (messages.size() * keep);
+        if (remove <= 0) return;
+        messages.subList(0, remove).clear();
+        if (chatAdapter != null) {
+            chatAdapter.notifyItemRangeRemoved(0, remove);
+        }
+        searchIndex = new ChatSearchIndex();
+        messageBytes = 0;
+        for (ChatMessage message : messages) {
+            index(message);
+        }
+        indexBytes = searchIndex.sizeBytes();
+    }
+
+    /** Ids of the messages matching a search, newest first. */
+    public List<Long> search(String query) {
+        return searchIndex.search(query, MAX_SEARCH_RESULTS);
+    }
+
+    /** Scrolls to a message and highlights it; a negative id clears the highlight. */
+    public void showMessage(long messageId) {
+        if (chatAdapter == null) return;
+        chatAdapter.setHighlightedId(messageId);
+        if (messageId < 0 || chatRecyclerView == null) return;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i).getId() == messageId) {
+                chatRecyclerView.scrollToPosition(i);
+                return;
+            }
+        }
     }
 
     public List<ChatMessage> getMessages() {
@@ -1,14 +1,20 @@
 package com.example.speechapp;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class ChatMessage {
     public static final int TYPE_USER = 0;
     public static final int TYPE_BOT = 1;
+    private static final AtomicLong NEXT_ID = new AtomicLong();
 
+    // Stable for the life of the process, unlike the message's position in the list
+    private final long id = NEXT_ID.incrementAndGet();
     private String message;
     private String hindiText;
     //private String hinglishText;
     private int type;
     private long timestamp;
+    private boolean pending;
 
     public ChatMessage(String message, String hindiText, int type) {
         this.message = message;
@@ -18,6 +24,10 @@ public class ChatMessage {
         this.timestamp = System.currentTimeMillis();
     }
 
+    public long getId() {
+        return id;
+    }
+
     public String getMessage() {
         return message;
     }
@@ -37,4 +47,13 @@ public class ChatMessage {
     public long getTimestamp() {
         return timestamp;
     }
+
+    // A user message still waiting in the outbox for connectivity
+    public boolean isPending() {
+        return pending;
+    }
+
+    public void setPending(boolean pending) {
+        this.pending = pending;
+    }
 }
@@ -0,0 +1,156 @@
+package com.example.speechapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Incremental inverted index over chat messages for search-as-you-type. Words are folded
+ * with PhoneticMatcher.prefixKey, so English, Hinglish and Devanagari spellings of a word
+ * share one term ("dilli" finds "दिल्ली"), and the fold of a half-typed word is a prefix of
+ * the fold of the whole one. Each term's posting list is a delta-encoded varint
+ * byte array of internal document numbers, which grow with every added message, so a
+ * posting list only ever appends.
+ *
+ * The last query word is matched as a prefix while it is still being typed. Thread-safe.
+ */
+public class ChatSearchIndex {
+    // Shorter prefixes match most of the vocabulary and are not worth the union
+    private static final int MIN_PREFIX_LENGTH = 2;
+    // Tree map entry and String object per term, beside the key's chars
+    private static final int TERM_OVERHEAD_BYTES = 80;
+
+    private static class Postings {
+        private byte[] data = new byte[4];
+        private int length = 0;
+        private int lastDoc = -1;
+
+        // Returns how many bytes the list grew by
+        int add(int doc) {
+            if (doc == lastDoc) return 0;
+            int delta = doc - lastDoc;
+            lastDoc = doc;
+            int grown = 0;
+            if (length + 5 > data.length) {
+                grown = data.length;
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            while ((delta & ~0x7F) != 0) {
+                data[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+            return grown;
+        }
+
+        void decodeInto(BitSet docs) {
+            int doc = -1;
+            int i = 0;
+            while (i < length) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[i++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                doc += delta;
+                docs.set(doc);
+            }
+        }
+    }
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private long[] messageIds = new long[256];
+    private int docCount = 0;
+    private long postingBytes = 0;
+
+    public synchronized void add(long messageId, String text) {
+        if (docCount == messageIds.length) {
+            messageIds = Arrays.copyOf(messageIds, messageIds.length * 2);
+        }
+        int doc = docCount++;
+        messageIds[doc] = messageId;
+        for (String word : words(text)) {
+            String key = PhoneticMatcher.prefixKey(word);
+            if (key.isEmpty()) continue;
+            Postings postings = terms.get(key);
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(key, postings);
+                postingBytes += TERM_OVERHEAD_BYTES + 2 * key.length() + postings.data.length;
+            }
+            postingBytes += postings.add(doc);
+        }
+    }
+
+    public synchronized int size() {
+        return docCount;
+    }
+
+    /** Rough heap footprint of the index. */
+    public synchronized long sizeBytes() {
+        return postingBytes + 8L * messageIds.length;
+    }
+
+    /** Ids of messages containing every query word, most recently added first. */
+    public synchronized List<Long> search(String query, int limit) {
+        List<Long> results = new ArrayList<>();
+        List<String> words = words(query);
+        if (words.isEmpty()) return results;
+        boolean typing = !Character.isWhitespace(query.charAt(query.length() - 1));
+
+        BitSet matches = null;
+        for (int i = 0; i < words.size(); i++) {
+            String key = PhoneticMatcher.prefixKey(words.get(i));
+            if (key.isEmpty()) continue;
+            BitSet docs = new BitSet(docCount);
+            if (typing && i == words.size() - 1 && key.length() >= MIN_PREFIX_LENGTH) {
+                for (Postings postings : terms.subMap(key, true, key + Character.MAX_VALUE, true).values()) {
+                    postings.decodeInto(docs);
+                }
+            } else {
+                Postings postings = terms.get(key);
+                if (postings != null) postings.decodeInto(docs);
+            }
+            if (matches == null) {
+                matches = docs;
+            } else {
+                matches.and(docs);
+            }
+            if (matches.isEmpty()) return results;
+        }
+        if (matches == null) return results;
+
+        for (int doc = matches.previousSetBit(docCount - 1); doc >= 0 && results.size() < limit;
+                doc = matches.previousSetBit(doc - 1)) {
+            results.add(messageIds[doc]);
+        }
+        return results;
+    }
+
+    // Runs of letters, digits and combining marks (Indic vowel signs and viramas)
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = false;
+            if (i < text.length()) {
+                char c = text.charAt(i);
+                int type = Character.getType(c);
+                inWord = Character.isLetterOrDigit(c) || type == Character.NON_SPACING_MARK
+                        || type == Character.COMBINING_SPACING_MARK;
+            }
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.speechapp;
+
+/**
+ * The transcript GeminiAPI keeps, one "User: ...\nAssistant: ...\n\n" block per turn. Every
+ * recorded turn (and every reset) bumps the version, so a request built from an earlier
+ * state, like a speculative one, can tell that it missed a turn.
+ *
+ * Thread-safe. Pure Java, so the history window is tested on the JVM.
+ */
+public class ConversationHistory {
+    private static final String TURN_START = "\n\nUser: ";
+
+    private final StringBuilder text = new StringBuilder();
+    private long version = 0;
+
+    public synchronized void record(String userInput, String reply) {
+        // A new quiz starts the history over
+        if (userInput.equals("start quiz")) {
+            text.setLength(0);
+        }
+        text.append("User: ").append(userInput).append("\n");
+        text.append("Assistant: ").append(reply).append("\n\n");
+        version++;
+    }
+
+    public synchronized void clear() {
+        text.setLength(0);
+        version++;
+    }
+
+    public synchronized long version() {
+        return version;
+    }
+
+    public synchronized int length() {
+        return text.length();
+    }
+
+    /** The last turns of the history; all of it when it holds fewer. */
+    public synchronized String recent(int turns) {
+        int start = text.length();
+        for (int i = 0; i < turns && start > 0; i++) {
+            // Search before the separator the window starts after, or the same one is found again
+            int previous = text.lastIndexOf(TURN_START, start - 3);
+            start = previous < 0 ? 0 : previous + 2;
+        }
+        return text.substring(start);
+    }
+
+    /**
+     * Drops the oldest turns, keeping about the given share. Cuts at the first turn boundary
+     * past it, so no turn is left half. The version stays: the newest turns are all still there.
+     */
+    public synchronized void trim(float keep) {
+        int cut = text.length() - (int) (text.length() * keep);
+        if (cut <= 0) return;
+        int boundary = text.indexOf(TURN_START, Math.max(0, cut - 2));
+        text.delete(0, boundary < 0 ? text.length() : boundary + 2);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return text.toString();
+    }
+}
@@ -9,11 +9,50 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentActivity;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class DebugLogFragment extends Fragment {
+    // Compared by identity, so no logged line can be mistaken for it
+    private static final String CLEAR = new String("clear");
+
     private TextView logTextView;
     private ScrollView scrollView;
     private StringBuilder logBuilder = new StringBuilder();
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+    private final Runnable flush = this::flushPending;
+    private FrameDispatcher ui;
+    private MemoryBudget memoryBudget;
+    // Read by MemoryBudget from other threads
+    private volatile int logChars = 0;
+
+    private final MemoryBudget.Trimmable logTrimmable = new MemoryBudget.Trimmable() {
+        // The builder plus the copy the TextView holds
+        @Override
+        public long sizeBytes() {
+            return logChars * 4L;
+        }
+
+        @Override
+        public void trim(float keep) {
+            ui.post(() -> trimLog(keep));
+        }
+    };
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        AppServices services = SpeechApp.services(requireContext());
+        ui = services.getFrameDispatcher();
+        memoryBudget = services.getMemoryBudget();
+        memoryBudget.register("Debug log", MemoryBudget.Priority.DIAGNOSTICS, logTrimmable);
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        memoryBudget.unregister("Debug log", logTrimmable);
+    }
 
     @Nullable
     @Override
@@ -38,27 +77,51 @@ public class DebugLogFragment extends Fragment {
     }
 
     public void appendLog(String text) {
-        if (getActivity() == null) return;
-        
-        getActivity().runOnUiThread(() -> {
-            logBuilder.append(text).append("\n");
-            if (logTextView != null) {
-                logTextView.setText(logBuilder.toString());
-                // Scroll to bottom
-                scrollView.post(() -> scrollView.fullScroll(View.FOCUS_DOWN));
-            }
-        });
+        enqueue(text);
     }
 
     public void clearLog() {
-        if (getActivity() == null) return;
-        
-        getActivity().runOnUiThread(() -> {
-            logBuilder.setLength(0);
-            if (logTextView != null) {
-                logTextView.setText("");
+        enqueue(CLEAR);
+    }
+
+    // Lines from any thread are applied once per frame, so a burst costs a single setText
+    private void enqueue(String line) {
+        FragmentActivity activity = getActivity();
+        if (activity == null) return;
+        pending.add(line);
+        SpeechApp.services(activity).getFrameDispatcher().postLatest(flush, flush);
+    }
+
+    private void flushPending() {
+        String line;
+        while ((line = pending.poll()) != null) {
+            if (line == CLEAR) {
+                logBuilder.setLength(0);
+            } else {
+                logBuilder.append(line).append("\n");
             }
-        });
+        }
+        logChars = logBuilder.length();
+        if (logTextView != null) {
+            logTextView.setText(logBuilder.toString());
+            // Scroll to bottom
+            scrollView.post(() -> scrollView.fullScroll(View.FOCUS_DOWN));
+        }
+        if (memoryBudget != null) {
+            memoryBudget.checkSoftCap();
+        }
+    }
+
+    // Drops the oldest lines, cutting at a line break
+    private void trimLog(float keep) {
+        int cut = logBuilder.length() - (int) (logBuilder.length() * keep);
+        if (cut <= 0) return;
+        int newline = logBuilder.indexOf("\n", cut);
+        logBuilder.delete(0, newline < 0 ? logBuilder.length() : newline + 1);
+        logChars = logBuilder.length();
+        if (logTextView != null) {
+            logTextView.setText(logBuilder.toString());
+        }
     }
 
     private void updateLogDisplay() {
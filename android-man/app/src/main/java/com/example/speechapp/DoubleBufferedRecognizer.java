@@ -0,0 +1,167 @@
+package com.example.speechapp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.speech.RecognitionListener;
+import android.speech.SpeechRecognizer;
+import android.util.Log;
+
+/**
+ * Keeps two SpeechRecognizer instances alive and alternates between them, so the next
+ * utterance starts on an already created (and, after the first round, already bound)
+ * recognizer instead of destroying and re-binding the recognition service every time.
+ */
+public class DoubleBufferedRecognizer {
+    private static final String TAG = "DoubleBufferedRecognizer";
+    private static final long STOP_GRACE_MILLIS = 100;
+
+    public interface HandoverListener {
+        void onHandover(long gapMillis);
+    }
+
+    private final Context context;
+    private final Handler handler;
+    private final RecognitionListener listener;
+    private final HandoverListener handoverListener;
+    private final Slot[] slots = new Slot[2];
+    private int activeIndex = 0;
+    private long handoverStartedAt = 0;
+    private final Runnable prepareStandby = this::prepareStandby;
+    private final Runnable destroyAll = this::destroy;
+
+    public DoubleBufferedRecognizer(Context context, Handler handler, RecognitionListener listener,
+                                    HandoverListener handoverListener) {
+        this.context = context;
+        this.handler = handler;
+        this.listener = listener;
+        this.handoverListener = handoverListener;
+    }
+
+    public void start(Intent intent) {
+        handler.removeCallbacks(destroyAll);
+        handoverStartedAt = 0;
+        ensureSlot(activeIndex).recognizer.startListening(intent);
+        handler.post(prepareStandby);
+    }
+
+    // Called once the active recognizer has delivered its results: the standby takes over
+    // right away and the finished one becomes the next standby, nothing is destroyed.
+    public void handover(Intent intent) {
+        handler.removeCallbacks(destroyAll);
+        handoverStartedAt = SystemClock.elapsedRealtime();
+        activeIndex = 1 - activeIndex;
+        ensureSlot(activeIndex).recognizer.startListening(intent);
+    }
+
+    public void stop() {
+        Slot active = slots[activeIndex];
+        if (active == null) return;
+        try {
+            active.recognizer.stopListening();  // Try to stop gracefully first
+            handler.postDelayed(destroyAll, STOP_GRACE_MILLIS);
+        } catch (Exception e) {
+            Log.e(TAG, "Error stopping speech recognizer", e);
+            destroy();
+        }
+    }
+
+    // Drops both recognizers so the next start() binds fresh ones, used after service errors.
+    public void reset() {
+        destroy();
+    }
+
+    public void destroy() {
+        handler.removeCallbacks(prepareStandby);
+        handler.removeCallbacks(destroyAll);
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) {
+                slots[i].recognizer.destroy();
+                slots[i] = null;
+            }
+        }
+        handoverStartedAt = 0;
+    }
+
+    private void prepareStandby() {
+        ensureSlot(1 - activeIndex);
+    }
+
+    private Slot ensureSlot(int index) {
+        if (slots[index] == null) {
+            slots[index] = new Slot(SpeechRecognizer.createSpeechRecognizer(context));
+        }
+        return slots[index];
+    }
+
+    private boolean isActive(Slot slot) {
+        return slots[activeIndex] == slot;
+    }
+
+    // Forwards callbacks only while its recognizer is the active one, so late events from
+    // the retired instance never reach VoiceManager.
+    private class Slot implements RecognitionListener {
+        final SpeechRecognizer recognizer;
+
+        Slot(SpeechRecognizer recognizer) {
+            this.recognizer = recognizer;
+            recognizer.setRecognitionListener(this);
+        }
+
+        @Override
+        public void onReadyForSpeech(Bundle params) {
+            if (!isActive(this)) return;
+            if (handoverStartedAt > 0) {
+                long gap = SystemClock.elapsedRealtime() - handoverStartedAt;
+                handoverStartedAt = 0;
+                Log.d(TAG, "Handover gap: " + gap + " ms");
+                if (handoverListener != null) {
+                    handoverListener.onHandover(gap);
+                }
+            }
+            listener.onReadyForSpeech(params);
+        }
+
+        @Override
+        public void onBeginningOfSpeech() {
+            if (isActive(this)) listener.onBeginningOfSpeech();
+        }
+
+        @Override
+        public void onRmsChanged(float rmsdB) {
+            if (isActive(this)) listener.onRmsChanged(rmsdB);
+        }
+
+        @Override
+        public void onBufferReceived(byte[] buffer) {
+            if (isActive(this)) listener.onBufferReceived(buffer);
+        }
+
+        @Override
+        public void onEndOfSpeech() {
+            if (isActive(this)) listener.onEndOfSpeech();
+        }
+
+        @Override
+        public void onError(int error) {
+            if (isActive(this)) listener.onError(error);
+        }
+
+        @Override
+        public void onResults(Bundle results) {
+            if (isActive(this)) listener.onResults(results);
+        }
+
+        @Override
+        public void onPartialResults(Bundle partialResults) {
+            if (isActive(this)) listener.onPartialResults(partialResults);
+        }
+
+        @Override
+        public void onEvent(int eventType, Bundle params) {
+            if (isActive(this)) listener.onEvent(eventType, params);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.speechapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batches UI updates from any thread and runs them on the main thread once per frame,
+ * instead of one looper message per update. Events go into a lock-free queue and the first
+ * one of a frame schedules a single Choreographer callback that drains it.
+ *
+ * post() events all run, in order. postLatest() events carry a key, and only the most recent
+ * event for a key runs in a frame (at its own position in the queue): a status that changed
+ * three times, or a partial transcript that was superseded, costs one update.
+ */
+public class FrameDispatcher {
+    // Vsync callbacks stop while the screen is off; drain anyway after this long
+    private static final long FALLBACK_DELAY_MS = 100;
+
+    private static final class Event {
+        final Object key;
+        final Runnable action;
+
+        Event(Object key, Runnable action) {
+            this.key = key;
+            this.action = action;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<Object, Event> latest = new ConcurrentHashMap<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Choreographer choreographer;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> drain();
+    private final Runnable fallback = this::drain;
+    private final AtomicLong posted = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private long frames = 0;
+
+    /** Must be created on the main thread, whose Choreographer it uses. */
+    public FrameDispatcher() {
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    public void post(Runnable action) {
+        enqueue(new Event(null, action));
+    }
+
+    /** Runs the action in the next frame unless another event with the same key replaces it first. */
+    public void postLatest(Object key, Runnable action) {
+        Event event = new Event(key, action);
+        if (latest.put(key, event) != null) {
+            merged.incrementAndGet();
+        }
+        enqueue(event);
+    }
+
+    public String describe() {
+        return "UI dispatcher: " + posted.get() + " events, " + merged.get() + " merged, " + frames + " frames";
+    }
+
+    private void enqueue(Event event) {
+        queue.add(event);
+        posted.incrementAndGet();
+        if (scheduled.compareAndSet(false, true)) {
+            choreographer.postFrameCallback(frameCallback);
+            handler.postDelayed(fallback, FALLBACK_DELAY_MS);
+        }
+    }
+
+    private void drain() {
+        // Whichever of the frame and the fallback comes second finds nothing to do
+        if (!scheduled.compareAndSet(true, false)) return;
+        choreographer.removeFrameCallback(frameCallback);
+        handler.removeCallbacks(fallback);
+        frames++;
+
+        // Events posted while draining, including by the actions themselves, wait for the next frame
+        Event end = new Event(null, null);
+        queue.add(end);
+        Event event;
+        while ((event = queue.poll()) != end) {
+            if (event.key != null && !latest.remove(event.key, event)) continue;
+            event.action.run();
+        }
+    }
+}
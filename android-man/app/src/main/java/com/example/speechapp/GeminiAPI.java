@@ -2,52 +2,77 @@ package com.example.speechapp;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.os.Handler;
-import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import okhttp3.MediaType;
+import okhttp3.Call;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
 
 public class GeminiAPI {
     private static final String TAG = "GeminiAPI";
+    public static final String NEXT_QUESTION_INPUT = "next question";
     private static final String PREF_NAME = "GeminiPrefs";
     private static final String KEY_API_KEY = "api_key";
     private static final String KEY_QUIZ_MODE = "quiz_mode";
-    private static final String QUIZ_PROMPT_START = "You are a friendly AI assistant. ";
-    private static final String QUIZ_PROMPT_END = " When in quiz mode: Ask one question at a time, wait for answers. " +
-            "ALWAYS format your response EXACTLY in JSON format with schema " +
-            "{'evaluation': 'evaluation text', 'explanation': 'explanation text', 'encouraging_feedback': 'feedback text', 'next_question': 'question text'}";
+    private static final String SEEN_QUESTIONS_FILE = "seen_questions.bin";
+    private static final int MAX_SPARE_QUESTIONS = 6;
+    private static final String AUDIO_TURN_INSTRUCTION = "The user's message is the attached audio (English, Hindi or Hinglish). " +
+            "Transcribe it verbatim and reply to it. Respond ONLY with JSON {'transcript': 'what the user said', " +
+            "'reply': 'your reply, following all instructions above'}";
             
     
     private String apiKey;
     private boolean quizMode;
     private final Context context;
     private final ExecutorService executor;
-    private final Handler mainHandler;
-    private StringBuilder conversationHistory;
+    private final ExecutorService speculativeExecutor;
+    // Replies reach the main thread batched into the next frame
+    private final FrameDispatcher ui;
+    // Read by the speculative executor and MemoryBudget, written by the request executor
+    private final ConversationHistory conversationHistory = new ConversationHistory();
     private String selectedLanguage = "english";
     private String systemPrompt;
-    private final DebugLogFragment debugLogFragment;
+    private volatile DebugLogFragment debugLogFragment;
     private final OkHttpClient client;
     private final SharedPreferences prefs;
-
-    public GeminiAPI(Context context) {
-        this(context, null);
+    private volatile LlmBackend backend;
+    private final ModelRouter modelRouter = new ModelRouter();
+    private final LinkEstimator linkEstimator = new LinkEstimator();
+    private final TurnPipeline pipeline = new TurnPipeline(conversationHistory, linkEstimator, modelRouter);
+    private volatile LinkEstimator.Profile lastLinkProfile;
+    // Set when the backend turns down a gzip body; cleared with the next backend
+    private volatile boolean compressionRejected = false;
+    private QuizEngine quizEngine;
+    private boolean quizBankFailed = false;
+    private SeenQuestions seenQuestions;
+    // The model's backup questions, used to replace a repeat without another round trip
+    private final Deque<String> spareQuestions = new ArrayDeque<>();
+
+    public GeminiAPI(Context context, FrameDispatcher ui) {
+        this(context, null, ui);
     }
 
-    public GeminiAPI(Context context, DebugLogFragment debugLogFragment) {
+    public GeminiAPI(Context context, DebugLogFragment debugLogFragment, FrameDispatcher ui) {
         this.context = context;
         this.debugLogFragment = debugLogFragment;
         this.prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
@@ -55,12 +80,48 @@ public class GeminiAPI {
         this.apiKey = prefs.getString(KEY_API_KEY, null);
         this.quizMode = prefs.getBoolean(KEY_QUIZ_MODE, false);
         this.executor = Executors.newSingleThreadExecutor();
-        this.mainHandler = new Handler(Looper.getMainLooper());
-        this.conversationHistory = new StringBuilder();
-        this.client = new OkHttpClient();
+        this.speculativeExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "GeminiSpeculation"));
+        this.ui = ui;
+        this.client = new OkHttpClient.Builder()
+                .eventListenerFactory(linkEstimator.listenerFactory())
+                .build();
+        this.backend = new GeminiRestBackend("Gemini", null, this::getApiKey);
+        pipeline.setListener(new TurnPipeline.Listener() {
+            @Override
+            public void onRoute(ModelRouter.Route route, LlmRequest request) {
+                DebugLogFragment debugLogFragment = GeminiAPI.this.debugLogFragment;
+                if (debugLogFragment == null) return;
+                debugLogFragment.appendLog("Route: " + (request.model != null ? route.toString()
+                        : route.requestClass + " -> " + backend.getName() + " (" + route.maxOutputTokens + " tokens)"));
+                if (request.model != null && !route.model.equals(route.preferred)) {
+                    debugLogFragment.appendLog(modelRouter.summary());
+                }
+            }
+
+            @Override
+            public void onFailover(ModelRouter.Route route, String failedModel, HttpException e) {
+                DebugLogFragment debugLogFragment = GeminiAPI.this.debugLogFragment;
+                if (debugLogFragment == null) return;
+                debugLogFragment.appendLog("Route: " + failedModel + " answered HTTP " + e.code
+                        + ", failing over to " + route.fallback);
+                debugLogFragment.appendLog(modelRouter.summary());
+            }
+        });
         updateSystemPrompt();
     }
 
+    // The instance outlives activities, so the debug log follows whichever screen is showing it
+    public void setDebugLog(DebugLogFragment debugLogFragment) {
+        this.debugLogFragment = debugLogFragment;
+    }
+
+    public DebugLogFragment getDebugLog() {
+        return debugLogFragment;
+    }
+
     public void setApiKey(String apiKey) {
         this.apiKey = apiKey;
         // Save API key
@@ -75,11 +136,35 @@ public class GeminiAPI {
         return apiKey != null && !apiKey.isEmpty();
     }
 
+    /** Switches the model endpoint for all following turns; history is kept. */
+    public void setBackend(LlmBackend backend) {
+        this.backend = backend;
+        this.compressionRejected = false;
+        Log.d(TAG, "Backend: " + backend.getName());
+    }
+
+    public LlmBackend getBackend() {
+        return backend;
+    }
+
+    public boolean supportsAudioTurns() {
+        return backend.supportsAudio();
+    }
+
+    // Settings and the quiz controls can both apply the same mode; only a change resets the history
     public void setQuizMode(boolean enabled) {
+        if (enabled == quizMode) return;
         this.quizMode = enabled;
         updateSystemPrompt();
-        conversationHistory = new StringBuilder();
+        conversationHistory.clear();
         prefs.edit().putBoolean(KEY_QUIZ_MODE, enabled).apply();
+        dropSpareQuestions();
+        if (!enabled) {
+            // The bank question still open must not grade the next chat message
+            executor.execute(() -> {
+                if (quizEngine != null) quizEngine.stop();
+            });
+        }
     }
 
     public boolean isQuizMode() {
@@ -87,50 +172,39 @@ public class GeminiAPI {
     }
 
     private void updateSystemPrompt() {
-        String prompt = "";
-        if (quizMode) {
-            prompt += QUIZ_PROMPT_START;
-            prompt += "You are in quiz mode. Start a fun quiz about general knowledge. Ask one question at a time. ";
-            prompt += getLanguageInstruction() + QUIZ_PROMPT_END;
-        } else {
-            prompt += "You are in conversation mode. Have a natural conversation. ";
-            prompt += getLanguageInstruction();
-        }
-        
-        this.systemPrompt = prompt;
+        this.systemPrompt = SystemPrompt.build(quizMode, selectedLanguage);
     }
 
     public void setLanguage(String language) {
         this.selectedLanguage = language;
         updateSystemPrompt();
+        dropSpareQuestions();
     }
 
-    private String getLanguageInstruction() {
-        switch (selectedLanguage) {
-            case "hindi":
-                return "Please respond in simple English that can be easily transliterated to Hindi. " +
-                       "Use short, clear sentences and avoid complex words.";
-            case "hinglish":
-                return "Please respond in Hinglish (mix of Hindi and English). " +
-                       "Use casual language with common Hindi words mixed with English. " +
-                       "For example: 'Kya plan hai weekend ka?' or 'Movie kaisi thi?'";
-            default: // english
-                return "Please respond in clear English.";
-        }
+    // Spares are in the old language or mode; what was asked so far is flushed to disk
+    private void dropSpareQuestions() {
+        executor.execute(() -> {
+            spareQuestions.clear();
+            if (seenQuestions != null) seenQuestions.save();
+        });
     }
 
     public void startNewQuiz(GeminiCallback callback) {
-        conversationHistory = new StringBuilder();
+        conversationHistory.clear();
         updateSystemPrompt();
         generateResponse("start quiz", callback);
     }
 
-    public void generateResponse(String userInput, GeminiCallback callback) {
-        if (!hasApiKey()) {
+    // The returned turn can be cancelled until its reply arrives; a cancelled turn is neither
+    // recorded in the history nor delivered to the callback.
+    public Turn generateResponse(String userInput, GeminiCallback callback) {
+        Turn turn = new Turn();
+        // A quiz can run from the local question bank without any backend
+        if (!quizMode && !backend.isConfigured()) {
             if (callback != null) {
                 callback.onError("API key not set. Please set it in settings.");
             }
-            return;
+            return turn;
         }
 
         if (debugLogFragment != null) {
@@ -138,132 +212,263 @@ public class GeminiAPI {
         }
 
         executor.execute(() -> {
+            if (turn.isCancelled()) return;
+            QuizEngine quiz = quizMode ? quizEngine() : null;
+            boolean modelAsked = false;
             try {
-                JSONObject requestBody = new JSONObject();
-                JSONArray contents = new JSONArray();
-
-                // Add system prompt
-                JSONObject systemMessage = new JSONObject();
-                systemMessage.put("role", "user");
-                systemMessage.put("parts", new JSONArray().put(new JSONObject().put("text", systemPrompt)));
-                contents.put(systemMessage);
-
-                // Add conversation history if not starting a new quiz
-                if (!userInput.equals("start quiz")) {
-                    JSONObject historyMessage = new JSONObject();
-                    historyMessage.put("role", "user");
-                    String history = conversationHistory.toString().replace("User: ", "").replace("Assistant: ", "");
-                    historyMessage.put("parts", new JSONArray().put(new JSONObject().put("text", "Previous conversation:\n" + history)));
-                    contents.put(historyMessage);
-                }
-
-                // Add user input
-                JSONObject userMessage = new JSONObject();
-                userMessage.put("role", "user");
-                userMessage.put("parts", new JSONArray().put(new JSONObject().put("text", userInput)));
-                contents.put(userMessage);
-
-                requestBody.put("contents", contents);
-                requestBody.put("safetySettings", new JSONArray());
-                requestBody.put("generationConfig", new JSONObject()
-                    .put("temperature", 0.5)
-                    .put("topK", 1)
-                    .put("topP", 1)
-                    .put("maxOutputTokens", 800));
-
-                String url = "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash:generateContent?key=" + apiKey;
-                
-                // Log the request details
-                if (debugLogFragment != null) {
-                    debugLogFragment.appendLog("\n=== REQUEST DETAILS ===");
-                    debugLogFragment.appendLog("URL: " + url.replace(apiKey, "[API_KEY]"));
-                    debugLogFragment.appendLog("System Prompt: " + systemPrompt);
-                    if (!userInput.equals("start quiz")) {
-                        debugLogFragment.appendLog("Conversation History: " + conversationHistory.toString().replace("User: ", "").replace("Assistant: ", ""));
+                String generatedText = quiz != null ? answerLocally(quiz, userInput) : null;
+                if (generatedText == null) {
+                    if (!backend.isConfigured()) {
+                        throw new Exception("API key not set. Please set it in settings.");
+                    }
+                    boolean fromBank = quiz != null && quiz.isActive();
+                    String userText = fromBank ? quiz.contextFor(userInput) : userInput;
+                    generatedText = send(userInput, newRequest(userInput, userText), turn);
+                    if (generatedText != null && fromBank) {
+                        generatedText = quiz.continueFrom(generatedText);
+                    }
+                    // Once the bank is used up (or unavailable) the model picks the questions
+                    if (generatedText != null && quizMode && (quiz == null || !quiz.isActive())) {
+                        generatedText = suppressRepeat(userInput, userText, generatedText, turn);
+                        modelAsked = true;
                     }
-                    debugLogFragment.appendLog("User Input: " + userInput);
-                    debugLogFragment.appendLog("Language Mode: " + selectedLanguage);
+                }
+                if (generatedText == null || !turn.claim()) return;
+                if (modelAsked) recordAsked(generatedText);
+                recordTurn(userInput, generatedText);
+                processResponse(generatedText, callback);
+            } catch (Exception e) {
+                if (turn.isCancelled()) return;
+                // Offline, a bank question is still answered and the quiz moves on
+                if (e instanceof IOException && quiz != null && quiz.isActive()) {
                     try {
-                        debugLogFragment.appendLog("Full Request Body: " + requestBody.toString(2));
-                    } catch (Exception e) {
-                        debugLogFragment.appendLog("Full Request Body: " + requestBody.toString());
+                        String generatedText = quiz.unchecked();
+                        if (!turn.claim()) return;
+                        recordTurn(userInput, generatedText);
+                        processResponse(generatedText, callback);
+                        return;
+                    } catch (JSONException ignored) {
                     }
-                    debugLogFragment.appendLog("=== END REQUEST ===\n");
                 }
+                Log.e(TAG, "Error generating response", e);
+                logError(e);
+                ui.post(() -> {
+                    if (callback == null) return;
+                    if (e instanceof IOException) {
+                        callback.onNetworkError("Error: " + e.getMessage());
+                    } else {
+                        callback.onError("Error: " + e.getMessage());
+                    }
+                });
+            }
+        });
+        return turn;
+    }
 
-                Request request = new Request.Builder()
-                    .url(url)
-                    .post(RequestBody.create(requestBody.toString(), MediaType.parse("application/json")))
-                    .build();
+    // Starts a bank quiz, skips or grades a bank question; null means ask the model
+    private String answerLocally(QuizEngine quiz, String userInput) throws JSONException {
+        long startedAt = System.nanoTime();
+        String reply;
+        if (userInput.equals("start quiz")) {
+            reply = quiz.start(selectedLanguage);
+        } else if (userInput.equals(NEXT_QUESTION_INPUT)) {
+            reply = quiz.skip();
+        } else {
+            reply = quiz.answer(userInput);
+        }
+        if (reply != null && debugLogFragment != null) {
+            debugLogFragment.appendLog("Quiz: answered from the local bank in "
+                    + (System.nanoTime() - startedAt) / 1000 + " µs");
+        }
+        return reply;
+    }
 
-                try (Response response = client.newCall(request).execute()) {
-                    String responseBody = response.body().string();
-                    
-                    // Log the full response
-                    if (debugLogFragment != null) {
-                        debugLogFragment.appendLog("\n=== RESPONSE DETAILS ===");
-                        debugLogFragment.appendLog("Response Code: " + response.code());
-                        debugLogFragment.appendLog("Response Message: " + response.message());
-                        debugLogFragment.appendLog("Response Body: " + responseBody);
-                        debugLogFragment.appendLog("=== END RESPONSE ===\n");
-                    }
+    // Loaded on first use from the request executor, which is also the only thread using it
+    private QuizEngine quizEngine() {
+        if (quizEngine == null && !quizBankFailed) {
+            try {
+                quizEngine = new QuizEngine(QuizBank.load(context), seenQuestions());
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading quiz bank", e);
+                quizBankFailed = true;
+            }
+        }
+        return quizEngine;
+    }
 
-                    if (!response.isSuccessful()) {
-                        throw new Exception("HTTP " + response.code() + ": " + responseBody);
-                    }
+    private SeenQuestions seenQuestions() {
+        if (seenQuestions == null) {
+            seenQuestions = SeenQuestions.load(new File(context.getFilesDir(), SEEN_QUESTIONS_FILE));
+        }
+        return seenQuestions;
+    }
 
-                    JSONObject jsonResponse = new JSONObject(responseBody);
-                    String generatedText = jsonResponse
-                        .getJSONArray("candidates")
-                        .getJSONObject(0)
-                        .getJSONObject("content")
-                        .getJSONArray("parts")
-                        .getJSONObject(0)
-                        .getString("text");
-
-                    // Log the generated text
-                    if (debugLogFragment != null) {
-                        debugLogFragment.appendLog("\n=== GENERATED TEXT ===");
-                        debugLogFragment.appendLog(generatedText);
-                        debugLogFragment.appendLog("=== END GENERATED TEXT ===\n");
-                    }
+    /**
+     * Replaces a model question the user was already asked, in this or an earlier session,
+     * with one of the model's spare questions, or else asks the model once more. Audio turns
+     * (no userInput) only use spares, since resending the audio costs more than a repeat.
+     * Returns null if the turn was cancelled during the second request. The question is not
+     * recorded here; recordAsked does that once the reply is delivered.
+     */
+    private String suppressRepeat(String userInput, String userText, String reply, Turn turn) throws Exception {
+        JSONObject json = quizJson(reply);
+        if (json == null) return reply;
+        SeenQuestions seen = seenQuestions();
+        keepSpares(json, seen);
+        String question = json.optString("next_question", "");
+        if (question.isEmpty()) return json.toString();
+
+        if (seen.contains(question)) {
+            String replacement = nextSpare(seen);
+            if (replacement == null && userInput != null) {
+                String retry = send(userInput, newRequest(userInput, userText + "\n\"" + question
+                        + "\" was already asked. Ask a different question."), turn);
+                if (retry == null) return null;
+                JSONObject retried = quizJson(retry);
+                if (retried != null) {
+                    keepSpares(retried, seen);
+                    String other = retried.optString("next_question", "");
+                    replacement = !other.isEmpty() && !seen.contains(other) ? other : nextSpare(seen);
+                }
+            }
+            if (debugLogFragment != null) {
+                debugLogFragment.appendLog("Quiz: repeated question \"" + question + "\" "
+                        + (replacement != null ? "replaced with \"" + replacement + "\"" : "kept, no new question available"));
+            }
+            if (replacement != null) {
+                question = replacement;
+                json.put("next_question", question);
+            }
+        }
+        return json.toString();
+    }
 
-                    // Update conversation history without duplicating
-                    if (!userInput.equals("start quiz")) {
-                        conversationHistory.append("User: ").append(userInput).append("\n");
-                        conversationHistory.append("Assistant: ").append(generatedText).append("\n\n");
-                    } else {
-                        // For new quiz, clear history and start fresh
-                        conversationHistory = new StringBuilder();
-                        conversationHistory.append("User: start quiz\n");
-                        conversationHistory.append("Assistant: ").append(generatedText).append("\n\n");
-                    }
+    // Only once the reply is claimed: a cancelled turn's question was never asked
+    private void recordAsked(String reply) {
+        JSONObject json = quizJson(reply);
+        String question = json != null ? json.optString("next_question", "") : "";
+        if (!question.isEmpty()) {
+            seenQuestions().add(question);
+        }
+    }
 
-                    // Log the updated conversation history
-                    if (debugLogFragment != null) {
-                        debugLogFragment.appendLog("\n=== CONVERSATION HISTORY ===");
-                        debugLogFragment.appendLog(conversationHistory.toString());
-                        debugLogFragment.appendLog("=== END CONVERSATION HISTORY ===\n");
-                        debugLogFragment.appendLog("\n----------------------------------------\n");
-                    }
+    // Moves the reply's backup questions into the spares, so they stay out of the history
+    private void keepSpares(JSONObject json, SeenQuestions seen) {
+        JSONArray backups = json.optJSONArray("backup_questions");
+        json.remove("backup_questions");
+        if (backups == null) return;
+        for (int i = 0; i < backups.length(); i++) {
+            String backup = backups.optString(i, "").trim();
+            if (!backup.isEmpty() && !seen.contains(backup)) {
+                spareQuestions.addLast(backup);
+            }
+        }
+        while (spareQuestions.size() > MAX_SPARE_QUESTIONS) {
+            spareQuestions.removeFirst();
+        }
+    }
 
-                    processResponse(generatedText, callback);
+    private String nextSpare(SeenQuestions seen) {
+        while (!spareQuestions.isEmpty()) {
+            String spare = spareQuestions.pollLast();
+            if (!seen.contains(spare)) return spare;
+        }
+        return null;
+    }
+
+    private static JSONObject quizJson(String reply) {
+        int start = reply.indexOf('{');
+        int end = reply.lastIndexOf('}') + 1;
+        if (start < 0 || end <= start) return null;
+        try {
+            return new JSONObject(reply.substring(start, end));
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    // Sends the request on a low-priority thread without touching the conversation history.
+    // The reply is only delivered, and the turn recorded, if the speculation gets promoted.
+    // Returns null in quiz mode, where answers are graded locally first.
+    public Speculation speculate(String userInput) {
+        if (quizMode) return null;
+        Speculation speculation = new Speculation(userInput);
+        if (!backend.isConfigured()) {
+            speculation.fail(new Exception("API key not set. Please set it in settings."));
+            return speculation;
+        }
+
+        if (debugLogFragment != null) {
+            debugLogFragment.appendLog("Speculative Input: " + userInput);
+        }
+
+        speculativeExecutor.execute(() -> {
+            if (speculation.isCancelled()) return;
+            try {
+                // Taken before the history is read, so a turn recorded in between shows as stale
+                speculation.historyVersion = conversationHistory.version();
+                String generatedText = send(userInput, newRequest(userInput, userInput), speculation);
+                if (generatedText != null) {
+                    speculation.complete(generatedText);
                 }
             } catch (Exception e) {
-                Log.e(TAG, "Error generating response", e);
-                if (debugLogFragment != null) {
-                    debugLogFragment.appendLog("\n=== ERROR DETAILS ===");
-                    debugLogFragment.appendLog("Error Type: " + e.getClass().getSimpleName());
-                    debugLogFragment.appendLog("Error Message: " + e.getMessage());
-                    
-                    // Get the full stack trace
-                    StringWriter sw = new StringWriter();
-                    PrintWriter pw = new PrintWriter(sw);
-                    e.printStackTrace(pw);
-                    debugLogFragment.appendLog("Stack Trace:\n" + sw.toString());
-                    debugLogFragment.appendLog("=== END ERROR ===\n");
+                if (speculation.isCancelled()) return;
+                Log.e(TAG, "Error generating speculative response", e);
+                logError(e);
+                speculation.fail(e);
+            }
+        });
+        return speculation;
+    }
+
+    // Audio turn: the model transcribes and answers in one request, replying with JSON that
+    // carries both the transcript (for the user bubble) and the normal reply text.
+    public void generateAudioResponse(byte[] audio, String mimeType, AudioTurnCallback callback) {
+        if (!backend.isConfigured()) {
+            if (callback != null) {
+                callback.onError("API key not set. Please set it in settings.");
+            }
+            return;
+        }
+        if (!backend.supportsAudio()) {
+            if (callback != null) {
+                callback.onError("The selected model backend does not accept audio.");
+            }
+            return;
+        }
+
+        String description = "[audio " + audio.length + " bytes, " + mimeType + "]";
+        if (debugLogFragment != null) {
+            debugLogFragment.appendLog("User Input: " + description);
+        }
+
+        executor.execute(() -> {
+            try {
+                LlmRequest request = newRequest(description, AUDIO_TURN_INSTRUCTION);
+                request.audio = audio;
+                request.audioMimeType = mimeType;
+                request.jsonOutput = true;
+                JSONObject turn = new JSONObject(send(description, request, null));
+                String transcript = turn.optString("transcript", "").trim();
+                // In quiz mode the reply is itself the quiz JSON, sometimes returned as an object
+                Object reply = turn.opt("reply");
+                String replyText = reply == null ? "" : reply.toString();
+
+                if (quizMode && quizEngine != null && quizEngine.isActive()) {
+                    replyText = quizEngine.continueFrom(replyText);
+                }
+                if (quizMode && (quizEngine == null || !quizEngine.isActive())) {
+                    replyText = suppressRepeat(null, null, replyText, null);
+                    recordAsked(replyText);
                 }
-                mainHandler.post(() -> {
+
+                ui.post(() -> callback.onTranscript(transcript));
+                recordTurn(transcript.isEmpty() ? description : transcript, replyText);
+                processResponse(replyText, callback);
+            } catch (Exception e) {
+                Log.e(TAG, "Error generating audio response", e);
+                logError(e);
+                ui.post(() -> {
                     if (callback != null) {
                         callback.onError("Error: " + e.getMessage());
                     }
@@ -272,6 +477,189 @@ public class GeminiAPI {
         });
     }
 
+    private LlmRequest newRequest(String userInput, String userText) {
+        return pipeline.newRequest(systemPrompt, userInput, userText);
+    }
+
+    /** The conversation history's account in the MemoryBudget; trimming keeps the newest turns. */
+    public MemoryBudget.Trimmable historyTrimmable() {
+        return new MemoryBudget.Trimmable() {
+            @Override
+            public long sizeBytes() {
+                return conversationHistory.length() * 2L;
+            }
+
+            @Override
+            public void trim(float keep) {
+                conversationHistory.trim(keep);
+            }
+        };
+    }
+
+    // Sends the turn and records its latency under the link profile it was shaped for.
+    // Returns null only when the turn was cancelled before a call could be attached.
+    private String send(String userInput, LlmRequest request, Turn turn) throws Exception {
+        long startedAt = SystemClock.elapsedRealtime();
+        String generatedText = sendRouted(userInput, request, turn);
+        LinkEstimator.Profile profile = request.linkProfile;
+        if (generatedText != null && profile != null) {
+            long latency = SystemClock.elapsedRealtime() - startedAt;
+            linkEstimator.recordTurn(profile, latency);
+            if (debugLogFragment != null) {
+                debugLogFragment.appendLog("Link: " + profile + " (" + linkEstimator.describe() + "): history "
+                        + (profile.historyTurns == Integer.MAX_VALUE ? "all" : "last " + profile.historyTurns)
+                        + " turns, " + request.maxOutputTokens + " tokens" + (request.compressBody ? ", gzip" : "")
+                        + "; turn took " + latency + " ms");
+                if (profile != lastLinkProfile) {
+                    debugLogFragment.appendLog(linkEstimator.summary());
+                }
+            }
+            lastLinkProfile = profile;
+        }
+        return generatedText;
+    }
+
+    // Routed by the pipeline, with one failover
+    private String sendRouted(String userInput, LlmRequest request, Turn turn) throws Exception {
+        LlmBackend backend = this.backend;
+        return pipeline.send(backend, TurnPipeline.classify(userInput, request, quizMode), request,
+                attempt -> execute(userInput, backend, attempt, turn), () -> turn != null && turn.isCancelled());
+    }
+
+    private String execute(String userInput, LlmBackend backend, LlmRequest request, Turn turn) throws Exception {
+        Call call = client.newCall(buildRequest(userInput, backend, request));
+        if (turn != null && !turn.attach(call)) return null;
+        try (Response response = call.execute()) {
+            if (!isCompressionRejection(call.request(), response)) {
+                return readGeneratedText(backend, response);
+            }
+            if (debugLogFragment != null) {
+                debugLogFragment.appendLog("Compressed body rejected with HTTP " + response.code()
+                        + ", sending uncompressed from now on");
+            }
+        }
+
+        compressionRejected = true;
+        call = client.newCall(buildRequest(userInput, backend, request));
+        if (turn != null && !turn.attach(call)) return null;
+        try (Response response = call.execute()) {
+            return readGeneratedText(backend, response);
+        }
+    }
+
+    private static boolean isCompressionRejection(Request request, Response response) {
+        return request.header("Content-Encoding") != null && (response.code() == 400 || response.code() == 415);
+    }
+
+    private Request buildRequest(String userInput, LlmBackend backend, LlmRequest llmRequest) throws JSONException {
+        Request request = backend.buildRequest(llmRequest);
+
+        // Log the request details
+        DebugLogFragment debugLogFragment = this.debugLogFragment;
+        if (debugLogFragment != null) {
+            debugLogFragment.appendLog("\n=== REQUEST DETAILS ===");
+            debugLogFragment.appendLog("Backend: " + backend.getName());
+            debugLogFragment.appendLog("URL: " + request.url().newBuilder().removeAllQueryParameters("key").build());
+            debugLogFragment.appendLog("System Prompt: " + llmRequest.systemPrompt);
+            if (llmRequest.history != null) {
+                debugLogFragment.appendLog("Conversation History: " + llmRequest.history);
+            }
+            debugLogFragment.appendLog("User Input: " + userInput);
+            debugLogFragment.appendLog("Language Mode: " + selectedLanguage);
+            if (llmRequest.audio != null) {
+                debugLogFragment.appendLog("Full Request Body: [audio payload omitted]");
+            } else {
+                try {
+                    Buffer buffer = new Buffer();
+                    request.body().writeTo(buffer);
+                    debugLogFragment.appendLog("Full Request Body: " + new JSONObject(buffer.readUtf8()).toString(2));
+                } catch (Exception e) {
+                    debugLogFragment.appendLog("Full Request Body: [unavailable]");
+                }
+            }
+            debugLogFragment.appendLog("=== END REQUEST ===\n");
+        }
+        if (!llmRequest.compressBody || compressionRejected || !backend.acceptsCompressedRequests()) {
+            return request;
+        }
+        return compress(request);
+    }
+
+    // Gzips the body up front, so the request keeps a Content-Length
+    private Request compress(Request request) {
+        RequestBody body = request.body();
+        try {
+            Buffer compressed = new Buffer();
+            try (BufferedSink sink = Okio.buffer(new GzipSink(compressed))) {
+                body.writeTo(sink);
+            }
+            if (debugLogFragment != null) {
+                debugLogFragment.appendLog("Body gzipped: " + body.contentLength() + " -> " + compressed.size() + " bytes");
+            }
+            return request.newBuilder()
+                    .header("Content-Encoding", "gzip")
+                    .post(RequestBody.create(compressed.readByteString(), body.contentType()))
+                    .build();
+        } catch (IOException e) {
+            Log.e(TAG, "Error compressing request body, sending it as is", e);
+            return request;
+        }
+    }
+
+    private String readGeneratedText(LlmBackend backend, Response response) throws Exception {
+        String responseBody = response.body().string();
+
+        // Log the full response
+        if (debugLogFragment != null) {
+            debugLogFragment.appendLog("\n=== RESPONSE DETAILS ===");
+            debugLogFragment.appendLog("Response Code: " + response.code());
+            debugLogFragment.appendLog("Response Message: " + response.message());
+            debugLogFragment.appendLog("Response Body: " + responseBody);
+            debugLogFragment.appendLog("=== END RESPONSE ===\n");
+        }
+
+        if (!response.isSuccessful()) {
+            throw new HttpException(response.code(), responseBody);
+        }
+
+        String generatedText = backend.parseReply(responseBody);
+
+        // Log the generated text
+        if (debugLogFragment != null) {
+            debugLogFragment.appendLog("\n=== GENERATED TEXT ===");
+            debugLogFragment.appendLog(generatedText);
+            debugLogFragment.appendLog("=== END GENERATED TEXT ===\n");
+        }
+        return generatedText;
+    }
+
+    private void recordTurn(String userInput, String generatedText) {
+        conversationHistory.record(userInput, generatedText);
+
+        // Log the updated conversation history
+        if (debugLogFragment != null) {
+            debugLogFragment.appendLog("\n=== CONVERSATION HISTORY ===");
+            debugLogFragment.appendLog(conversationHistory.toString());
+            debugLogFragment.appendLog("=== END CONVERSATION HISTORY ===\n");
+            debugLogFragment.appendLog("\n----------------------------------------\n");
+        }
+    }
+
+    private void logError(Exception e) {
+        if (debugLogFragment != null) {
+            debugLogFragment.appendLog("\n=== ERROR DETAILS ===");
+            debugLogFragment.appendLog("Error Type: " + e.getClass().getSimpleName());
+            debugLogFragment.appendLog("Error Message: " + e.getMessage());
+
+            // Get the full stack trace
+            StringWriter sw = new StringWriter();
+            PrintWriter pw = new PrintWriter(sw);
+            e.printStackTrace(pw);
+            debugLogFragment.appendLog("Stack Trace:\n" + sw.toString());
+            debugLogFragment.appendLog("=== END ERROR ===\n");
+        }
+    }
+
     private void processResponse(String response, GeminiCallback callback) {
         try {
             if (quizMode) {
@@ -300,22 +688,22 @@ public class GeminiAPI {
 
                         
                         
-                        mainHandler.post(() -> callback.onMultiResponse(messages));
+                        ui.post(() -> callback.onMultiResponse(messages));
                     } else {
                         // No JSON found, return as is
-                        mainHandler.post(() -> callback.onResponse(response));
+                        ui.post(() -> callback.onResponse(response));
                     }
                 } catch (JSONException e) {
                     // If not valid JSON, return as is
-                    mainHandler.post(() -> callback.onResponse(response));
+                    ui.post(() -> callback.onResponse(response));
                 }
             } else {
                 // In conversation mode, return response as is
-                mainHandler.post(() -> callback.onResponse(response));
+                ui.post(() -> callback.onResponse(response));
             }
         } catch (Exception e) {
             Log.e(TAG, "Error processing response", e);
-            mainHandler.post(() -> callback.onError("Error processing response: " + e.getMessage()));
+            ui.post(() -> callback.onError("Error processing response: " + e.getMessage()));
         }
     }
 
@@ -323,5 +711,158 @@ public class GeminiAPI {
         void onResponse(String response);
         void onMultiResponse(List<String> responses);
         void onError(String error);
+
+        // The request never got an answer (no route, timeout), so sending it again later can work
+        default void onNetworkError(String error) {
+            onError(error);
+        }
+    }
+
+    public interface AudioTurnCallback extends GeminiCallback {
+        void onTranscript(String transcript);
+    }
+
+    // A request in flight that can be abandoned until its reply is claimed for delivery
+    public static class Turn {
+        private Call call;
+        private boolean cancelled = false;
+        private boolean claimed = false;
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** Returns false if the reply was already claimed and will still be delivered. */
+        public boolean cancel() {
+            Call toCancel;
+            synchronized (this) {
+                if (cancelled || !isCancellable()) return false;
+                cancelled = true;
+                toCancel = call;
+            }
+            if (toCancel != null) {
+                toCancel.cancel();
+            }
+            onCancelled();
+            return true;
+        }
+
+        synchronized boolean attach(Call call) {
+            if (cancelled) return false;
+            this.call = call;
+            return true;
+        }
+
+        synchronized boolean claim() {
+            if (cancelled) return false;
+            claimed = true;
+            return true;
+        }
+
+        boolean isCancellable() {
+            return !claimed;
+        }
+
+        void onCancelled() {}
+    }
+
+    // A request fired ahead of the final transcript. Either promoted, which delivers the
+    // reply (now or once it arrives) and records the turn, or cancelled.
+    public class Speculation extends Turn {
+        private final String userInput;
+        private String generatedText;
+        private Exception error;
+        private GeminiCallback promotedCallback;
+        // The history version the request was built from
+        volatile long historyVersion = -1;
+
+        Speculation(String userInput) {
+            this.userInput = userInput;
+        }
+
+        public String getUserInput() {
+            return userInput;
+        }
+
+        @Override
+        boolean isCancellable() {
+            return promotedCallback == null;
+        }
+
+        @Override
+        void onCancelled() {
+            if (debugLogFragment != null) {
+                debugLogFragment.appendLog("Speculation cancelled: " + userInput);
+            }
+        }
+
+        public void promote(GeminiCallback callback) {
+            synchronized (this) {
+                if (isCancelled() || promotedCallback != null) return;
+                promotedCallback = callback;
+                if (generatedText == null && error == null) return;
+            }
+            deliver();
+        }
+
+        void complete(String text) {
+            synchronized (this) {
+                if (isCancelled()) return;
+                generatedText = text;
+                if (promotedCallback == null) return;
+            }
+            deliver();
+        }
+
+        void fail(Exception e) {
+            synchronized (this) {
+                if (isCancelled()) return;
+                error = e;
+                if (promotedCallback == null) return;
+            }
+            deliver();
+        }
+
+        // History is only ever written from the request executor
+        private void deliver() {
+            if (debugLogFragment != null) {
+                debugLogFragment.appendLog("Speculation promoted: " + userInput);
+            }
+            executor.execute(() -> {
+                if (error != null) {
+                    ui.post(() -> promotedCallback.onError("Error: " + error.getMessage()));
+                    return;
+                }
+                if (conversationHistory.version() != historyVersion) {
+                    resend();
+                    return;
+                }
+                recordTurn(userInput, generatedText);
+                processResponse(generatedText, promotedCallback);
+            });
+        }
+
+        // A turn was recorded after the speculation read the history, so its reply was written
+        // without that turn; ask again with the current history
+        private void resend() {
+            if (debugLogFragment != null) {
+                debugLogFragment.appendLog("Speculation stale, resending: " + userInput);
+            }
+            try {
+                String text = send(userInput, newRequest(userInput, userInput), null);
+                recordTurn(userInput, text);
+                processResponse(text, promotedCallback);
+            } catch (Exception e) {
+                Log.e(TAG, "Error resending stale speculation", e);
+                logError(e);
+                ui.post(() -> {
+                    if (e instanceof IOException) {
+                        promotedCallback.onNetworkError("Error: " + e.getMessage());
+                    } else {
+                        promotedCallback.onError("Error: " + e.getMessage());
+                    }
+                });
+            }
+        }
     }
 }
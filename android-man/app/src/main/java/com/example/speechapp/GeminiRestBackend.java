@@ -0,0 +1,121 @@
+package com.example.speechapp;
+
+import java.util.Base64;
+import java.util.function.Supplier;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Gemini generateContent over plain REST. Also used for the local stand-in server, which
+ * speaks the same protocol.
+ */
+public class GeminiRestBackend implements LlmBackend {
+    public static final String DEFAULT_BASE_URL = "https://generativelanguage.googleapis.com/v1beta";
+    private static final String MODEL = ModelRouter.FLASH;
+
+    private final String name;
+    private final String baseUrl;
+    private final Supplier<String> apiKey;
+
+    public GeminiRestBackend(String name, String baseUrl, Supplier<String> apiKey) {
+        this.name = name;
+        this.baseUrl = trimSlash(baseUrl == null || baseUrl.trim().isEmpty() ? DEFAULT_BASE_URL : baseUrl.trim());
+        this.apiKey = apiKey;
+    }
+
+    @Override
+    public String getName() {
+        return name + " (" + MODEL + " at " + baseUrl + ")";
+    }
+
+    @Override
+    public boolean isConfigured() {
+        String key = apiKey.get();
+        return key != null && !key.isEmpty();
+    }
+
+    @Override
+    public boolean supportsAudio() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsModelRouting() {
+        return true;
+    }
+
+    @Override
+    public boolean acceptsCompressedRequests() {
+        return true;
+    }
+
+    @Override
+    public Request buildRequest(LlmRequest request) throws JSONException {
+        JSONObject requestBody = new JSONObject();
+        JSONArray contents = new JSONArray();
+
+        // Add system prompt
+        contents.put(userContent(textPart(request.systemPrompt)));
+
+        if (request.history != null) {
+            contents.put(userContent(textPart(request.history)));
+        }
+
+        JSONArray userParts = new JSONArray().put(new JSONObject().put("text", request.userText));
+        if (request.audio != null) {
+            userParts.put(new JSONObject().put("inline_data", new JSONObject()
+                .put("mime_type", request.audioMimeType)
+                .put("data", Base64.getEncoder().encodeToString(request.audio))));
+        }
+        contents.put(new JSONObject().put("role", "user").put("parts", userParts));
+
+        JSONObject generationConfig = new JSONObject()
+            .put("temperature", request.temperature)
+            .put("topK", 1)
+            .put("topP", 1)
+            .put("maxOutputTokens", request.maxOutputTokens);
+        if (request.jsonOutput) {
+            generationConfig.put("responseMimeType", "application/json");
+        }
+
+        requestBody.put("contents", contents);
+        requestBody.put("safetySettings", new JSONArray());
+        requestBody.put("generationConfig", generationConfig);
+
+        return new Request.Builder()
+            .url(baseUrl + "/models/" + modelFor(request) + ":generateContent?key=" + apiKey.get())
+            .post(RequestBody.create(requestBody.toString(), MediaType.parse("application/json")))
+            .build();
+    }
+
+    @Override
+    public String parseReply(String responseBody) throws JSONException {
+        return new JSONObject(responseBody)
+            .getJSONArray("candidates")
+            .getJSONObject(0)
+            .getJSONObject("content")
+            .getJSONArray("parts")
+            .getJSONObject(0)
+            .getString("text");
+    }
+
+    private static String modelFor(LlmRequest request) {
+        return request.model != null ? request.model : MODEL;
+    }
+
+    private static JSONObject userContent(JSONObject part) throws JSONException {
+        return new JSONObject().put("role", "user").put("parts", new JSONArray().put(part));
+    }
+
+    private static JSONObject textPart(String text) throws JSONException {
+        return new JSONObject().put("text", text);
+    }
+
+    static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
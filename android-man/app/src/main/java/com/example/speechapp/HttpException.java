@@ -0,0 +1,15 @@
+package com.example.speechapp;
+
+// A reply with a non-2xx status; deliberately not an IOException, the request did get through
+class HttpException extends Exception {
+    final int code;
+
+    HttpException(int code, String body) {
+        super("HTTP " + code + ": " + body);
+        this.code = code;
+    }
+
+    boolean isRetryable() {
+        return code == 429 || code >= 500;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.speechapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges user messages sent in quick succession into one model turn. Each message restarts
+ * a short debounce window; when it elapses the pending messages go out together. A message
+ * that arrives while the previous turn is still waiting for its reply supersedes that turn:
+ * the request is cancelled and its messages are sent again along with the new one. A turn
+ * that already got its reply or failed is left alone, so report those to onTurnFinished.
+ *
+ * Main thread only.
+ */
+public class InputCoalescer {
+    public static final long DEFAULT_WINDOW_MILLIS = 800;
+
+    public interface Sender {
+        GeminiAPI.Turn send(String mergedInput);
+    }
+
+    private final Sender sender;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<String> pending = new ArrayList<>();
+    private final List<String> inFlight = new ArrayList<>();
+    private final Runnable flush = this::flush;
+    private GeminiAPI.Turn inFlightTurn;
+    private long windowMillis = DEFAULT_WINDOW_MILLIS;
+
+    public InputCoalescer(Sender sender) {
+        this.sender = sender;
+    }
+
+    public void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    /** The turn got its reply or failed for good; later messages go out on their own. */
+    public void onTurnFinished(GeminiAPI.Turn turn) {
+        if (turn != inFlightTurn) return;
+        inFlightTurn = null;
+        inFlight.clear();
+    }
+
+    public void submit(String input) {
+        if (inFlightTurn != null && inFlightTurn.cancel()) {
+            // Its reply never reached the history, so the earlier messages go out again
+            pending.addAll(0, inFlight);
+        }
+        inFlightTurn = null;
+        inFlight.clear();
+
+        pending.add(input);
+        handler.removeCallbacks(flush);
+        if (windowMillis <= 0) {
+            flush();
+        } else {
+            handler.postDelayed(flush, windowMillis);
+        }
+    }
+
+    /** Sends whatever is still inside the debounce window right away. */
+    public void flushPending() {
+        handler.removeCallbacks(flush);
+        flush();
+    }
+
+    public void cancel() {
+        handler.removeCallbacks(flush);
+        pending.clear();
+        if (inFlightTurn != null) {
+            inFlightTurn.cancel();
+            inFlightTurn = null;
+        }
+        inFlight.clear();
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) return;
+        inFlight.addAll(pending);
+        pending.clear();
+        inFlightTurn = sender.send(join(inFlight));
+    }
+
+    static String join(List<String> messages) {
+        StringBuilder sb = new StringBuilder();
+        for (String message : messages) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(message.trim());
+        }
+        return sb.toString();
+    }
+}
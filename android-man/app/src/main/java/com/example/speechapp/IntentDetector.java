@@ -0,0 +1,283 @@
+package com.example.speechapp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Recognizes local intents (quiz control, language switches, the end of a quiz) in a
+ * transcript or a bot reply. All phrases are compiled into one Aho-Corasick automaton, and
+ * the text is folded (lowercase, punctuation to single spaces, nukta dropped) while it is
+ * fed through, so classification is a single pass over the input however many phrases
+ * there are. A phrase shortly after a negation ("don't stop the quiz", "mat") does not
+ * count; a comma or full stop ends the negation, so "nahi, agla sawal" still moves on.
+ *
+ * Instances are immutable after construction and safe to share.
+ */
+public class IntentDetector {
+    public enum Intent {
+        START_QUIZ,
+        PAUSE_QUIZ,
+        RESUME_QUIZ,
+        STOP_QUIZ,
+        NEXT_QUESTION,
+        SWITCH_LANGUAGE,
+        QUIZ_ENDED
+    }
+
+    public static class Result {
+        public final Intent intent;
+        /** The target language for SWITCH_LANGUAGE, null otherwise. */
+        public final String language;
+
+        Result(Intent intent, String language) {
+            this.intent = intent;
+            this.language = language;
+        }
+    }
+
+    // Commands are short; a longer utterance that mentions "stop" is a sentence, not a command
+    private static final int MAX_COMMAND_WORDS = 6;
+    private static final char NUKTA = '़';
+    // How many words back a negation still reaches: "don't start a new quiz"
+    private static final int NEGATION_WORDS = 3;
+    private static final String CLAUSE_BREAKS = ",.;:!?।";
+    private static final Set<String> NEGATIONS = new HashSet<>();
+
+    static {
+        for (String word : new String[] {"dont", "not", "never", "mat", "nahi", "nahin", "मत", "नहीं", "नही"}) {
+            NEGATIONS.add(fold(word));
+        }
+    }
+
+    private static IntentDetector commands;
+    private static IntentDetector replies;
+
+    /** Spoken or typed control commands in English, Hinglish and Devanagari. */
+    public static synchronized IntentDetector commands() {
+        if (commands == null) {
+            IntentDetector detector = new IntentDetector(MAX_COMMAND_WORDS);
+            detector.add(Intent.START_QUIZ, null, false, "start quiz", "start a quiz", "start the quiz",
+                    "new quiz", "quiz start karo", "quiz shuru karo", "क्विज शुरू करो", "क्विज़ शुरू करो");
+            detector.add(Intent.PAUSE_QUIZ, null, false, "pause quiz", "pause the quiz", "quiz pause karo",
+                    "quiz roko", "क्विज रोको");
+            detector.add(Intent.PAUSE_QUIZ, null, true, "pause", "ruko", "रुको");
+            detector.add(Intent.RESUME_QUIZ, null, false, "resume quiz", "resume the quiz", "continue quiz",
+                    "continue the quiz", "quiz jari rakho", "क्विज जारी रखो");
+            detector.add(Intent.RESUME_QUIZ, null, true, "resume", "continue", "jari rakho", "जारी रखो");
+            detector.add(Intent.STOP_QUIZ, null, false, "stop quiz", "stop the quiz", "end quiz", "end the quiz",
+                    "quit quiz", "quiz band karo", "quiz khatam karo", "क्विज बंद करो", "क्विज खत्म करो");
+            detector.add(Intent.STOP_QUIZ, null, true, "stop", "band karo", "बंद करो");
+            detector.add(Intent.NEXT_QUESTION, null, false, "next question", "skip question", "skip this question",
+                    "skip this one", "agla sawal", "agla question", "अगला सवाल", "अगला प्रश्न");
+            detector.add(Intent.NEXT_QUESTION, null, true, "skip", "next", "pass");
+            addLanguage(detector, "english", "english", "angrezi", "अंग्रेजी", "इंग्लिश");
+            addLanguage(detector, "hindi", "hindi", "हिंदी", "हिन्दी");
+            addLanguage(detector, "hinglish", "hinglish", "हिंग्लिश");
+            addLanguage(detector, "kannada", "kannada", "कन्नड", "ಕನ್ನಡ");
+            addLanguage(detector, "telugu", "telugu", "तेलुगु", "తెలుగు");
+            detector.build();
+            commands = detector;
+        }
+        return commands;
+    }
+
+    /** Phrases in a bot reply that mean the quiz is over. */
+    public static synchronized IntentDetector replies() {
+        if (replies == null) {
+            IntentDetector detector = new IntentDetector(0);
+            detector.add(Intent.QUIZ_ENDED, null, false, "quiz is over", "quiz has ended", "end of quiz",
+                    "end of the quiz", "quiz complete", "quiz completed", "quiz finished", "quiz is finished",
+                    "thank you for taking the quiz", "quiz khatam", "क्विज खत्म", "क्विज समाप्त");
+            detector.build();
+            replies = detector;
+        }
+        return replies;
+    }
+
+    private static void addLanguage(IntentDetector detector, String language, String... names) {
+        List<String> phrases = new ArrayList<>();
+        for (String name : names) {
+            phrases.add("switch to " + name);
+            phrases.add("change to " + name);
+            phrases.add("speak in " + name);
+            phrases.add("talk in " + name);
+            phrases.add("reply in " + name);
+            phrases.add(name + " mein bolo");
+            phrases.add(name + " mein baat karo");
+            phrases.add(name + " में बोलो");
+            phrases.add(name + " में बात करो");
+        }
+        detector.add(Intent.SWITCH_LANGUAGE, language, false, phrases.toArray(new String[0]));
+    }
+
+    private static class Pattern {
+        final Result result;
+        final int length;
+        final int words;
+        final boolean whole;
+
+        Pattern(Result result, int length, int words, boolean whole) {
+            this.result = result;
+            this.length = length;
+            this.words = words;
+            this.whole = whole;
+        }
+    }
+
+    private final int maxWords;
+    private final List<Map<Character, Integer>> children = new ArrayList<>();
+    private final List<List<Pattern>> outputs = new ArrayList<>();
+    private int[] fail;
+    private boolean built = false;
+
+    private IntentDetector(int maxWords) {
+        this.maxWords = maxWords;
+        newNode();
+    }
+
+    /**
+     * Adds phrases for one intent. A whole phrase only counts when it is the entire text,
+     * for single words like "stop" that would otherwise fire inside ordinary sentences.
+     */
+    private void add(Intent intent, String language, boolean whole, String... phrases) {
+        Result result = new Result(intent, language);
+        for (String phrase : phrases) {
+            // Padded with the folded word breaks, so phrases only match whole words
+            String folded = " " + fold(phrase) + " ";
+            int node = 0;
+            for (int i = 0; i < folded.length(); i++) {
+                char c = folded.charAt(i);
+                Integer next = children.get(node).get(c);
+                if (next == null) {
+                    next = newNode();
+                    children.get(node).put(c, next);
+                }
+                node = next;
+            }
+            outputs.get(node).add(new Pattern(result, folded.length(), folded.trim().split(" ").length, whole));
+        }
+    }
+
+    private int newNode() {
+        children.add(new HashMap<>());
+        outputs.add(new ArrayList<>(0));
+        return children.size() - 1;
+    }
+
+    // Failure links by breadth-first search; each node inherits the outputs of its failure
+    // node, so a match never needs to walk the suffix chain at search time
+    private void build() {
+        fail = new int[children.size()];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : children.get(0).values()) {
+            fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Character, Integer> edge : children.get(node).entrySet()) {
+                char c = edge.getKey();
+                int child = edge.getValue();
+                int f = fail[node];
+                while (f != 0 && !children.get(f).containsKey(c)) {
+                    f = fail[f];
+                }
+                Integer target = children.get(f).get(c);
+                fail[child] = target != null && target != child ? target : 0;
+                outputs.get(child).addAll(outputs.get(fail[child]));
+                queue.add(child);
+            }
+        }
+        built = true;
+    }
+
+    /** The first intent found in the text, or null if there is none. */
+    public Result detect(String text) {
+        if (!built || text == null) return null;
+        int node = step(0, ' ');
+        int position = 1;
+        int words = 0;
+        // Word number of the last negation in this clause, 0 if none
+        int negatedAt = 0;
+        StringBuilder word = new StringBuilder();
+        char previous = ' ';
+        Result found = null;
+        Result wholeCandidate = null;
+        int wholeEnd = -1;
+
+        for (int i = 0; i <= text.length(); i++) {
+            char raw = i < text.length() ? text.charAt(i) : ' ';
+            char c = foldChar(raw);
+            if (c == 0 || c == ' ' && previous == ' ') {
+                if (CLAUSE_BREAKS.indexOf(raw) >= 0) negatedAt = 0;
+                continue;
+            }
+            if (c != ' ' && previous == ' ') {
+                words++;
+                if (maxWords > 0 && words > maxWords) return null;
+            }
+            if (c != ' ') {
+                word.append(c);
+            } else {
+                if (NEGATIONS.contains(word.toString())) negatedAt = words;
+                if (CLAUSE_BREAKS.indexOf(raw) >= 0) negatedAt = 0;
+                word.setLength(0);
+            }
+            previous = c;
+            node = step(node, c);
+            position++;
+            for (Pattern pattern : outputs.get(node)) {
+                if (!pattern.whole) {
+                    int firstWord = words - pattern.words + 1;
+                    boolean negated = negatedAt > 0 && negatedAt < firstWord
+                            && firstWord - negatedAt <= NEGATION_WORDS;
+                    if (found == null && !negated) found = pattern.result;
+                } else if (position == pattern.length) {
+                    wholeCandidate = pattern.result;
+                    wholeEnd = position;
+                }
+            }
+            // Without a word limit the first hit is final; with one, keep counting words
+            if (found != null && maxWords == 0) return found;
+        }
+        if (found != null) return found;
+        return wholeCandidate != null && wholeEnd == position ? wholeCandidate : null;
+    }
+
+    private int step(int node, char c) {
+        while (true) {
+            Integer next = children.get(node).get(c);
+            if (next != null) return next;
+            if (node == 0) return 0;
+            node = fail[node];
+        }
+    }
+
+    // Lowercase letters and combining marks; everything else is a word break. 0 means skip.
+    private static char foldChar(char c) {
+        if (c == NUKTA) return 0;
+        int type = Character.getType(c);
+        if (Character.isLetterOrDigit(c) || type == Character.NON_SPACING_MARK
+                || type == Character.COMBINING_SPACING_MARK) {
+            return Character.toLowerCase(c);
+        }
+        return c == '\'' || c == '’' ? 0 : ' ';
+    }
+
+    private static String fold(String phrase) {
+        StringBuilder sb = new StringBuilder(phrase.length());
+        char previous = ' ';
+        for (int i = 0; i < phrase.length(); i++) {
+            char c = foldChar(phrase.charAt(i));
+            if (c == 0 || c == ' ' && previous == ' ') continue;
+            sb.append(c);
+            previous = c;
+        }
+        return sb.toString().trim();
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.speechapp;
+
+/**
+ * Classifies a transcript or typed message into one of the app's language modes without a
+ * network call. Indic scripts are decided by Unicode block (Devanagari means Hindi, plus
+ * Kannada and Telugu); Latin text is scored by a small character-trigram model trained at
+ * class load from the seed phrases below to tell English from romanized Hindi (Hinglish).
+ *
+ * Trigrams are hashed into a fixed number of buckets, so the model is two float arrays and
+ * classification is one allocation-free pass over the text, around a microsecond per turn.
+ *
+ * A result switches the reply language, so short text and Latin text scoring close to both
+ * models are left undecided rather than guessed: one-word answers are often names or loan
+ * words, and "Paris" says nothing about the language the user speaks.
+ */
+public final class LanguageIdentifier {
+    public static final String ENGLISH = "english";
+    public static final String HINDI = "hindi";
+    public static final String HINGLISH = "hinglish";
+    public static final String KANNADA = "kannada";
+    public static final String TELUGU = "telugu";
+
+    private static final int BUCKETS = 1 << 12;
+    private static final int MIN_LETTERS = 4;
+    private static final int MIN_WORDS = 3;
+    // Average per-trigram log-likelihood ratio needed either way before Latin text is decided
+    private static final float MARGIN = 0.25f;
+
+    private static final String[] ENGLISH_SEED = {
+        "what is the capital of france",
+        "the answer is paris",
+        "can you tell me more about that",
+        "i think it is the right answer",
+        "please ask me the next question",
+        "how are you doing today",
+        "that was a great explanation thank you",
+        "i don't know the answer to this one",
+        "which planet is the largest in our solar system",
+        "who wrote the national anthem",
+        "let's talk about something else",
+        "could you explain it again in simple words",
+        "what time is it where you are",
+        "tell me a fun fact about animals",
+        "my favourite subject at school was history",
+        "the river flows through the city",
+        "start the quiz please",
+        "stop the quiz now",
+        "i would like to learn about science",
+        "is this correct or wrong",
+        "the weather is really nice this evening",
+        "where should we go for dinner tonight",
+        "this is interesting tell me why",
+        "thanks for your help with this",
+        "what does this word mean",
+    };
+
+    private static final String[] HINGLISH_SEED = {
+        "kya haal hai aaj kal",
+        "mujhe nahi pata iska jawab",
+        "bharat ki rajdhani kya hai",
+        "jawab dilli hai",
+        "aap kaise ho bhai",
+        "kya plan hai weekend ka",
+        "movie kaisi thi yaar",
+        "agla sawal poochho na",
+        "mujhe samajh nahi aaya phir se batao",
+        "yeh bahut accha tha dhanyavaad",
+        "main theek hoon aur aap",
+        "kal hum bazaar jayenge",
+        "iska matlab kya hota hai",
+        "thoda aasaan shabdon mein samjhao",
+        "quiz shuru karo",
+        "quiz band karo abhi",
+        "mera pasandida vishay itihaas tha",
+        "sabse bada grah kaunsa hai",
+        "sahi hai ya galat",
+        "aaj mausam bahut accha hai",
+        "chalo kuch aur baat karte hain",
+        "mujhe vigyan ke baare mein seekhna hai",
+        "hindi mein baat karo",
+        "haan bilkul sahi jawab hai",
+        "kyunki mujhe lagta hai ki yeh sahi hai",
+    };
+
+    private static final float[] ENGLISH_MODEL = train(ENGLISH_SEED);
+    private static final float[] HINGLISH_MODEL = train(HINGLISH_SEED);
+
+    private LanguageIdentifier() {}
+
+    /**
+     * Returns one of the language constants, or null when the text is too short or too
+     * close to call.
+     */
+    public static String identify(String text) {
+        if (text == null) return null;
+
+        int devanagari = 0;
+        int kannada = 0;
+        int telugu = 0;
+        int latin = 0;
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean letter = true;
+            if (c >= 0x0900 && c <= 0x097F) {
+                devanagari++;
+            } else if (c >= 0x0C80 && c <= 0x0CFF) {
+                kannada++;
+            } else if (c >= 0x0C00 && c <= 0x0C7F) {
+                telugu++;
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                latin++;
+            } else {
+                letter = false;
+            }
+            if (letter && !inWord) {
+                words++;
+            }
+            inWord = letter || (inWord && !Character.isWhitespace(c));
+        }
+        if (words < MIN_WORDS) return null;
+
+        int indic = Math.max(devanagari, Math.max(kannada, telugu));
+        if (indic >= MIN_LETTERS / 2 && indic >= latin) {
+            if (indic == devanagari) return HINDI;
+            return indic == kannada ? KANNADA : TELUGU;
+        }
+        if (latin < MIN_LETTERS) return null;
+
+        float score = hinglishScore(text);
+        if (score > MARGIN) return HINGLISH;
+        return score < -MARGIN ? ENGLISH : null;
+    }
+
+    /** Average log-likelihood ratio of Hinglish over English per trigram of the Latin text. */
+    static float hinglishScore(String text) {
+        float score = 0f;
+        int trigrams = 0;
+        char a = ' ';
+        char b = ' ';
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? normalize(text.charAt(i)) : ' ';
+            if (c == ' ' && b == ' ') continue; // Collapse runs of separators
+            if (!(a == ' ' && b == ' ')) {
+                int bucket = bucket(a, b, c);
+                score += HINGLISH_MODEL[bucket] - ENGLISH_MODEL[bucket];
+                trigrams++;
+            }
+            a = b;
+            b = c;
+        }
+        return trigrams == 0 ? 0f : score / trigrams;
+    }
+
+    private static float[] train(String[] corpus) {
+        int[] counts = new int[BUCKETS];
+        int total = 0;
+        for (String line : corpus) {
+            String padded = " " + line + " ";
+            for (int i = 0; i + 2 < padded.length(); i++) {
+                counts[bucket(padded.charAt(i), padded.charAt(i + 1), padded.charAt(i + 2))]++;
+                total++;
+            }
+        }
+        float[] model = new float[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            // Add-one smoothing keeps unseen trigrams from dominating
+            model[i] = (float) Math.log((counts[i] + 1.0) / (total + BUCKETS));
+        }
+        return model;
+    }
+
+    private static char normalize(char c) {
+        if (c >= 'A' && c <= 'Z') return (char) (c + 32);
+        if ((c >= 'a' && c <= 'z') || c == '\'') return c;
+        return ' ';
+    }
+
+    private static int bucket(char a, char b, char c) {
+        int h = a * 31 * 31 + b * 31 + c;
+        h ^= h >>> 7;
+        return h & (BUCKETS - 1);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.speechapp;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rolling end-of-speech to reply latencies per input path, used to A/B the platform
+ * recognizer + text request against sending audio to Gemini directly. Keeps the last
+ * WINDOW samples per path. Thread-safe.
+ */
+public class LatencyComparison {
+    private static final int WINDOW = 50;
+
+    private final Map<String, Samples> paths = new LinkedHashMap<>();
+
+    public synchronized void record(String path, long millis) {
+        Samples samples = paths.get(path);
+        if (samples == null) {
+            samples = new Samples();
+            paths.put(path, samples);
+        }
+        samples.add(millis);
+    }
+
+    public synchronized String summary() {
+        StringBuilder sb = new StringBuilder("Speech-to-reply latency:");
+        for (Map.Entry<String, Samples> entry : paths.entrySet()) {
+            Samples samples = entry.getValue();
+            sb.append("\n  ").append(entry.getKey())
+                .append(": n=").append(samples.total)
+                .append(" p50=").append(samples.percentile(50)).append(" ms")
+                .append(" p90=").append(samples.percentile(90)).append(" ms");
+        }
+        return sb.toString();
+    }
+
+    private static class Samples {
+        final long[] values = new long[WINDOW];
+        int total = 0;
+
+        void add(long millis) {
+            values[total % WINDOW] = millis;
+            total++;
+        }
+
+        long percentile(int p) {
+            int count = Math.min(total, WINDOW);
+            if (count == 0) return 0;
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(p / 100.0 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.speechapp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * Estimates the quality of the current network link from our own HTTP calls and maps it
+ * to a request-shaping profile. Round-trip time comes from TCP handshakes and, when the
+ * server reports its own processing time (Server-Timing), from time to first byte minus
+ * that time. Downstream throughput comes from reading response bodies. Both are smoothed
+ * with an EWMA; a failed call marks the link poor for a while.
+ *
+ * Each turn is recorded with the profile it was sent under, so the policy's effect on
+ * latency can be read from summary(). Thread-safe.
+ */
+public class LinkEstimator {
+    private static final double ALPHA = 0.3;
+    private static final long FAILURE_MILLIS = 60 * 1000;
+    // Smaller bodies arrive with the headers and say nothing about throughput
+    private static final long MIN_THROUGHPUT_BYTES = 1024;
+    private static final long MIN_TRANSFER_MILLIS = 5;
+    private static final int TURN_WINDOW = 50;
+
+    /** How a request is shaped for the link: history turns sent, output budget and body compression. */
+    public enum Profile {
+        GOOD(Integer.MAX_VALUE, LlmRequest.DEFAULT_MAX_OUTPUT_TOKENS, false),
+        FAIR(6, 500, true),
+        POOR(2, 300, true);
+
+        public final int historyTurns;
+        public final int maxOutputTokens;
+        public final boolean compress;
+
+        Profile(int historyTurns, int maxOutputTokens, boolean compress) {
+            this.historyTurns = historyTurns;
+            this.maxOutputTokens = maxOutputTokens;
+            this.compress = compress;
+        }
+    }
+
+    private final LongSupplier clock;
+    private double rttMillis = -1;
+    private double bytesPerSecond = -1;
+    private long lastFailureAt = Long.MIN_VALUE / 2;
+    private final Map<Profile, long[]> turnLatencies = new EnumMap<>(Profile.class);
+    private final Map<Profile, Integer> turnCounts = new EnumMap<>(Profile.class);
+
+    public LinkEstimator() {
+        this(System::currentTimeMillis);
+    }
+
+    public LinkEstimator(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /** For OkHttpClient.Builder.eventListenerFactory; feeds every call's timings in. */
+    public EventListener.Factory listenerFactory() {
+        return call -> new CallListener();
+    }
+
+    public synchronized Profile profile() {
+        if (clock.getAsLong() - lastFailureAt < FAILURE_MILLIS) return Profile.POOR;
+        if (rttMillis >= 700 || bytesPerSecond >= 0 && bytesPerSecond < 16 * 1024) return Profile.POOR;
+        if (rttMillis >= 250 || bytesPerSecond >= 0 && bytesPerSecond < 64 * 1024) return Profile.FAIR;
+        return Profile.GOOD;
+    }
+
+    public synchronized void addRtt(long millis) {
+        if (millis < 0) return;
+        rttMillis = rttMillis < 0 ? millis : rttMillis + ALPHA * (millis - rttMillis);
+    }
+
+    public synchronized void addTransfer(long bytes, long millis) {
+        if (bytes < MIN_THROUGHPUT_BYTES) return;
+        double sample = bytes * 1000.0 / Math.max(MIN_TRANSFER_MILLIS, millis);
+        bytesPerSecond = bytesPerSecond < 0 ? sample : bytesPerSecond + ALPHA * (sample - bytesPerSecond);
+    }
+
+    public synchronized void addFailure() {
+        lastFailureAt = clock.getAsLong();
+    }
+
+    /** Records how long a turn sent under the given profile took, end to end. */
+    public synchronized void recordTurn(Profile profile, long latencyMillis) {
+        long[] latencies = turnLatencies.get(profile);
+        if (latencies == null) {
+            latencies = new long[TURN_WINDOW];
+            turnLatencies.put(profile, latencies);
+        }
+        int count = turnCounts.getOrDefault(profile, 0);
+        latencies[count % TURN_WINDOW] = latencyMillis;
+        turnCounts.put(profile, count + 1);
+    }
+
+    public synchronized String describe() {
+        return (rttMillis < 0 ? "rtt ?" : "rtt " + Math.round(rttMillis) + " ms") + ", "
+                + (bytesPerSecond < 0 ? "? KB/s" : Math.round(bytesPerSecond / 1024) + " KB/s")
+                + (clock.getAsLong() - lastFailureAt < FAILURE_MILLIS ? ", recent failure" : "");
+    }
+
+    public synchronized String summary() {
+        StringBuilder sb = new StringBuilder("Link: " + profile() + " (" + describe() + ")");
+        for (Map.Entry<Profile, long[]> entry : turnLatencies.entrySet()) {
+            int count = Math.min(turnCounts.get(entry.getKey()), TURN_WINDOW);
+            long[] sorted = Arrays.copyOf(entry.getValue(), count);
+            Arrays.sort(sorted);
+            sb.append("\n  ").append(entry.getKey()).append(" turns: n=").append(turnCounts.get(entry.getKey()))
+                    .append(" p50=").append(sorted[(count - 1) / 2]).append(" ms p95=")
+                    .append(sorted[(int) Math.ceil(0.95 * count) - 1]).append(" ms");
+        }
+        return sb.toString();
+    }
+
+    // One per call, so the timestamps need no locking
+    private class CallListener extends EventListener {
+        private long connectStartedAt = -1;
+        private long requestStartedAt = -1;
+        private long headersAt = -1;
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connectStartedAt = clock.getAsLong();
+        }
+
+        // The TCP handshake is one round trip; TLS adds more, so stop the clock before it
+        @Override
+        public void secureConnectStart(Call call) {
+            endHandshake();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            endHandshake();
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol,
+                                  IOException e) {
+            connectStartedAt = -1;
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            requestStartedAt = clock.getAsLong();
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            headersAt = clock.getAsLong();
+            long serverMillis = serverTiming(response.header("Server-Timing"));
+            if (serverMillis >= 0 && requestStartedAt >= 0) {
+                addRtt(headersAt - requestStartedAt - serverMillis);
+            }
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            if (headersAt >= 0) {
+                addTransfer(byteCount, clock.getAsLong() - headersAt);
+            }
+        }
+
+        @Override
+        public void callFailed(Call call, IOException e) {
+            if (!call.isCanceled()) addFailure();
+        }
+
+        private void endHandshake() {
+            if (connectStartedAt < 0) return;
+            addRtt(clock.getAsLong() - connectStartedAt);
+            connectStartedAt = -1;
+        }
+    }
+
+    // "gfet4t7; dur=1234" -> 1234, or -1 without a duration
+    static long serverTiming(String header) {
+        if (header == null) return -1;
+        int at = header.indexOf("dur=");
+        if (at < 0) return -1;
+        int end = at + 4;
+        while (end < header.length() && (Character.isDigit(header.charAt(end)) || header.charAt(end) == '.')) {
+            end++;
+        }
+        try {
+            return Math.round(Double.parseDouble(header.substring(at + 4, end)));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
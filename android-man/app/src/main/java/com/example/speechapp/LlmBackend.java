@@ -0,0 +1,33 @@
+package com.example.speechapp;
+
+import okhttp3.Request;
+import org.json.JSONException;
+
+/**
+ * A model endpoint GeminiAPI can talk to. Backends only translate between an LlmRequest and
+ * their HTTP wire format; conversation state, retries and delivery stay in GeminiAPI, so a
+ * backend can be swapped from Settings without touching the UI.
+ */
+public interface LlmBackend {
+    String getName();
+
+    /** False when a required credential is missing, so no request is worth sending. */
+    boolean isConfigured();
+
+    boolean supportsAudio();
+
+    /** True if the backend honours LlmRequest.model, so ModelRouter may pick one per request. */
+    default boolean supportsModelRouting() {
+        return false;
+    }
+
+    /** True if the server takes gzip request bodies (Content-Encoding: gzip). */
+    default boolean acceptsCompressedRequests() {
+        return false;
+    }
+
+    Request buildRequest(LlmRequest request) throws JSONException;
+
+    /** Extracts the reply text from a successful response body. */
+    String parseReply(String responseBody) throws JSONException;
+}
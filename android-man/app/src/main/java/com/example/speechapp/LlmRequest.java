@@ -0,0 +1,29 @@
+package com.example.speechapp;
+
+/**
+ * One model turn in backend-neutral form: the system prompt, the flattened conversation so
+ * far and the user's text, optionally with inline audio.
+ */
+public class LlmRequest {
+    public static final int DEFAULT_MAX_OUTPUT_TOKENS = 800;
+
+    public final String systemPrompt;
+    public final String userText;
+    // Null leaves the choice to the backend
+    public String model;
+    public String history;
+    public byte[] audio;
+    public String audioMimeType;
+    public boolean jsonOutput;
+    public int maxOutputTokens = DEFAULT_MAX_OUTPUT_TOKENS;
+    public double temperature = 0.5;
+    // Gzip the body if the backend accepts it; set by GeminiAPI on slow links
+    public boolean compressBody;
+    // The link profile the request was shaped for; backends ignore it
+    public LinkEstimator.Profile linkProfile;
+
+    public LlmRequest(String systemPrompt, String userText) {
+        this.systemPrompt = systemPrompt;
+        this.userText = userText;
+    }
+}
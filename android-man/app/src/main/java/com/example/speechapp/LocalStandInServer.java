@@ -0,0 +1,501 @@
+package com.example.speechapp;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A tiny deterministic model server on 127.0.0.1 for offline development, tests and load
+ * runs. It answers Gemini generateContent as well as OpenAI chat completions, so every
+ * backend can be pointed at it. Replies depend only on the request, never on time or
+ * randomness: the same turn always gets the same answer.
+ *
+ * For load runs, Conditions add server time, link delay, a bandwidth cap, chunked or SSE
+ * delivery and injected 429/503 faults. Faults come from a seeded generator, so a run
+ * with the same seed and request order fails the same requests.
+ *
+ * Plain java.net and org.json, so it also runs on a desktop JVM; failures are reported
+ * through the Logger hook (android.util.Log in the app), silent by default.
+ */
+public class LocalStandInServer {
+    private static final String[] QUESTIONS = {
+        "What is the capital of India?",
+        "Which planet is known as the Red Planet?",
+        "How many continents are there?",
+        "Which river is the longest in India?",
+        "Who wrote the national anthem of India?",
+    };
+
+    // Slice size for paced transfers; small enough to keep a capped transfer smooth
+    private static final int SLICE_BYTES = 1024;
+    // Far above any turn with audio; a larger Content-Length or gunzipped body is refused
+    private static final int MAX_BODY_BYTES = 8 * 1024 * 1024;
+
+    /** How requests are answered. Not to be changed after it is passed to setConditions. */
+    public static class Conditions {
+        // Server processing time per request, taken in turn, reported in Server-Timing
+        public long[] latenciesMillis = {0};
+        // Spent before the headers but not reported, so clients count it as round-trip time
+        public long linkDelayMillis = 0;
+        // Per direction; 0 for no cap
+        public long bytesPerSecond = 0;
+        // generateContent bodies go out with chunked transfer encoding
+        public boolean chunked = false;
+        // Pieces of a chunked body, or events of a streamGenerateContent reply
+        public int chunks = 8;
+        public long chunkDelayMillis = 0;
+        public double rate429 = 0;
+        public double rate5xx = 0;
+        public long seed = 1;
+
+        long latency(long request) {
+            return latenciesMillis.length == 0 ? 0 : latenciesMillis[(int) (request % latenciesMillis.length)];
+        }
+    }
+
+    public interface Logger {
+        void log(String message, Throwable error);
+    }
+
+    private final ServerSocket serverSocket;
+    // Workers sleep through simulated time, so each open connection gets its own
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong faults429 = new AtomicLong();
+    private final AtomicLong faults5xx = new AtomicLong();
+    private volatile Conditions conditions = new Conditions();
+    private Random faultRandom = new Random(conditions.seed);
+    private volatile boolean running = false;
+    private volatile Logger logger = (message, error) -> {};
+
+    public LocalStandInServer() throws IOException {
+        this(0);
+    }
+
+    public LocalStandInServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    public void setLogger(Logger logger) {
+        this.logger = logger;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "StandInServer");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        workers.shutdownNow();
+    }
+
+    public synchronized void setConditions(Conditions conditions) {
+        this.conditions = conditions;
+        this.faultRandom = new Random(conditions.seed);
+    }
+
+    public String describe() {
+        return "Stand-in server: " + requests.get() + " requests, " + faults429.get() + " answered 429, "
+                + faults5xx.get() + " answered 503";
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Base URL for GeminiRestBackend. */
+    public String getGeminiBaseUrl() {
+        return "http://127.0.0.1:" + getPort() + "/v1beta";
+    }
+
+    /** Base URL for OpenAiCompatibleBackend. */
+    public String getOpenAiBaseUrl() {
+        return "http://127.0.0.1:" + getPort() + "/v1";
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                workers.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    logger.log("Accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Conditions conditions = this.conditions;
+        try (Socket s = socket) {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            String requestLine = readLine(in);
+            if (requestLine == null || requestLine.isEmpty()) return;
+            long contentLength = 0;
+            boolean gzipped = false;
+            String header;
+            while ((header = readLine(in)) != null && !header.isEmpty()) {
+                int colon = header.indexOf(':');
+                if (colon <= 0) continue;
+                String name = header.substring(0, colon).trim();
+                if (name.equalsIgnoreCase("Content-Length")) {
+                    try {
+                        contentLength = Long.parseLong(header.substring(colon + 1).trim());
+                    } catch (NumberFormatException e) {
+                        contentLength = -1;
+                    }
+                } else if (name.equalsIgnoreCase("Content-Encoding")) {
+                    gzipped = header.substring(colon + 1).trim().equalsIgnoreCase("gzip");
+                }
+            }
+            if (contentLength < 0) {
+                writeResponse(s.getOutputStream(), 400, error(400, "Bad Content-Length"), conditions, 0);
+                return;
+            }
+            if (contentLength > MAX_BODY_BYTES) {
+                writeResponse(s.getOutputStream(), 413, error(413, "Body over " + MAX_BODY_BYTES + " bytes"),
+                        conditions, 0);
+                return;
+            }
+            byte[] body = new byte[(int) contentLength];
+            long readStartedAt = System.nanoTime();
+            int read = 0;
+            while (read < body.length) {
+                int n = in.read(body, read, Math.min(SLICE_BYTES, body.length - read));
+                if (n < 0) break;
+                read += n;
+                pace(conditions.bytesPerSecond, readStartedAt, read);
+            }
+
+            String[] parts = requestLine.split(" ");
+            String method = parts[0];
+            String path = parts.length > 1 ? parts[1] : "/";
+            int query = path.indexOf('?');
+            if (query >= 0) {
+                path = path.substring(0, query);
+            }
+            String requestBody = gzipped ? gunzip(body, read) : new String(body, 0, read, StandardCharsets.UTF_8);
+            if (requestBody == null) {
+                writeResponse(s.getOutputStream(), 413, error(413, "Body over " + MAX_BODY_BYTES + " bytes"),
+                        conditions, 0);
+                return;
+            }
+
+            long serverMillis = conditions.latency(requests.getAndIncrement());
+            sleep(conditions.linkDelayMillis + serverMillis);
+            int status = 200;
+            String responseBody;
+            int fault = fault(conditions);
+            if (fault != 0) {
+                status = fault;
+                responseBody = error(fault, fault == 429 ? "Resource has been exhausted (stand-in fault)"
+                        : "The model is overloaded (stand-in fault)");
+            } else {
+                try {
+                    responseBody = route(method, path, requestBody);
+                    if (responseBody == null) {
+                        status = 404;
+                        responseBody = error(404, "No route for " + method + " " + path);
+                    }
+                } catch (JSONException e) {
+                    status = 400;
+                    responseBody = error(400, "Bad request: " + e.getMessage());
+                }
+            }
+            if (status == 200 && path.endsWith(":streamGenerateContent")) {
+                writeEvents(s.getOutputStream(), responseBody, conditions, serverMillis);
+            } else {
+                writeResponse(s.getOutputStream(), status, responseBody, conditions, serverMillis);
+            }
+        } catch (IOException | RuntimeException e) {
+            // JSONException included; on a pool thread anything escaping would take the app down
+            logger.log("Request failed", e);
+        }
+    }
+
+    // 429 or 503 when this request draws a fault, else 0
+    private int fault(Conditions conditions) {
+        if (conditions.rate429 <= 0 && conditions.rate5xx <= 0) return 0;
+        double roll;
+        synchronized (this) {
+            roll = faultRandom.nextDouble();
+        }
+        if (roll < conditions.rate429) {
+            faults429.incrementAndGet();
+            return 429;
+        }
+        if (roll < conditions.rate429 + conditions.rate5xx) {
+            faults5xx.incrementAndGet();
+            return 503;
+        }
+        return 0;
+    }
+
+    private String route(String method, String path, String body) throws JSONException {
+        if (method.equals("POST") && (path.endsWith(":generateContent") || path.endsWith(":streamGenerateContent"))) {
+            return generateContent(new JSONObject(body));
+        }
+        if (method.equals("POST") && path.endsWith("/chat/completions")) {
+            return chatCompletions(new JSONObject(body));
+        }
+        return null;
+    }
+
+    private String generateContent(JSONObject request) throws JSONException {
+        String systemPrompt = "";
+        JSONArray contents = request.getJSONArray("contents");
+        int first = 0;
+        if (contents.length() > 1) {
+            systemPrompt = contents.getJSONObject(0).getJSONArray("parts").getJSONObject(0).optString("text");
+            first = 1;
+        }
+
+        JSONArray userParts = contents.getJSONObject(contents.length() - 1).getJSONArray("parts");
+        String userText = "";
+        int audioBytes = -1;
+        for (int i = 0; i < userParts.length(); i++) {
+            JSONObject part = userParts.getJSONObject(i);
+            if (part.has("text")) {
+                userText = part.getString("text");
+            } else if (part.has("inline_data")) {
+                // Base64 length, close enough to tell recordings apart
+                audioBytes = part.getJSONObject("inline_data").getString("data").length() * 3 / 4;
+            }
+        }
+        int turns = contents.length() - first;
+
+        String text;
+        if (audioBytes >= 0) {
+            String transcript = "(stand-in transcript of " + audioBytes + " bytes)";
+            text = new JSONObject()
+                .put("transcript", transcript)
+                .put("reply", reply(systemPrompt, transcript, turns))
+                .toString();
+        } else {
+            text = reply(systemPrompt, userText, turns);
+        }
+
+        JSONObject content = new JSONObject()
+            .put("role", "model")
+            .put("parts", new JSONArray().put(new JSONObject().put("text", text)));
+        return new JSONObject()
+            .put("candidates", new JSONArray().put(new JSONObject()
+                .put("content", content)
+                .put("finishReason", "STOP")))
+            .toString();
+    }
+
+    private String chatCompletions(JSONObject request) throws JSONException {
+        JSONArray messages = request.getJSONArray("messages");
+        String systemPrompt = "";
+        String userText = "";
+        for (int i = 0; i < messages.length(); i++) {
+            JSONObject message = messages.getJSONObject(i);
+            if (message.getString("role").equals("system")) {
+                systemPrompt = message.getString("content");
+            } else {
+                userText = message.getString("content");
+            }
+        }
+        String text = reply(systemPrompt, userText, messages.length());
+        return new JSONObject()
+            .put("object", "chat.completion")
+            .put("model", request.optString("model"))
+            .put("choices", new JSONArray().put(new JSONObject()
+                .put("index", 0)
+                .put("message", new JSONObject().put("role", "assistant").put("content", text))
+                .put("finish_reason", "stop")))
+            .toString();
+    }
+
+    // Quiz prompts get the quiz JSON schema back, everything else a plain echo
+    static String reply(String systemPrompt, String userText, int turns) throws JSONException {
+        int seed = (userText.hashCode() & 0x7fffffff);
+        if (systemPrompt != null && systemPrompt.contains("quiz mode")) {
+            return new JSONObject()
+                .put("evaluation", "Stand-in evaluation of \"" + userText + "\".")
+                .put("explanation", "This reply comes from the local stand-in server.")
+                .put("encouraging_feedback", "Keep going!")
+                .put("next_question", QUESTIONS[seed % QUESTIONS.length])
+                .toString();
+        }
+        return "Stand-in reply " + (seed % 1000) + " (turn " + turns + "): you said \"" + userText + "\".";
+    }
+
+    private static String error(int code, String message) {
+        try {
+            return new JSONObject().put("error", new JSONObject()
+                .put("code", code)
+                .put("message", message)).toString();
+        } catch (JSONException e) {
+            return "{}";
+        }
+    }
+
+    private static void writeResponse(OutputStream out, int status, String body, Conditions conditions,
+                                      long serverMillis) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        boolean chunked = conditions.chunked && status == 200;
+        String head = "HTTP/1.1 " + status + " " + reason(status) + "\r\n"
+            + "Content-Type: application/json; charset=utf-8\r\n"
+            + (chunked ? "Transfer-Encoding: chunked\r\n" : "Content-Length: " + bytes.length + "\r\n")
+            + (status == 429 ? "Retry-After: 1\r\n" : "")
+            + "Server-Timing: standin;dur=" + serverMillis + "\r\n"
+            + "Connection: close\r\n\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        long startedAt = System.nanoTime();
+        if (!chunked) {
+            write(out, bytes, 0, bytes.length, conditions.bytesPerSecond, startedAt, 0);
+            out.flush();
+            return;
+        }
+        int pieces = Math.max(1, conditions.chunks);
+        int sent = 0;
+        for (int i = 0; i < pieces; i++) {
+            int end = (int) ((long) bytes.length * (i + 1) / pieces);
+            if (end == sent) continue;
+            if (i > 0) sleep(conditions.chunkDelayMillis);
+            out.write((Integer.toHexString(end - sent) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            write(out, bytes, sent, end - sent, conditions.bytesPerSecond, startedAt, sent);
+            out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            sent = end;
+        }
+        out.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    // streamGenerateContent?alt=sse: the reply text split over several events, the last one
+    // carrying the finish reason; the connection closing ends the stream
+    private static void writeEvents(OutputStream out, String body, Conditions conditions, long serverMillis)
+            throws IOException, JSONException {
+        String text = new JSONObject(body).getJSONArray("candidates").getJSONObject(0)
+            .getJSONObject("content").getJSONArray("parts").getJSONObject(0).getString("text");
+        String head = "HTTP/1.1 200 OK\r\n"
+            + "Content-Type: text/event-stream\r\n"
+            + "Server-Timing: standin;dur=" + serverMillis + "\r\n"
+            + "Connection: close\r\n\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        long startedAt = System.nanoTime();
+        long sent = 0;
+        int pieces = Math.max(1, Math.min(conditions.chunks, text.length()));
+        int start = 0;
+        for (int i = 0; i < pieces; i++) {
+            int end = i == pieces - 1 ? text.length() : text.length() * (i + 1) / pieces;
+            // Never split a surrogate pair across events
+            if (end < text.length() && Character.isLowSurrogate(text.charAt(end))) end++;
+            if (end <= start) continue;
+            if (i > 0) sleep(conditions.chunkDelayMillis);
+            JSONObject candidate = new JSONObject().put("content", new JSONObject()
+                .put("role", "model")
+                .put("parts", new JSONArray().put(new JSONObject().put("text", text.substring(start, end)))));
+            if (end == text.length()) {
+                candidate.put("finishReason", "STOP");
+            }
+            String event = "data: " + new JSONObject().put("candidates", new JSONArray().put(candidate)) + "\r\n\r\n";
+            byte[] bytes = event.getBytes(StandardCharsets.UTF_8);
+            write(out, bytes, 0, bytes.length, conditions.bytesPerSecond, startedAt, sent);
+            out.flush();
+            sent += bytes.length;
+            start = end;
+        }
+    }
+
+    private static String reason(int status) {
+        switch (status) {
+            case 200:
+                return "OK";
+            case 404:
+                return "Not Found";
+            case 413:
+                return "Payload Too Large";
+            case 429:
+                return "Too Many Requests";
+            case 503:
+                return "Service Unavailable";
+            default:
+                return "Bad Request";
+        }
+    }
+
+    // Writes in slices paced to the cap; sentBefore is what this transfer already sent since startedAt
+    private static void write(OutputStream out, byte[] bytes, int offset, int length, long bytesPerSecond,
+                              long startedAt, long sentBefore) throws IOException {
+        for (int done = 0; done < length; ) {
+            int n = Math.min(SLICE_BYTES, length - done);
+            out.write(bytes, offset + done, n);
+            done += n;
+            pace(bytesPerSecond, startedAt, sentBefore + done);
+        }
+    }
+
+    // Sleeps until a transfer of this many bytes since startedAt is within the cap
+    private static void pace(long bytesPerSecond, long startedAt, long bytes) throws InterruptedIOException {
+        if (bytesPerSecond <= 0) return;
+        long dueNanos = startedAt + bytes * 1_000_000_000L / bytesPerSecond;
+        long waitMillis = (dueNanos - System.nanoTime()) / 1_000_000;
+        sleep(waitMillis);
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Stopped");
+        }
+    }
+
+    // Request bodies compressed by GeminiAPI on slow links
+    // Null when the inflated body would pass MAX_BODY_BYTES
+    private static String gunzip(byte[] body, int length) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body, 0, length))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(length * 4, MAX_BODY_BYTES));
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                if (out.size() + n > MAX_BODY_BYTES) return null;
+                out.write(buffer, 0, n);
+            }
+            return out.toString("UTF-8");
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') break;
+            if (c != '\r') line.write(c);
+        }
+        if (c == -1 && line.size() == 0) return null;
+        return line.toString("US-ASCII");
+    }
+}
@@ -7,8 +7,12 @@ import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.text.TextUtils;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.KeyEvent;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -19,6 +23,7 @@ import android.widget.ImageButton;
 import android.widget.Toast;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
 import androidx.preference.PreferenceManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -26,8 +31,10 @@ import androidx.viewpager2.widget.ViewPager2;
 import com.google.android.material.tabs.TabLayout;
 import com.google.android.material.tabs.TabLayoutMediator;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 public class MainActivity extends AppCompatActivity {
@@ -37,7 +44,21 @@ public class MainActivity extends AppCompatActivity {
     private static final String API_KEY_PREF = "gemini_api_key";
     private static final String DEBUG_MODE_PREF = "debug_mode";
     private static final String LANGUAGE_PREF = "language";
+    private static final String AUTO_LANGUAGE_PREF = "auto_language";
+    private static final String COALESCE_WINDOW_PREF = "coalesce_window_ms";
+    private static final String HANDS_FREE_PREF = "hands_free_mode";
+    private static final String SPECULATION_WINDOW_PREF = "speculation_window_ms";
+    private static final String VAD_PREF = "voice_activity_detection";
+    private static final String SPEAK_REPLIES_PREF = "speak_replies";
+    private static final String INPUT_MODE_PREF = "input_mode";
+    private static final String QUIZ_MODE_PREF = "quiz_mode";
+    private static final String INPUT_MODE_GEMINI_AUDIO = "gemini_audio";
+    private static final String LATENCY_PATH_RECOGNIZER = "recognizer+text";
+    private static final String LATENCY_PATH_AUDIO = "gemini audio";
     private static final long DOUBLE_ENTER_THRESHOLD = 500; // milliseconds
+    // Keys for UI events where only the newest one per frame matters
+    private static final Object STATUS_EVENT = new Object();
+    private static final Object PARTIAL_EVENT = new Object();
 
     private EditText inputEditText;
     private ImageButton sendButton;
@@ -48,14 +69,40 @@ public class MainActivity extends AppCompatActivity {
     private TabLayout tabLayout;
     private GeminiAPI geminiAPI;
     private VoiceManager voiceManager;
+    private SpeculativeTurn speculativeTurn;
+    private InputCoalescer inputCoalescer;
+    private Outbox outbox;
+    private Outbox.Listener outboxListener;
+    private ChatMessage lastTypedMessage;
+    private final LatencyComparison latencyComparison = new LatencyComparison();
+    private SpeechEngine speechEngine;
+    private SpeechOutputStage speechOutput;
+    private boolean speakReplies = true;
     private Handler mainHandler;
+    private FrameDispatcher ui;
     private Menu optionsMenu;
+    private List<Long> searchResults = Collections.emptyList();
+    private int searchPosition = 0;
     private boolean quizMode = false;
     private boolean quizPaused = false;
     private boolean isDebugMode = false;
+    private boolean handsFreeMode = false;
+    private boolean autoLanguage = true;
     private boolean lastKeyWasEnter = false;
     private long lastEnterTime = 0;
+    // Where the dictated text sits in the input field; transcript offsets count from its start
+    private int dictationStart = 0;
+    private int dictationLength = 0;
+    private int dictationGeneration = 0;
+    private boolean dictationEdited = false;
+    // The last transcript revision the field holds; a whole rewrite can run ahead of queued edits
+    private long dictationRevision = -1;
+    private boolean applyingDictation = false;
     private String currentLanguage = "english";
+    // Cold start: interactive is the later of the first frame and input being enabled
+    private long firstFrameAt = -1;
+    private long inputReadyAt = -1;
+    private boolean awaitingGeminiAPI = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -66,8 +113,10 @@ public class MainActivity extends AppCompatActivity {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
         currentLanguage = prefs.getString(LANGUAGE_PREF, "english");
         isDebugMode = prefs.getBoolean(DEBUG_MODE_PREF, false);
+        handsFreeMode = prefs.getBoolean(HANDS_FREE_PREF, false);
 
         mainHandler = new Handler(Looper.getMainLooper());
+        ui = SpeechApp.services(this).getFrameDispatcher();
 
         // Set up toolbar
         Toolbar toolbar = findViewById(R.id.toolbar);
@@ -94,28 +143,182 @@ public class MainActivity extends AppCompatActivity {
         chatFragment = new ChatFragment();
         debugFragment = new DebugLogFragment();
 
-        // Initialize APIs
-        geminiAPI = new GeminiAPI(this, debugFragment);
+        SpeechApp.services(this).getMemoryBudget().setDebugLog(debugFragment);
+        speechEngine = new AndroidSpeechEngine(this);
+        speechOutput = new SpeechOutputStage(speechEngine);
+        speechOutput.setListener(millis -> debugFragment.appendLog("TTS time to first audio: " + millis + " ms"));
+        outbox = SpeechApp.services(this).getOutbox();
+        outboxListener = new Outbox.Listener() {
+            @Override
+            public void onWaiting(Outbox.Entry entry) {
+                ChatMessage anchor = (ChatMessage) entry.getTag();
+                anchor.setPending(true);
+                chatFragment.updateMessage(anchor);
+            }
+
+            @Override
+            public GeminiAPI.GeminiCallback replyCallback(Outbox.Entry entry) {
+                return createResponseCallback(null, 0, (ChatMessage) entry.getTag());
+            }
+
+            @Override
+            public void onFinished(Outbox.Entry entry) {
+                inputCoalescer.onTurnFinished(entry);
+            }
+
+            @Override
+            public void onRestored(List<Outbox.Entry> entries) {
+                showOutboxEntries(entries);
+            }
+        };
+        // Turns still unanswered (from before a rotation, or journaled by an earlier process)
+        // get their bubbles back before their replies can arrive
+        showOutboxEntries(outbox.getEntries());
+        // The reply goes under the last message of a merged turn
+        inputCoalescer = new InputCoalescer(merged -> outbox.submit(merged, lastTypedMessage));
+        outbox.setListener(outboxListener);
+        applyInputSettings(prefs);
+
+        // Set up ViewPager
+        ViewPagerAdapter pagerAdapter = new ViewPagerAdapter(this, chatFragment, debugFragment);
+        viewPager.setAdapter(pagerAdapter);
+        // Opening the Debug tab shows where the memory is going
+        viewPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
+            @Override
+            public void onPageSelected(int position) {
+                if (position == 1) {
+                    debugFragment.appendLog(SpeechApp.services(MainActivity.this).getMemoryBudget().report());
+                }
+            }
+        });
+
+        // Set up TabLayout
+        new TabLayoutMediator(tabLayout, viewPager,
+            (tab, position) -> tab.setText(position == 0 ? "Chat" : "Debug")
+        ).attach();
+
+        // Setup click listeners
+        setupClickListeners();
+
+        // Update debug tab visibility
+        updateDebugTabVisibility();
+
+        speechEngine.setLanguage(speechLocaleFor(currentLanguage));
+
+        Log.d(TAG, "Debug mode is: " + isDebugMode);
+
+        // GeminiAPI is shared with Settings and built in the background; it usually is ready by
+        // now, but the main thread never waits for it. Input stays off until it arrives.
+        setInputEnabled(false);
+        requestGeminiAPI();
+
+        // Voice input (recognizers, audio routing) is only needed once the chat is on screen.
+        // The frame callback fires as the first frame starts; the post runs after it is drawn.
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos ->
+                mainHandler.post(() -> finishStartup(SystemClock.elapsedRealtime())));
+    }
+
+    private void requestGeminiAPI() {
+        if (awaitingGeminiAPI) return;
+        awaitingGeminiAPI = true;
+        SpeechApp.services(this).whenGeminiAPIReady(this::onGeminiAPIReady, this::onGeminiAPIFailed);
+    }
+
+    private void onGeminiAPIReady(GeminiAPI api) {
+        awaitingGeminiAPI = false;
+        if (isDestroyed() || geminiAPI != null) return;
+        geminiAPI = api;
+        geminiAPI.setDebugLog(debugFragment);
+        // The mode outlives this screen (rotation, the persisted setting), so take it from GeminiAPI
+        quizMode = geminiAPI.isQuizMode();
+        updateQuizMenuItems(quizMode ? "running" : "stopped");
+        speculativeTurn = new SpeculativeTurn(geminiAPI);
+        outbox.start(geminiAPI::generateResponse);
+
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        currentLanguage = prefs.getString(LANGUAGE_PREF, "english");
+        geminiAPI.setLanguage(currentLanguage);
+        speechEngine.setLanguage(speechLocaleFor(currentLanguage));
+        applyVoiceSettings(prefs);
+        setInputEnabled(true);
+        inputReadyAt = SystemClock.elapsedRealtime();
+        reportStartup();
+
+        // Check for API key
+        if (!geminiAPI.getBackend().isConfigured()) {
+            showApiKeyDialog();
+        }
+    }
+
+    // Typing stays possible: messages wait in the outbox and the next one retries the build.
+    // Voice input needs GeminiAPI for every path, so it stays off.
+    private void onGeminiAPIFailed(Throwable error) {
+        awaitingGeminiAPI = false;
+        if (isDestroyed()) return;
+        Log.e(TAG, "GeminiAPI unavailable", error);
+        String message = "Could not start the chat (" + error.getMessage() + "). Send a message to try again.";
+        addBotMessage(message, message);
+        inputEditText.setEnabled(true);
+        sendButton.setEnabled(true);
+    }
+
+    private void setInputEnabled(boolean enabled) {
+        inputEditText.setEnabled(enabled);
+        sendButton.setEnabled(enabled);
+        voiceInputView.setEnabled(enabled);
+    }
+
+    private void finishStartup(long firstFrameAt) {
+        if (isDestroyed()) return;
+        this.firstFrameAt = firstFrameAt;
+        createVoiceManager();
+        // Otherwise applied once GeminiAPI arrives, voice settings depend on its backend
+        if (geminiAPI != null) {
+            applyVoiceSettings(PreferenceManager.getDefaultSharedPreferences(this));
+        }
+
+        // Request necessary permissions
+        requestPermissions();
+
+        reportStartup();
+    }
+
+    // Runs once both the first frame is drawn and input is enabled, whichever comes last
+    private void reportStartup() {
+        if (firstFrameAt < 0 || inputReadyAt < 0) return;
+        reportFullyDrawn();
+        String report = StartupTrace.reportColdStart(this, firstFrameAt, Math.max(firstFrameAt, inputReadyAt));
+        if (report != null) {
+            Log.i(TAG, report);
+            debugFragment.appendLog(report);
+        }
+    }
+
+    private void createVoiceManager() {
         voiceManager = new VoiceManager(this, new VoiceManager.VoiceCallback() {
             @Override
-            public void onPartialSpeechResult(String textSoFar, String newText) {
-                runOnUiThread(() -> {
-                    inputEditText.append(newText + " ");
-                });
+            public void onPartialSpeechResult(String utteranceText, Transcript.Edit edit) {
+                // Every edit applies in order, but only the newest partial restarts speculation
+                int generation = dictationGeneration;
+                ui.post(() -> applyTranscriptEdit(generation, edit));
+                if (handsFreeMode) {
+                    ui.postLatest(PARTIAL_EVENT, () -> speculativeTurn.onPartial(utteranceText));
+                }
             }
 
             @Override
             public void onSpeechResult(String fullText) {
-                runOnUiThread(() -> {
-                    inputEditText.setText(fullText);
-                    //processUserInput(fullText);
-                    voiceInputView.stopAnimation();
+                ui.post(() -> {
+                    if (handsFreeMode) {
+                        inputEditText.setText("");
+                        processVoiceInput(fullText);
+                    }
                 });
             }
 
             @Override
             public void onSpeechError(String error) {
-                runOnUiThread(() -> {
+                ui.post(() -> {
                     Toast.makeText(MainActivity.this, error, Toast.LENGTH_SHORT).show();
                     voiceInputView.setStatus(VoiceInputView.VoiceStatus.ERROR);
                 });
@@ -123,8 +326,11 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public void onListeningStarted() {
-                runOnUiThread(() -> {
-                    inputEditText.setText("");
+                speechOutput.bargeIn();
+                // The transcript was just reset, edits still queued belong to the old one
+                dictationGeneration++;
+                ui.post(() -> {
+                    beginDictation();
                     inputEditText.setHint("...");
                     voiceInputView.startAnimation();
                 });
@@ -132,58 +338,49 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public void onListeningStopped() {
-                runOnUiThread(() -> {
+                ui.post(() -> {
                     voiceInputView.stopAnimation();
                 });
             }
 
             @Override
             public void onStatusChanged(VoiceInputView.VoiceStatus status) {
-                runOnUiThread(() -> {
-                    voiceInputView.setStatus(status);
-                });
+                ui.postLatest(STATUS_EVENT, () -> voiceInputView.setStatus(status));
             }
 
             @Override
             public void onLanguageDetected(String language) {
-                runOnUiThread(() -> {
-                    if (!language.equals(currentLanguage)) {
-                        updateLanguage(language);
-                    }
-                });
+                ui.post(() -> switchLanguageForTurn(language));
             }
-        });
 
-        // Set up ViewPager
-        ViewPagerAdapter pagerAdapter = new ViewPagerAdapter(this, chatFragment, debugFragment);
-        viewPager.setAdapter(pagerAdapter);
-
-        // Set up TabLayout
-        new TabLayoutMediator(tabLayout, viewPager,
-            (tab, position) -> tab.setText(position == 0 ? "Chat" : "Debug")
-        ).attach();
-
-        // Setup click listeners
-        setupClickListeners();
-        
-        // Request necessary permissions
-        requestPermissions();
-
-        // Update debug tab visibility
-        updateDebugTabVisibility();
+            @Override
+            public void onRecognizerHandover(long gapMillis) {
+                debugFragment.appendLog("Recognizer handover gap: " + gapMillis + " ms");
+            }
 
-        // Set language preference in Gemini API
-        geminiAPI.setLanguage(currentLanguage);
+            @Override
+            public void onAudioUtterance(byte[] audio, String mimeType, long speechEndedAt) {
+                ui.post(() -> processAudioInput(audio, mimeType, speechEndedAt));
+            }
 
-        // Check for API key
-        if (!geminiAPI.hasApiKey()) {
-            showApiKeyDialog();
-        }
+            @Override
+            public void onUserSpeechStarted(boolean heardByVad) {
+                // Barge-in: the user talking over a reply stops playback right away
+                if (heardByVad) {
+                    speechOutput.bargeIn();
+                } else {
+                    speechOutput.bargeInUnlessSpeaking();
+                }
+            }
+        });
 
-        Log.d(TAG, "Debug mode is: " + isDebugMode);
+        voiceInputView.setAmplitudeSource(voiceManager.getAmplitude());
     }
 
     private void setupClickListeners() {
+        // Sending clears the field, which also starts the dictation over
+        inputEditText.addTextChangedListener(dictationTracker);
+
         sendButton.setOnClickListener(v -> {
             String text = inputEditText.getText().toString().trim();
             if (!text.isEmpty()) {
@@ -232,12 +429,67 @@ public class MainActivity extends AppCompatActivity {
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.toolbar_menu, menu);
         this.optionsMenu = menu;
+        setupSearch(menu.findItem(R.id.action_search));
+        updateQuizMenuItems(!quizMode ? "stopped" : quizPaused ? "paused" : "running");
         return true;
     }
 
+    // Each keystroke jumps to the newest match; submitting steps to the next older one
+    private void setupSearch(MenuItem searchItem) {
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint("Search chat");
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextChange(String query) {
+                long started = System.nanoTime();
+                searchResults = chatFragment.search(query);
+                Log.d(TAG, "Search \"" + query + "\": " + searchResults.size() + " hits in "
+                        + (System.nanoTime() - started) / 1000 + "µs");
+                searchPosition = 0;
+                showSearchResult();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                if (searchResults.isEmpty()) {
+                    Toast.makeText(MainActivity.this, "No matches", Toast.LENGTH_SHORT).show();
+                } else {
+                    searchPosition = (searchPosition + 1) % searchResults.size();
+                    showSearchResult();
+                }
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                viewPager.setCurrentItem(0);
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                searchResults = Collections.emptyList();
+                chatFragment.showMessage(-1);
+                return true;
+            }
+        });
+    }
+
+    private void showSearchResult() {
+        if (searchResults.isEmpty()) {
+            chatFragment.showMessage(-1);
+            return;
+        }
+        chatFragment.showMessage(searchResults.get(searchPosition));
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         int itemId = item.getItemId();
+        // The quiz actions talk to GeminiAPI, which may still be on its way
+        if (geminiAPI == null && itemId != R.id.action_settings) return true;
         if (itemId == R.id.action_settings) {
             Intent intent = new Intent(this, SettingsActivity.class);
             startActivityForResult(intent, SETTINGS_REQUEST_CODE);
@@ -271,12 +523,16 @@ public class MainActivity extends AppCompatActivity {
         quizMode = true;
         quizPaused = false;
         updateQuizMenuItems("started");
-        
+        // Messages typed before the quiz belong to the old conversation
+        inputCoalescer.cancel();
+        // Quiz prompt and local question bank, whether started from the menu or by voice
+        geminiAPI.setQuizMode(true);
         geminiAPI.startNewQuiz(new GeminiAPI.GeminiCallback() {
             @Override
             public void onResponse(String response) {
                 runOnUiThread(() -> {
                     addBotMessage(response, response);
+                    speakReply(Collections.singletonList(response));
                     scrollToBottom();
                 });
             }
@@ -287,6 +543,7 @@ public class MainActivity extends AppCompatActivity {
                     for (String response : responses) {
                         addBotMessage(response, response);
                     }
+                    speakReply(responses);
                     scrollToBottom();
                 });
             }
@@ -332,6 +589,8 @@ public class MainActivity extends AppCompatActivity {
         Log.d(TAG, "Stopping quiz");
         quizMode = false;
         quizPaused = false;
+        // Back to the chat prompt; also closes the open bank question
+        geminiAPI.setQuizMode(false);
         
         // Update menu items
         updateQuizMenuItems("stopped");
@@ -344,13 +603,242 @@ public class MainActivity extends AppCompatActivity {
 
     private void processUserInput(String input) {
         if (input == null || input.trim().isEmpty()) return;
+        if (geminiAPI == null) {
+            // Startup failed: the message waits in the outbox while GeminiAPI is built again
+            requestGeminiAPI();
+            if (IntentDetector.commands().detect(input) != null) {
+                Toast.makeText(this, "Still starting, try again in a moment", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            lastTypedMessage = addUserMessage(input, input);
+            inputCoalescer.submit(input);
+            return;
+        }
+        if (handleCommand(input)) return;
+
+        switchLanguageForTurn(LanguageIdentifier.identify(input));
+        // Shown as its own bubble right away, sent together with any messages that follow quickly
+        lastTypedMessage = addUserMessage(input, input);
+        inputCoalescer.submit(input);
+    }
+
+    // Final transcript in hands-free mode: reuse the speculative reply if it was for the same text
+    private void processVoiceInput(String input) {
+        if (input == null || input.trim().isEmpty()) return;
+        if (handleCommand(input)) {
+            speculativeTurn.cancel();
+            return;
+        }
 
         addUserMessage(input, input);
-        geminiAPI.generateResponse(input, new GeminiAPI.GeminiCallback() {
+        GeminiAPI.GeminiCallback callback = createResponseCallback(LATENCY_PATH_RECOGNIZER,
+                voiceManager.getLastSpeechEndedAt());
+        if (!speculativeTurn.onFinal(input, callback)) {
+            geminiAPI.generateResponse(input, callback);
+        }
+    }
+
+    // Quiz control and language commands run right away instead of going to the model
+    private boolean handleCommand(String input) {
+        IntentDetector.Result command = IntentDetector.commands().detect(input);
+        if (command == null) return false;
+        switch (command.intent) {
+            case START_QUIZ:
+                addUserMessage(input, input);
+                startQuiz();
+                return true;
+            case PAUSE_QUIZ:
+                if (!quizMode || quizPaused) return false;
+                addUserMessage(input, input);
+                pauseQuiz();
+                return true;
+            case RESUME_QUIZ:
+                if (!quizMode || !quizPaused) return false;
+                addUserMessage(input, input);
+                resumeQuiz();
+                return true;
+            case STOP_QUIZ:
+                if (!quizMode) return false;
+                addUserMessage(input, input);
+                stopQuiz();
+                return true;
+            case NEXT_QUESTION:
+                if (!quizMode || quizPaused) return false;
+                addUserMessage(input, input);
+                geminiAPI.generateResponse(GeminiAPI.NEXT_QUESTION_INPUT, createResponseCallback());
+                return true;
+            case SWITCH_LANGUAGE:
+                addUserMessage(input, input);
+                PreferenceManager.getDefaultSharedPreferences(this).edit()
+                        .putString(LANGUAGE_PREF, command.language).apply();
+                updateLanguage(command.language);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Dictation goes after whatever was typed already
+    private void beginDictation() {
+        Editable text = inputEditText.getText();
+        applyingDictation = true;
+        if (text.length() > 0 && !Character.isWhitespace(text.charAt(text.length() - 1))) {
+            text.append(' ');
+        }
+        applyingDictation = false;
+        dictationStart = text.length();
+        dictationLength = 0;
+        dictationEdited = false;
+    }
+
+    // The field was sent or cleared: the next words start a new transcript at its start
+    private void resetDictation() {
+        if (voiceManager != null) {
+            voiceManager.resetTranscript();
+        }
+        dictationGeneration++;
+        dictationStart = 0;
+        dictationLength = 0;
+        dictationEdited = false;
+    }
+
+    private void applyTranscriptEdit(int generation, Transcript.Edit edit) {
+        if (generation != dictationGeneration || edit.revision <= dictationRevision) return;
+        Editable text = inputEditText.getText();
+        int spanEnd = Math.min(dictationStart + dictationLength, text.length());
+        applyingDictation = true;
+        if (!dictationEdited && dictationStart + edit.end <= spanEnd) {
+            text.replace(dictationStart + edit.start, dictationStart + edit.end, edit.text);
+            dictationLength += edit.text.length() - (edit.end - edit.start);
+            dictationRevision = edit.revision;
+        } else {
+            // The dictated words were edited by hand, offsets no longer line up: rewrite them whole.
+            // Fetched only here, as copying the transcript costs the length of the whole dictation.
+            String dictated = voiceManager.getTranscriptText();
+            dictationRevision = voiceManager.getTranscriptRevision();
+            int start = Math.min(dictationStart, text.length());
+            text.replace(start, Math.max(start, spanEnd), dictated);
+            dictationStart = start;
+            dictationLength = dictated.length();
+            dictationEdited = false;
+        }
+        applyingDictation = false;
+    }
+
+    // Keeps the dictated span located while the user types around it
+    private final TextWatcher dictationTracker = new TextWatcher() {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+            if (applyingDictation) return;
+            int dictationEnd = dictationStart + dictationLength;
+            if (start + before <= dictationStart) {
+                dictationStart += count - before;
+            } else if (start < dictationEnd) {
+                int newStart = Math.min(dictationStart, start);
+                int newEnd = Math.max(dictationEnd, start + before) + count - before;
+                dictationStart = newStart;
+                dictationLength = Math.max(0, newEnd - newStart);
+                dictationEdited = true;
+            }
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            if (!applyingDictation && s.length() == 0) {
+                resetDictation();
+            }
+        }
+    };
+
+    // Audio turn: Gemini transcribes and answers in one request, the transcript becomes the user bubble
+    private void processAudioInput(byte[] audio, String mimeType, long speechEndedAt) {
+        GeminiAPI.GeminiCallback replyCallback = createResponseCallback(LATENCY_PATH_AUDIO, speechEndedAt);
+        geminiAPI.generateAudioResponse(audio, mimeType, new GeminiAPI.AudioTurnCallback() {
+            @Override
+            public void onTranscript(String transcript) {
+                runOnUiThread(() -> {
+                    if (!transcript.isEmpty()) {
+                        // Gemini already heard the audio, this only sets the mode for typed follow-ups
+                        switchLanguageForTurn(LanguageIdentifier.identify(transcript));
+                        addUserMessage(transcript, transcript);
+                    }
+                });
+            }
+
+            @Override
+            public void onResponse(String response) {
+                replyCallback.onResponse(response);
+            }
+
+            @Override
+            public void onMultiResponse(List<String> responses) {
+                replyCallback.onMultiResponse(responses);
+            }
+
+            @Override
+            public void onError(String error) {
+                replyCallback.onError(error);
+            }
+        });
+    }
+
+    private void applyInputSettings(SharedPreferences prefs) {
+        try {
+            inputCoalescer.setWindowMillis(Long.parseLong(prefs.getString(COALESCE_WINDOW_PREF,
+                    String.valueOf(InputCoalescer.DEFAULT_WINDOW_MILLIS))));
+        } catch (NumberFormatException e) {
+            inputCoalescer.setWindowMillis(InputCoalescer.DEFAULT_WINDOW_MILLIS);
+        }
+    }
+
+    private void applyVoiceSettings(SharedPreferences prefs) {
+        speakReplies = prefs.getBoolean(SPEAK_REPLIES_PREF, true);
+        if (!speakReplies) {
+            speechOutput.bargeIn();
+        }
+        autoLanguage = prefs.getBoolean(AUTO_LANGUAGE_PREF, true);
+        handsFreeMode = prefs.getBoolean(HANDS_FREE_PREF, false);
+        // Created after the first frame; this runs again once it exists
+        if (voiceManager != null) {
+            voiceManager.setVadGating(prefs.getBoolean(VAD_PREF, true));
+            // Text-only backends fall back to the recognizer
+            voiceManager.setAudioTurns(INPUT_MODE_GEMINI_AUDIO.equals(prefs.getString(INPUT_MODE_PREF, "recognizer"))
+                    && geminiAPI.supportsAudioTurns());
+            voiceManager.setHandsFree(handsFreeMode);
+        }
+        try {
+            speculativeTurn.setStableWindowMillis(Long.parseLong(prefs.getString(SPECULATION_WINDOW_PREF,
+                    String.valueOf(SpeculativeTurn.DEFAULT_STABLE_WINDOW_MILLIS))));
+        } catch (NumberFormatException e) {
+            speculativeTurn.setStableWindowMillis(SpeculativeTurn.DEFAULT_STABLE_WINDOW_MILLIS);
+        }
+        if (!handsFreeMode) {
+            speculativeTurn.cancel();
+        }
+    }
+
+    private GeminiAPI.GeminiCallback createResponseCallback() {
+        return createResponseCallback(null, 0);
+    }
+
+    // With a latency path, the time from the end of speech to the reply is recorded for the A/B summary
+    private GeminiAPI.GeminiCallback createResponseCallback(String latencyPath, long speechEndedAt) {
+        return createResponseCallback(latencyPath, speechEndedAt, null);
+    }
+
+    // With an anchor, the reply is placed right under that user message instead of at the bottom
+    private GeminiAPI.GeminiCallback createResponseCallback(String latencyPath, long speechEndedAt, ChatMessage anchor) {
+        return new GeminiAPI.GeminiCallback() {
             @Override
             public void onResponse(String response) {
                 runOnUiThread(() -> {
-                    addBotMessage(response, response);
+                    recordLatency(latencyPath, speechEndedAt);
+                    showReply(anchor, Collections.singletonList(response));
+                    speakReply(Collections.singletonList(response));
                     scrollToBottom();
                 });
             }
@@ -358,9 +846,9 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onMultiResponse(List<String> responses) {
                 runOnUiThread(() -> {
-                    for (String response : responses) {
-                        addBotMessage(response, response);
-                    }
+                    recordLatency(latencyPath, speechEndedAt);
+                    showReply(anchor, responses);
+                    speakReply(responses);
                     scrollToBottom();
                 });
             }
@@ -368,15 +856,70 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onError(String error) {
                 runOnUiThread(() -> {
-                    addBotMessage("Error: " + error, error);
+                    showReply(anchor, Collections.singletonList("Error: " + error));
                     scrollToBottom();
                 });
             }
-        });
+        };
+    }
+
+    private void showReply(ChatMessage anchor, List<String> responses) {
+        if (quizMode) {
+            for (String response : responses) {
+                if (isQuizEnding(response)) {
+                    quizMode = false;
+                    quizPaused = false;
+                    geminiAPI.setQuizMode(false);
+                    updateQuizMenuItems("stopped");
+                    break;
+                }
+            }
+        }
+        if (anchor == null) {
+            for (String response : responses) {
+                addBotMessage(response, response);
+            }
+            return;
+        }
+        List<ChatMessage> replies = new ArrayList<>();
+        for (String response : responses) {
+            replies.add(new ChatMessage(response, response, ChatMessage.TYPE_BOT));
+        }
+        if (anchor.isPending()) {
+            anchor.setPending(false);
+            chatFragment.updateMessage(anchor);
+        }
+        chatFragment.insertMessagesAfter(anchor, replies);
+    }
+
+    // Queued sentence by sentence, so speech starts after the first one is synthesized
+    private void speakReply(List<String> messages) {
+        if (!speakReplies) return;
+        speechOutput.beginReply();
+        for (String message : messages) {
+            speechOutput.append(message);
+            speechOutput.append("\n");
+        }
+        speechOutput.endReply();
+    }
+
+    private void recordLatency(String latencyPath, long speechEndedAt) {
+        if (latencyPath == null || speechEndedAt <= 0) return;
+        latencyComparison.record(latencyPath, SystemClock.elapsedRealtime() - speechEndedAt);
+        debugFragment.appendLog(latencyComparison.summary());
+        debugFragment.appendLog(ui.describe());
     }
 
-    private void addUserMessage(String displayText, String originalText) {
-        chatFragment.addMessage(new ChatMessage(displayText, originalText, ChatMessage.TYPE_USER));
+    private void showOutboxEntries(List<Outbox.Entry> entries) {
+        for (Outbox.Entry entry : entries) {
+            entry.setTag(addUserMessage(entry.getText(), entry.getText()));
+        }
+    }
+
+    private ChatMessage addUserMessage(String displayText, String originalText) {
+        ChatMessage message = new ChatMessage(displayText, originalText, ChatMessage.TYPE_USER);
+        chatFragment.addMessage(message);
+        return message;
     }
 
     private void addBotMessage(String displayText, String originalText) {
@@ -404,24 +947,16 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private boolean isQuizEnding(String response) {
-        String lowerResponse = response.toLowerCase();
-        if (lowerResponse.contains("quiz is over") || 
-            lowerResponse.contains("quiz has ended") ||
-            lowerResponse.contains("end of quiz") ||
-            lowerResponse.contains("quiz complete") ||
-            lowerResponse.contains("quiz finished") ||
-            lowerResponse.contains("thank you for taking the quiz")) {
-            
-            // Update button visibility when quiz ends
-            runOnUiThread(() -> {
-                if (optionsMenu != null) {
-                    optionsMenu.findItem(R.id.action_start_quiz).setVisible(true);
-                    optionsMenu.findItem(R.id.action_stop_quiz).setVisible(false);
-                }
-            });
-            return true;
-        }
-        return false;
+        if (IntentDetector.replies().detect(response) == null) return false;
+
+        // Update button visibility when quiz ends
+        runOnUiThread(() -> {
+            if (optionsMenu != null) {
+                optionsMenu.findItem(R.id.action_start_quiz).setVisible(true);
+                optionsMenu.findItem(R.id.action_stop_quiz).setVisible(false);
+            }
+        });
+        return true;
     }
 
     private String transliterateToHindi(String englishText) {
@@ -542,10 +1077,42 @@ public class MainActivity extends AppCompatActivity {
         return finalText;
     }
 
+    private Locale speechLocaleFor(String language) {
+        switch (language) {
+            case "hindi":
+                return new Locale("hi", "IN");
+            case "hinglish":
+                return new Locale("en", "IN");
+            case "kannada":
+                return new Locale("kn", "IN");
+            case "telugu":
+                return new Locale("te", "IN");
+            default:
+                return Locale.US;
+        }
+    }
+
+    // Detected per turn; saved like a Settings change, so the next launch and Settings agree
+    private void switchLanguageForTurn(String language) {
+        if (!autoLanguage || language == null || language.equals(currentLanguage)) return;
+        // Quiz answers are names and numbers, they don't say what language the user speaks
+        if (quizMode) return;
+        debugFragment.appendLog("Detected language: " + language + " (was " + currentLanguage + ")");
+        currentLanguage = language;
+        PreferenceManager.getDefaultSharedPreferences(this).edit()
+                .putString(LANGUAGE_PREF, language).apply();
+        geminiAPI.setLanguage(language);
+        speechEngine.setLanguage(speechLocaleFor(language));
+        Toast.makeText(this, "Replying in " + language + " (change in Settings)", Toast.LENGTH_SHORT).show();
+        // A speculative reply was requested with the old language instruction
+        speculativeTurn.respeculate();
+    }
+
     private void updateLanguage(String newLanguage) {
             currentLanguage = newLanguage;
             // Set language preference in Gemini API
             geminiAPI.setLanguage(newLanguage);
+            speechEngine.setLanguage(speechLocaleFor(newLanguage));
             // Add language change message
             String message = "Switched to " + newLanguage + " mode";
             switch (newLanguage) {
@@ -565,20 +1132,34 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
-        if (requestCode == SETTINGS_REQUEST_CODE) {
-            // Reload preferences
-            SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        // Before GeminiAPI arrives there is nothing to update; onGeminiAPIReady reads the settings
+        if (requestCode == SETTINGS_REQUEST_CODE && geminiAPI != null) {
+            // Reload preferences (GeminiAPI already picked up its own through AppServices)
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
             String newLanguage = prefs.getString(LANGUAGE_PREF, "english");
             if (!newLanguage.equals(currentLanguage)) {
                 updateLanguage(newLanguage);
             }
             
+            // The quiz switch already changed GeminiAPI's prompts; the quiz controls catch up
+            boolean newQuizMode = prefs.getBoolean(QUIZ_MODE_PREF, false);
+            if (newQuizMode != quizMode) {
+                if (newQuizMode) {
+                    startQuiz();
+                } else {
+                    stopQuiz();
+                }
+            }
+
             // Check debug mode changes
             boolean newDebugMode = prefs.getBoolean(DEBUG_MODE_PREF, false);
             if (newDebugMode != isDebugMode) {
                 isDebugMode = newDebugMode;
                 updateDebugTabVisibility();
             }
+
+            applyVoiceSettings(prefs);
+            applyInputSettings(prefs);
         }
     }
 
@@ -619,6 +1200,28 @@ public class MainActivity extends AppCompatActivity {
         if (voiceManager != null) {
             voiceManager.destroy();
         }
+        if (speculativeTurn != null) {
+            speculativeTurn.cancel();
+        }
+        if (outbox != null) {
+            // The outbox outlives this screen: messages still inside the coalescing window go
+            // out now, and replies arriving before the next screen attaches are held for it
+            inputCoalescer.flushPending();
+            if (outbox.getListener() == outboxListener) {
+                outbox.setListener(null);
+            }
+        }
+        if (speechEngine != null) {
+            speechEngine.shutdown();
+        }
+        // GeminiAPI outlives this activity, it must not keep logging into a dead fragment
+        if (geminiAPI != null && geminiAPI.getDebugLog() == debugFragment) {
+            geminiAPI.setDebugLog(null);
+        }
+        MemoryBudget memoryBudget = SpeechApp.services(this).getMemoryBudget();
+        if (memoryBudget.getDebugLog() == debugFragment) {
+            memoryBudget.setDebugLog(null);
+        }
     }
 
     public void updateVoiceAmplitude(float amplitude) {
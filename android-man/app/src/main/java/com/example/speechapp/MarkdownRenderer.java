@@ -0,0 +1,230 @@
+package com.example.speechapp;
+
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.SpannedString;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.BulletSpan;
+import android.text.style.RelativeSizeSpan;
+import android.text.style.StyleSpan;
+import android.text.style.TypefaceSpan;
+import android.util.Log;
+import android.util.LruCache;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turns the markdown in bot replies (bold, italics, inline code, code blocks, headings and
+ * bullet lists) into styled text. Each message is parsed once on a background pool and
+ * the immutable result kept in an LRU cache keyed by message id and bounded by total
+ * characters, so binding a row while scrolling is a cache lookup.
+ *
+ * get() and clear() are main-thread only; trimming works from any thread.
+ */
+public class MarkdownRenderer implements MemoryBudget.Trimmable {
+    private static final String TAG = "MarkdownRenderer";
+    private static final int CACHE_CHARS = 256 * 1024;
+    private static final int CODE_BACKGROUND = 0x14000000;
+    private static final int BULLET_GAP_PX = 16;
+
+    public interface Listener {
+        /** Called on the main thread once the message's styled text is in the cache. */
+        void onRendered(long messageId);
+    }
+
+    private final LruCache<Long, CharSequence> cache = new LruCache<Long, CharSequence>(CACHE_CHARS) {
+        @Override
+        protected int sizeOf(Long key, CharSequence value) {
+            return Math.max(1, value.length());
+        }
+    };
+    private final Set<Long> rendering = new HashSet<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final ExecutorService pool = Executors.newFixedThreadPool(2, runnable -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        runnable.run();
+    }, "MarkdownRenderer-" + threadCount.incrementAndGet()));
+
+    /**
+     * The styled text for a message, or null if it is not ready yet; in that case it is
+     * rendered in the background and the listener is told when it lands in the cache.
+     * Text without any markdown is returned as is and never cached.
+     */
+    public CharSequence get(long messageId, String markdown, Listener listener) {
+        if (markdown == null || !hasMarkdown(markdown)) return markdown;
+        CharSequence cached = cache.get(messageId);
+        if (cached != null || !rendering.add(messageId)) return cached;
+
+        pool.execute(() -> {
+            CharSequence styled;
+            try {
+                styled = render(markdown);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error rendering message " + messageId, e);
+                styled = markdown;
+            }
+            CharSequence result = styled;
+            mainHandler.post(() -> {
+                rendering.remove(messageId);
+                cache.put(messageId, result);
+                listener.onRendered(messageId);
+            });
+        });
+        return null;
+    }
+
+    /** Drops every cached rendering; messages are parsed again when next shown. */
+    public void clear() {
+        cache.evictAll();
+    }
+
+    // The cache counts chars; spans add roughly as much again
+    @Override
+    public long sizeBytes() {
+        return cache.size() * 4L;
+    }
+
+    @Override
+    public void trim(float keep) {
+        cache.trimToSize((int) (cache.size() * keep));
+    }
+
+    // Cheap pre-check so plain replies skip the pool entirely
+    static boolean hasMarkdown(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '*' || c == '_' || c == '`' || c == '#') return true;
+            if ((c == '-' || c == '+') && (i == 0 || text.charAt(i - 1) == '\n')) return true;
+        }
+        return false;
+    }
+
+    static CharSequence render(String markdown) {
+        SpannableStringBuilder out = new SpannableStringBuilder();
+        String[] lines = markdown.split("\n", -1);
+        int codeStart = -1;
+        for (int n = 0; n < lines.length; n++) {
+            String line = lines[n];
+            String trimmed = line.trim();
+
+            if (trimmed.startsWith("```")) {
+                if (codeStart < 0) {
+                    codeStart = out.length();
+                } else {
+                    // Drop the newline before the closing fence
+                    if (out.length() > codeStart && out.charAt(out.length() - 1) == '\n') {
+                        out.delete(out.length() - 1, out.length());
+                    }
+                    setSpans(out, codeStart, new TypefaceSpan("monospace"), new BackgroundColorSpan(CODE_BACKGROUND));
+                    codeStart = -1;
+                    if (n < lines.length - 1) out.append('\n');
+                }
+                continue;
+            }
+            if (codeStart >= 0) {
+                out.append(line).append('\n');
+                continue;
+            }
+
+            int lineStart = out.length();
+            int level = headingLevel(trimmed);
+            if (level > 0) {
+                appendInline(out, trimmed.substring(level).trim());
+                setSpans(out, lineStart, new StyleSpan(Typeface.BOLD),
+                        new RelativeSizeSpan(Math.max(1f, 1.4f - 0.1f * level)));
+            } else if (isBullet(trimmed)) {
+                appendInline(out, trimmed.substring(2).trim());
+                setSpans(out, lineStart, new BulletSpan(BULLET_GAP_PX));
+            } else {
+                appendInline(out, line);
+            }
+            if (n < lines.length - 1) out.append('\n');
+        }
+        // An unclosed fence still reads as code
+        if (codeStart >= 0) {
+            setSpans(out, codeStart, new TypefaceSpan("monospace"), new BackgroundColorSpan(CODE_BACKGROUND));
+        }
+        return new SpannedString(out);
+    }
+
+    private static int headingLevel(String line) {
+        int level = 0;
+        while (level < line.length() && line.charAt(level) == '#' && level < 6) {
+            level++;
+        }
+        return level > 0 && level < line.length() && line.charAt(level) == ' ' ? level : 0;
+    }
+
+    private static boolean isBullet(String line) {
+        return line.length() > 2 && (line.charAt(0) == '-' || line.charAt(0) == '*' || line.charAt(0) == '+')
+                && line.charAt(1) == ' ';
+    }
+
+    private static void appendInline(SpannableStringBuilder out, String text) {
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '`') {
+                int end = text.indexOf('`', i + 1);
+                if (end > i + 1) {
+                    int start = out.length();
+                    out.append(text, i + 1, end);
+                    setSpans(out, start, new TypefaceSpan("monospace"), new BackgroundColorSpan(CODE_BACKGROUND));
+                    i = end + 1;
+                    continue;
+                }
+            } else if ((c == '*' || c == '_') && i + 1 < text.length() && text.charAt(i + 1) == c) {
+                int end = text.indexOf(new String(new char[] {c, c}), i + 2);
+                if (end > i + 2) {
+                    int start = out.length();
+                    appendInline(out, text.substring(i + 2, end));
+                    setSpans(out, start, new StyleSpan(Typeface.BOLD));
+                    i = end + 2;
+                    continue;
+                }
+            } else if ((c == '*' || c == '_') && opensEmphasis(text, i)) {
+                int end = closingEmphasis(text, c, i + 1);
+                if (end > 0) {
+                    int start = out.length();
+                    appendInline(out, text.substring(i + 1, end));
+                    setSpans(out, start, new StyleSpan(Typeface.ITALIC));
+                    i = end + 1;
+                    continue;
+                }
+            }
+            out.append(c);
+            i++;
+        }
+    }
+
+    // "2 * 3 * 4" and snake_case stay literal
+    private static boolean opensEmphasis(String text, int i) {
+        if (i + 1 >= text.length() || Character.isWhitespace(text.charAt(i + 1))) return false;
+        return text.charAt(i) != '_' || i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1));
+    }
+
+    private static int closingEmphasis(String text, char marker, int from) {
+        for (int j = from + 1; j < text.length(); j++) {
+            if (text.charAt(j) != marker || Character.isWhitespace(text.charAt(j - 1))) continue;
+            if (j + 1 < text.length() && text.charAt(j + 1) == marker) continue;
+            if (marker == '_' && j + 1 < text.length() && Character.isLetterOrDigit(text.charAt(j + 1))) continue;
+            return j;
+        }
+        return -1;
+    }
+
+    private static void setSpans(SpannableStringBuilder out, int start, Object... spans) {
+        if (start >= out.length()) return;
+        for (Object span : spans) {
+            out.setSpan(span, start, out.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.speechapp;
+
+import android.content.ComponentCallbacks2;
+import android.os.SystemClock;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Central account of the app's growing heaps (caches, logs, conversation history, the chat
+ * itself). Each one registers its size and a trim hook; on onTrimMemory, or when the total
+ * passes the configurable soft cap, they are shrunk in priority order, cheapest to rebuild
+ * first, so the app stays small enough not to be killed in the background.
+ *
+ * Thread-safe. Trim hooks may be called from any thread and must hop to their own thread.
+ */
+public class MemoryBudget {
+    private static final String TAG = "MemoryBudget";
+    public static final long DEFAULT_SOFT_CAP_BYTES = 8L * 1024 * 1024;
+    // Shedding for the soft cap aims below it, so the next few messages do not trip it again
+    private static final float SOFT_CAP_TARGET = 0.75f;
+    private static final long CHECK_INTERVAL_MS = 1000;
+
+    /** Shedding order: everything of an earlier priority is trimmed before a later one. */
+    public enum Priority {
+        CACHE,
+        DIAGNOSTICS,
+        HISTORY,
+        CONTENT
+    }
+
+    public interface Trimmable {
+        /** Estimated size in bytes; called from any thread, so it should be cheap. */
+        long sizeBytes();
+
+        /** Shrinks to about the given fraction of the current size, 0 dropping all it can. */
+        void trim(float keep);
+    }
+
+    private static class Entry {
+        final String name;
+        final Priority priority;
+        final Trimmable trimmable;
+
+        Entry(String name, Priority priority, Trimmable trimmable) {
+            this.name = name;
+            this.priority = priority;
+            this.trimmable = trimmable;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private long softCapBytes = DEFAULT_SOFT_CAP_BYTES;
+    private long lastCheckAt = Long.MIN_VALUE / 2;
+    private String lastShed = "never";
+    private volatile DebugLogFragment debugLogFragment;
+
+    /** Registers (or replaces) the account with this name. */
+    public synchronized void register(String name, Priority priority, Trimmable trimmable) {
+        entries.put(name, new Entry(name, priority, trimmable));
+    }
+
+    /** Removes the account only if it still belongs to this trimmable. */
+    public synchronized void unregister(String name, Trimmable trimmable) {
+        Entry entry = entries.get(name);
+        if (entry != null && entry.trimmable == trimmable) {
+            entries.remove(name);
+        }
+    }
+
+    public synchronized void setSoftCap(long bytes) {
+        this.softCapBytes = bytes;
+        Log.d(TAG, "Soft cap " + kilobytes(bytes));
+    }
+
+    // Outlives activities, like GeminiAPI, so the report follows the current screen
+    public void setDebugLog(DebugLogFragment debugLogFragment) {
+        this.debugLogFragment = debugLogFragment;
+    }
+
+    public DebugLogFragment getDebugLog() {
+        return debugLogFragment;
+    }
+
+    public synchronized void onTrimMemory(int level) {
+        float[] keep = keepFractions(level);
+        if (keep == null) return;
+        long freed = 0;
+        for (Entry entry : byPriority()) {
+            float fraction = keep[entry.priority.ordinal()];
+            if (fraction >= 1) continue;
+            long size = entry.trimmable.sizeBytes();
+            entry.trimmable.trim(fraction);
+            freed += (long) (size * (1 - fraction));
+        }
+        shed("trim level " + level, freed);
+    }
+
+    /** Called after something grew; sheds down below the soft cap if it was passed. Throttled. */
+    public void checkSoftCap() {
+        long total;
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            if (now - lastCheckAt < CHECK_INTERVAL_MS) return;
+            lastCheckAt = now;
+            total = totalBytes();
+            if (total <= softCapBytes) return;
+
+            long excess = total - (long) (softCapBytes * SOFT_CAP_TARGET);
+            long freed = 0;
+            for (Entry entry : byPriority()) {
+                if (freed >= excess) break;
+                long size = entry.trimmable.sizeBytes();
+                if (size == 0) continue;
+                long cut = Math.min(size, excess - freed);
+                entry.trimmable.trim(1 - (float) cut / size);
+                freed += cut;
+            }
+            shed("soft cap " + kilobytes(softCapBytes) + " passed at " + kilobytes(total), freed);
+        }
+    }
+
+    public synchronized String report() {
+        StringBuilder sb = new StringBuilder("Memory: " + kilobytes(totalBytes()) + " of "
+                + kilobytes(softCapBytes) + " soft cap, last shed: " + lastShed);
+        for (Entry entry : byPriority()) {
+            sb.append("\n  ").append(entry.name).append(" (").append(entry.priority.name().toLowerCase(Locale.ROOT))
+                    .append("): ").append(kilobytes(entry.trimmable.sizeBytes()));
+        }
+        return sb.toString();
+    }
+
+    private void shed(String reason, long freed) {
+        lastShed = reason + ", about " + kilobytes(freed) + " freed";
+        Log.i(TAG, "Shed for " + lastShed);
+        DebugLogFragment debugLogFragment = this.debugLogFragment;
+        if (debugLogFragment != null) {
+            debugLogFragment.appendLog(report());
+        }
+    }
+
+    // Per priority, the fraction to keep at this trim level; null to do nothing
+    private static float[] keepFractions(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return new float[] {0f, 0f, 0.25f, 0.5f};
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return new float[] {0f, 0.25f, 0.5f, 1f};
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return new float[] {0f, 0.5f, 1f, 1f};
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return new float[] {0f, 1f, 1f, 1f};
+        }
+        return null;
+    }
+
+    private List<Entry> byPriority() {
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        sorted.sort((a, b) -> a.priority.compareTo(b.priority));
+        return sorted;
+    }
+
+    private long totalBytes() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += entry.trimmable.sizeBytes();
+        }
+        return total;
+    }
+
+    private static String kilobytes(long bytes) {
+        return (bytes + 512) / 1024 + " KB";
+    }
+}
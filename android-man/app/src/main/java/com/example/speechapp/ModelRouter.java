@@ -0,0 +1,219 @@
+package com.example.speechapp;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Picks the model and output budget for each request class and steers away from models
+ * that are currently slow or failing. Every model keeps its recent outcomes; a model whose
+ * error rate or p95 latency exceeds the class budget counts as degraded, and the request
+ * goes to the healthiest alternative instead. Samples expire after a few minutes, so a
+ * degraded model is tried again once its bad spell has aged out.
+ *
+ * Thread-safe.
+ */
+public class ModelRouter {
+    public static final String FLASH = "gemini-2.0-flash";
+    public static final String FLASH_LITE = "gemini-2.0-flash-lite";
+
+    private static final int WINDOW = 50;
+    private static final long WINDOW_MILLIS = 5 * 60 * 1000;
+    private static final int MIN_SAMPLES = 5;
+    private static final double MAX_ERROR_RATE = 0.25;
+
+    public enum RequestClass {
+        QUIZ_START,
+        QUIZ_ANSWER,
+        CHAT,
+        AUDIO
+    }
+
+    public static class Route {
+        public final RequestClass requestClass;
+        public final String model;
+        public final String preferred;
+        public final String fallback;
+        public final int maxOutputTokens;
+        public final String reason;
+
+        Route(RequestClass requestClass, String model, String preferred, String fallback, int maxOutputTokens,
+              String reason) {
+            this.requestClass = requestClass;
+            this.model = model;
+            this.preferred = preferred;
+            this.fallback = fallback;
+            this.maxOutputTokens = maxOutputTokens;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return requestClass + " -> " + model + " (" + reason + ", " + maxOutputTokens + " tokens)";
+        }
+    }
+
+    private static class Policy {
+        final String[] models;
+        final int maxOutputTokens;
+        final long latencyBudgetMillis;
+
+        Policy(int maxOutputTokens, long latencyBudgetMillis, String... models) {
+            this.models = models;
+            this.maxOutputTokens = maxOutputTokens;
+            this.latencyBudgetMillis = latencyBudgetMillis;
+        }
+    }
+
+    private final Map<RequestClass, Policy> policies = new EnumMap<>(RequestClass.class);
+    private final Map<String, Stats> stats = new LinkedHashMap<>();
+    private final LongSupplier clock;
+
+    public ModelRouter() {
+        this(System::currentTimeMillis);
+    }
+
+    public ModelRouter(LongSupplier clock) {
+        this.clock = clock;
+        // A quiz answer only needs a short JSON evaluation, so the lite model goes first
+        policies.put(RequestClass.QUIZ_START, new Policy(500, 4000, FLASH, FLASH_LITE));
+        policies.put(RequestClass.QUIZ_ANSWER, new Policy(500, 2500, FLASH_LITE, FLASH));
+        policies.put(RequestClass.CHAT, new Policy(800, 4000, FLASH, FLASH_LITE));
+        policies.put(RequestClass.AUDIO, new Policy(800, 5000, FLASH, FLASH_LITE));
+    }
+
+    public synchronized Route route(RequestClass requestClass) {
+        Policy policy = policies.get(requestClass);
+        long now = clock.getAsLong();
+        String preferred = policy.models[0];
+        String chosen = preferred;
+        String reason = "preferred";
+
+        if (isDegraded(preferred, policy, now)) {
+            chosen = null;
+            for (int i = 1; i < policy.models.length; i++) {
+                String candidate = policy.models[i];
+                if (isDegraded(candidate, policy, now)) continue;
+                if (chosen == null || stats(candidate).percentile(50, now) < stats(chosen).percentile(50, now)) {
+                    chosen = candidate;
+                }
+            }
+            if (chosen != null) {
+                reason = "failover, " + preferred + " " + describe(preferred, now);
+            } else {
+                // Everything is degraded: least failing, then fastest
+                for (String candidate : policy.models) {
+                    if (chosen == null || score(candidate, now) < score(chosen, now)) {
+                        chosen = candidate;
+                    }
+                }
+                reason = "all degraded, least bad";
+            }
+        }
+
+        String fallback = null;
+        for (String candidate : policy.models) {
+            if (!candidate.equals(chosen)) {
+                fallback = candidate;
+                break;
+            }
+        }
+        return new Route(requestClass, chosen, preferred, fallback, policy.maxOutputTokens, reason);
+    }
+
+    public synchronized void record(String model, long latencyMillis, boolean success) {
+        stats(model).add(clock.getAsLong(), latencyMillis, success);
+    }
+
+    public synchronized String describe(String model) {
+        return describe(model, clock.getAsLong());
+    }
+
+    public synchronized String summary() {
+        long now = clock.getAsLong();
+        StringBuilder sb = new StringBuilder("Model health (last 5 min):");
+        for (String model : stats.keySet()) {
+            sb.append("\n  ").append(model).append(": ").append(describe(model, now));
+        }
+        return sb.toString();
+    }
+
+    private String describe(String model, long now) {
+        Stats s = stats(model);
+        int count = s.count(now);
+        if (count == 0) return "no samples";
+        return "n=" + count + " p50=" + s.percentile(50, now) + " ms p95=" + s.percentile(95, now)
+                + " ms errors=" + Math.round(s.errorRate(now) * 100) + "%";
+    }
+
+    private boolean isDegraded(String model, Policy policy, long now) {
+        Stats s = stats(model);
+        if (s.count(now) < MIN_SAMPLES) return false;
+        return s.errorRate(now) > MAX_ERROR_RATE || s.percentile(95, now) > policy.latencyBudgetMillis;
+    }
+
+    private double score(String model, long now) {
+        Stats s = stats(model);
+        return s.errorRate(now) * 1000000 + s.percentile(50, now);
+    }
+
+    private Stats stats(String model) {
+        Stats s = stats.get(model);
+        if (s == null) {
+            s = new Stats();
+            stats.put(model, s);
+        }
+        return s;
+    }
+
+    private static class Stats {
+        final long[] timestamps = new long[WINDOW];
+        final long[] latencies = new long[WINDOW];
+        final boolean[] successes = new boolean[WINDOW];
+        int total = 0;
+
+        void add(long now, long latencyMillis, boolean success) {
+            int i = total % WINDOW;
+            timestamps[i] = now;
+            latencies[i] = latencyMillis;
+            successes[i] = success;
+            total++;
+        }
+
+        int count(long now) {
+            int count = 0;
+            for (int i = 0; i < Math.min(total, WINDOW); i++) {
+                if (now - timestamps[i] <= WINDOW_MILLIS) count++;
+            }
+            return count;
+        }
+
+        double errorRate(long now) {
+            int count = 0;
+            int errors = 0;
+            for (int i = 0; i < Math.min(total, WINDOW); i++) {
+                if (now - timestamps[i] > WINDOW_MILLIS) continue;
+                count++;
+                if (!successes[i]) errors++;
+            }
+            return count == 0 ? 0 : (double) errors / count;
+        }
+
+        // Over all recent attempts: a timeout is as slow as it felt to the user
+        long percentile(int p, long now) {
+            long[] recent = new long[WINDOW];
+            int count = 0;
+            for (int i = 0; i < Math.min(total, WINDOW); i++) {
+                if (now - timestamps[i] <= WINDOW_MILLIS) {
+                    recent[count++] = latencies[i];
+                }
+            }
+            if (count == 0) return 0;
+            Arrays.sort(recent, 0, count);
+            int index = (int) Math.ceil(p / 100.0 * count) - 1;
+            return recent[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.speechapp;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Any server implementing the OpenAI chat completions API (OpenAI itself, or a local
+ * llama.cpp / vLLM / Ollama endpoint). Text only; the API key is optional because local
+ * servers usually do not ask for one.
+ */
+public class OpenAiCompatibleBackend implements LlmBackend {
+    public static final String DEFAULT_BASE_URL = "https://api.openai.com/v1";
+    public static final String DEFAULT_MODEL = "gpt-4o-mini";
+
+    private final String baseUrl;
+    private final String model;
+    private final String apiKey;
+
+    public OpenAiCompatibleBackend(String baseUrl, String model, String apiKey) {
+        this.baseUrl = GeminiRestBackend.trimSlash(baseUrl == null || baseUrl.trim().isEmpty()
+                ? DEFAULT_BASE_URL : baseUrl.trim());
+        this.model = model == null || model.trim().isEmpty() ? DEFAULT_MODEL : model.trim();
+        this.apiKey = apiKey;
+    }
+
+    @Override
+    public String getName() {
+        return "OpenAI-compatible (" + model + " at " + baseUrl + ")";
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsAudio() {
+        return false;
+    }
+
+    @Override
+    public Request buildRequest(LlmRequest request) throws JSONException {
+        JSONArray messages = new JSONArray()
+            .put(message("system", request.systemPrompt));
+        if (request.history != null) {
+            messages.put(message("user", request.history));
+        }
+        messages.put(message("user", request.userText));
+
+        JSONObject requestBody = new JSONObject()
+            .put("model", model)
+            .put("messages", messages)
+            .put("temperature", request.temperature)
+            .put("max_tokens", request.maxOutputTokens);
+        if (request.jsonOutput) {
+            requestBody.put("response_format", new JSONObject().put("type", "json_object"));
+        }
+
+        Request.Builder builder = new Request.Builder()
+            .url(baseUrl + "/chat/completions")
+            .post(RequestBody.create(requestBody.toString(), MediaType.parse("application/json")));
+        if (apiKey != null && !apiKey.isEmpty()) {
+            builder.header("Authorization", "Bearer " + apiKey);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String parseReply(String responseBody) throws JSONException {
+        return new JSONObject(responseBody)
+            .getJSONArray("choices")
+            .getJSONObject(0)
+            .getJSONObject("message")
+            .getString("content");
+    }
+
+    private static JSONObject message(String role, String content) throws JSONException {
+        return new JSONObject().put("role", role).put("content", content);
+    }
+}
@@ -0,0 +1,394 @@
+package com.example.speechapp;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AtomicFile;
+import android.util.Log;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Durable queue for outgoing text turns. Every turn is journaled before it is sent and only
+ * removed once it gets a reply (or a non-network error), so turns that fail while offline
+ * survive until connectivity returns, even across restarts.
+ *
+ * Turns are sent in order with at most MAX_IN_FLIGHT outstanding. A network failure pulls
+ * back any later turns that have not been answered yet, so nothing overtakes it, and the
+ * queue waits for the default network to come back. If the network is reported up but
+ * sends still fail, retries back off exponentially instead of hammering the server.
+ *
+ * Application-scoped (see AppServices), so turns in flight survive the activity being
+ * recreated. Screens attach a Listener to show waiting turns and replies; replies that arrive
+ * while none is attached are held for the next one.
+ *
+ * Main thread only; the journal is read and written on a background thread, and turns
+ * submitted before it has been read wait behind the restored ones.
+ */
+public class Outbox {
+    private static final String TAG = "Outbox";
+    private static final String JOURNAL_FILE = "outbox.json";
+    private static final int MAX_IN_FLIGHT = 2;
+    private static final long MIN_BACKOFF_MILLIS = 2000;
+    private static final long MAX_BACKOFF_MILLIS = 60000;
+    // A question answered a day later is more confusing than helpful
+    private static final long MAX_AGE_MILLIS = 24 * 60 * 60 * 1000L;
+
+    public interface Sender {
+        GeminiAPI.Turn send(String text, GeminiAPI.GeminiCallback callback);
+    }
+
+    public interface Listener {
+        /** The turn could not be sent and is waiting for connectivity. */
+        void onWaiting(Entry entry);
+
+        /** Builds the callback that shows the reply for this turn. */
+        GeminiAPI.GeminiCallback replyCallback(Entry entry);
+
+        /** The turn got its reply or a non-network error and left the queue. */
+        void onFinished(Entry entry);
+
+        /** Turns journaled by an earlier process, read after the listener was attached. */
+        void onRestored(List<Entry> entries);
+    }
+
+    private Sender sender;
+    private Listener listener;
+    private final AtomicFile journal;
+    private final ConnectivityManager connectivity;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService io = Executors.newSingleThreadExecutor();
+    private final List<Entry> queue = new ArrayList<>();
+    // Answered while no listener was attached
+    private final List<Entry> held = new ArrayList<>();
+    private final Runnable retry = this::retry;
+    private long nextId = 1;
+    private int inFlight = 0;
+    private boolean online = true;
+    private boolean backingOff = false;
+    private long backoffMillis = MIN_BACKOFF_MILLIS;
+    private boolean started = false;
+    private boolean loaded = false;
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            Log.d(TAG, "Network available, " + queue.size() + " queued");
+            online = true;
+            backingOff = false;
+            backoffMillis = MIN_BACKOFF_MILLIS;
+            handler.removeCallbacks(retry);
+            drain();
+        }
+
+        @Override
+        public void onLost(Network network) {
+            online = false;
+        }
+    };
+
+    public Outbox(Context context) {
+        this.journal = new AtomicFile(new File(context.getFilesDir(), JOURNAL_FILE));
+        this.connectivity = context.getSystemService(ConnectivityManager.class);
+        io.execute(this::load);
+    }
+
+    /**
+     * Turns not yet shown as answered, oldest first, so a new screen can show their bubbles
+     * again before it attaches.
+     */
+    public List<Entry> getEntries() {
+        List<Entry> entries = new ArrayList<>(held);
+        entries.addAll(queue);
+        return Collections.unmodifiableList(entries);
+    }
+
+    /** Attaches the screen showing turns, or detaches it with null. Delivers held replies. */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        if (listener == null) return;
+        for (Entry entry : new ArrayList<>(held)) {
+            held.remove(entry);
+            entry.heldReply.accept(listener.replyCallback(entry));
+            entry.heldReply = null;
+        }
+        // The new screen has its own bubbles to mark
+        for (Entry entry : queue) {
+            entry.waiting = false;
+        }
+        drain();
+    }
+
+    public Listener getListener() {
+        return listener;
+    }
+
+    /** Starts sending through the sender; turns submitted before then wait in the queue. */
+    public void start(Sender sender) {
+        if (started) return;
+        started = true;
+        this.sender = sender;
+        online = connectivity.getActiveNetwork() != null;
+        // Callbacks arrive on the main thread, like everything else here
+        connectivity.registerDefaultNetworkCallback(networkCallback, handler);
+        drain();
+    }
+
+    public Entry submit(String text, Object tag) {
+        Entry entry = new Entry(nextId++, text, System.currentTimeMillis());
+        entry.tag = tag;
+        queue.add(entry);
+        persist();
+        drain();
+        return entry;
+    }
+
+    private void drain() {
+        if (!started || !loaded) return;
+        if (!online || backingOff) {
+            for (Entry entry : queue) {
+                notifyWaiting(entry);
+            }
+            return;
+        }
+        // A send can fail synchronously and finish its entry, so walk a copy
+        for (Entry entry : new ArrayList<>(queue)) {
+            if (inFlight >= MAX_IN_FLIGHT) break;
+            if (entry.sent || !queue.contains(entry)) continue;
+            entry.sent = true;
+            entry.waiting = false;
+            inFlight++;
+            GeminiAPI.Turn turn = sender.send(entry.text, new EntryCallback(entry));
+            if (entry.sent) {
+                entry.liveTurn = turn;
+            }
+        }
+    }
+
+    private void retry() {
+        backingOff = false;
+        drain();
+    }
+
+    private void notifyWaiting(Entry entry) {
+        if (entry.sent || entry.waiting || listener == null) return;
+        entry.waiting = true;
+        listener.onWaiting(entry);
+    }
+
+    private void finish(Entry entry) {
+        if (!entry.sent) return;
+        entry.sent = false;
+        entry.liveTurn = null;
+        inFlight--;
+        queue.remove(entry);
+        backoffMillis = MIN_BACKOFF_MILLIS;
+        persist();
+        if (listener != null) {
+            listener.onFinished(entry);
+        }
+        drain();
+    }
+
+    private void requeue(Entry entry) {
+        if (!entry.sent) return;
+        entry.sent = false;
+        entry.liveTurn = null;
+        inFlight--;
+        // Later turns must not be answered before this one
+        for (int i = queue.indexOf(entry) + 1; i < queue.size(); i++) {
+            Entry later = queue.get(i);
+            if (later.liveTurn != null && later.liveTurn.cancel()) {
+                later.sent = false;
+                later.liveTurn = null;
+                inFlight--;
+            }
+        }
+
+        online = connectivity.getActiveNetwork() != null;
+        if (online) {
+            // The network claims to be up, so back off rather than retry straight away
+            backingOff = true;
+            handler.removeCallbacks(retry);
+            handler.postDelayed(retry, backoffMillis);
+            Log.d(TAG, "Send failed while connected, retrying in " + backoffMillis + " ms");
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        }
+        drain();
+    }
+
+    private boolean cancel(Entry entry) {
+        // Already answered, or failed for good
+        if (!queue.contains(entry)) return false;
+        if (entry.sent) {
+            if (entry.liveTurn != null && !entry.liveTurn.cancel()) return false;
+            entry.sent = false;
+            entry.liveTurn = null;
+            inFlight--;
+        }
+        queue.remove(entry);
+        persist();
+        drain();
+        return true;
+    }
+
+    private void persist() {
+        JSONArray snapshot = new JSONArray();
+        try {
+            for (Entry entry : queue) {
+                snapshot.put(new JSONObject()
+                    .put("id", entry.id)
+                    .put("text", entry.text)
+                    .put("createdAt", entry.createdAt));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error serializing outbox", e);
+            return;
+        }
+        byte[] data = snapshot.toString().getBytes(StandardCharsets.UTF_8);
+        io.execute(() -> {
+            FileOutputStream out = null;
+            try {
+                out = journal.startWrite();
+                out.write(data);
+                journal.finishWrite(out);
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing outbox journal", e);
+                if (out != null) {
+                    journal.failWrite(out);
+                }
+            }
+        });
+    }
+
+    // On the io thread, ahead of any journal write
+    private void load() {
+        List<JSONObject> restored = new ArrayList<>();
+        if (journal.getBaseFile().exists()) {
+            try {
+                JSONArray entries = new JSONArray(new String(journal.readFully(), StandardCharsets.UTF_8));
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < entries.length(); i++) {
+                    JSONObject json = entries.getJSONObject(i);
+                    if (now - json.getLong("createdAt") < MAX_AGE_MILLIS) {
+                        restored.add(json);
+                    }
+                }
+                Log.d(TAG, "Restored " + restored.size() + " queued turns");
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading outbox journal", e);
+            }
+        }
+        handler.post(() -> restore(restored));
+    }
+
+    private void restore(List<JSONObject> journaled) {
+        List<Entry> restored = new ArrayList<>();
+        for (JSONObject json : journaled) {
+            // Renumbered, turns submitted meanwhile already took the first ids
+            restored.add(new Entry(nextId++, json.optString("text"), json.optLong("createdAt")));
+        }
+        queue.addAll(0, restored);
+        loaded = true;
+        if (!restored.isEmpty()) {
+            persist();
+            if (listener != null) {
+                listener.onRestored(Collections.unmodifiableList(restored));
+            }
+        }
+        drain();
+    }
+
+    private void deliver(Entry entry, Consumer<GeminiAPI.GeminiCallback> reply) {
+        if (listener != null) {
+            reply.accept(listener.replyCallback(entry));
+        } else {
+            entry.heldReply = reply;
+            held.add(entry);
+        }
+    }
+
+    // Drops the turn from the queue, then shows the reply on whichever screen is attached by
+    // then; a network failure requeues it instead
+    private class EntryCallback implements GeminiAPI.GeminiCallback {
+        private final Entry entry;
+
+        EntryCallback(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void onResponse(String response) {
+            finish(entry);
+            deliver(entry, reply -> reply.onResponse(response));
+        }
+
+        @Override
+        public void onMultiResponse(List<String> responses) {
+            finish(entry);
+            deliver(entry, reply -> reply.onMultiResponse(responses));
+        }
+
+        @Override
+        public void onError(String error) {
+            finish(entry);
+            deliver(entry, reply -> reply.onError(error));
+        }
+
+        @Override
+        public void onNetworkError(String error) {
+            Log.d(TAG, "Turn " + entry.id + " hit a network error: " + error);
+            requeue(entry);
+        }
+    }
+
+    /**
+     * A journaled turn. Cancelling it (e.g. when superseded by the coalescer) removes it
+     * from the queue unless its reply is already being delivered.
+     */
+    public class Entry extends GeminiAPI.Turn {
+        private final long id;
+        private final String text;
+        private final long createdAt;
+        private Object tag;
+        private GeminiAPI.Turn liveTurn;
+        private Consumer<GeminiAPI.GeminiCallback> heldReply;
+        private boolean sent = false;
+        private boolean waiting = false;
+
+        Entry(long id, String text, long createdAt) {
+            this.id = id;
+            this.text = text;
+            this.createdAt = createdAt;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public Object getTag() {
+            return tag;
+        }
+
+        public void setTag(Object tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public boolean cancel() {
+            return Outbox.this.cancel(this);
+        }
+    }
+}
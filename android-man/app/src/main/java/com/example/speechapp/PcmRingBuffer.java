@@ -0,0 +1,53 @@
+package com.example.speechapp;
+
+/**
+ * Fixed-size ring of 16-bit samples that always holds the most recent audio. Allocated once;
+ * writes overwrite the oldest samples, reads copy oldest-to-newest into a caller buffer.
+ */
+public class PcmRingBuffer {
+    private final short[] data;
+    private int writePos = 0;
+    private int size = 0;
+
+    public PcmRingBuffer(int capacity) {
+        this.data = new short[capacity];
+    }
+
+    public void write(short[] samples, int offset, int length) {
+        if (length >= data.length) {
+            // Only the tail fits
+            System.arraycopy(samples, offset + length - data.length, data, 0, data.length);
+            writePos = 0;
+            size = data.length;
+            return;
+        }
+        int first = Math.min(length, data.length - writePos);
+        System.arraycopy(samples, offset, data, writePos, first);
+        System.arraycopy(samples, offset + first, data, 0, length - first);
+        writePos = (writePos + length) % data.length;
+        size = Math.min(data.length, size + length);
+    }
+
+    /** Copies up to dest.length of the buffered samples, oldest first, and returns the count. */
+    public int read(short[] dest) {
+        int count = Math.min(size, dest.length);
+        int start = (writePos - count + data.length) % data.length;
+        int first = Math.min(count, data.length - start);
+        System.arraycopy(data, start, dest, 0, first);
+        System.arraycopy(data, 0, dest, first, count - first);
+        return count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return data.length;
+    }
+
+    public void clear() {
+        writePos = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,435 @@
+package com.example.speechapp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Fuzzy matching for spoken answers, where the recognizer spells the same word many ways
+ * ("Dilli"/"Delhi", "Bengaluru"/"Bangalore", "दिल्ली"). Three signals are combined:
+ * a transliteration key (Indic scripts to Latin, with common spelling variants folded),
+ * a consonant-class phonetic code, and a bounded edit distance between keys. Two phrases
+ * match when their keys are equal, within the length-scaled distance bound, or share a
+ * phonetic code and are at most one edit further apart than that.
+ *
+ * Pure Java, so its fixtures and benchmark (PhoneticMatcherTest, PhoneticMatcherBenchmark)
+ * run on a desktop JVM.
+ */
+public class PhoneticMatcher {
+    // Devanagari, Bengali, Gurmukhi, Gujarati, Oriya, Tamil, Telugu, Kannada and Malayalam
+    // share one layout, so a single table indexed by the offset into the block covers them
+    private static final int INDIC_FIRST = 0x0900;
+    private static final int INDIC_LAST = 0x0D7F;
+    private static final String[] INDIC = new String[0x80];
+    static {
+        String[][] letters = {
+            {"01", "n"}, {"02", "n"}, {"03", "h"},
+            {"05", "a"}, {"06", "a"}, {"07", "i"}, {"08", "i"}, {"09", "u"}, {"0A", "u"}, {"0B", "ri"},
+            {"0C", "li"}, {"0D", "e"}, {"0E", "e"}, {"0F", "e"}, {"10", "ai"}, {"11", "o"}, {"12", "o"},
+            {"13", "o"}, {"14", "au"},
+            {"15", "k"}, {"16", "kh"}, {"17", "g"}, {"18", "gh"}, {"19", "n"}, {"1A", "ch"}, {"1B", "chh"},
+            {"1C", "j"}, {"1D", "jh"}, {"1E", "n"}, {"1F", "t"}, {"20", "th"}, {"21", "d"}, {"22", "dh"},
+            {"23", "n"}, {"24", "t"}, {"25", "th"}, {"26", "d"}, {"27", "dh"}, {"28", "n"}, {"29", "n"},
+            {"2A", "p"}, {"2B", "ph"}, {"2C", "b"}, {"2D", "bh"}, {"2E", "m"}, {"2F", "y"}, {"30", "r"},
+            {"31", "r"}, {"32", "l"}, {"33", "l"}, {"34", "l"}, {"35", "v"}, {"36", "sh"}, {"37", "sh"},
+            {"38", "s"}, {"39", "h"},
+            {"3E", "a"}, {"3F", "i"}, {"40", "i"}, {"41", "u"}, {"42", "u"}, {"43", "ri"}, {"44", "ri"},
+            {"45", "e"}, {"46", "e"}, {"47", "e"}, {"48", "ai"}, {"49", "o"}, {"4A", "o"}, {"4B", "o"},
+            {"4C", "au"},
+            {"58", "k"}, {"59", "kh"}, {"5A", "g"}, {"5B", "j"}, {"5C", "r"}, {"5D", "rh"}, {"5E", "f"},
+            {"5F", "y"}, {"60", "ri"}, {"61", "li"},
+        };
+        for (String[] letter : letters) {
+            INDIC[Integer.parseInt(letter[0], 16)] = letter[1];
+        }
+        for (int digit = 0; digit < 10; digit++) {
+            INDIC[0x66 + digit] = String.valueOf(digit);
+        }
+    }
+
+    /** Lowercase Latin spelling of the text; Indic letters are transliterated, the rest kept. */
+    public static String transliterate(String text) {
+        StringBuilder sb = new StringBuilder(text.length() * 2);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < INDIC_FIRST || c > INDIC_LAST) {
+                sb.append(Character.toLowerCase(c));
+                continue;
+            }
+            int offset = (c - INDIC_FIRST) & 0x7F;
+            String latin = INDIC[offset];
+            if (latin == null) continue;
+            sb.append(latin);
+            // Consonants carry an inherent 'a' unless a vowel sign or virama follows. Hindi
+            // drops it at the end of a word; the southern scripts spell final vowels out.
+            if (offset >= 0x15 && offset <= 0x39 || offset >= 0x58 && offset <= 0x5F) {
+                int nextOffset = -1;
+                if (i + 1 < text.length()) {
+                    char next = text.charAt(i + 1);
+                    if (next >= INDIC_FIRST && next <= INDIC_LAST) {
+                        nextOffset = (next - INDIC_FIRST) & 0x7F;
+                    }
+                }
+                boolean dependent = nextOffset >= 0x3E && nextOffset <= 0x4D || nextOffset == 0x3C
+                        || nextOffset == 0x62 || nextOffset == 0x63;
+                boolean devanagari = c < 0x0980;
+                if (!dependent && !(devanagari && nextOffset < 0)) {
+                    sb.append('a');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Transliterated spelling with the usual recognizer variants folded together: long
+     * vowels, aspirates, c/k/s, w/v, z/j, doubled letters and word breaks.
+     */
+    public static String key(String text) {
+        String latin = transliterate(text);
+        StringBuilder sb = new StringBuilder(latin.length());
+        for (int i = 0; i < latin.length(); i++) {
+            char c = latin.charAt(i);
+            char next = i + 1 < latin.length() ? latin.charAt(i + 1) : 0;
+            if (!Character.isLetterOrDigit(c)) continue;
+            switch (c) {
+                case 'c':
+                    if (next == 'h') {
+                        sb.append("ch");
+                        i++;
+                        // chh
+                        if (i + 1 < latin.length() && latin.charAt(i + 1) == 'h') i++;
+                        continue;
+                    }
+                    c = next == 'e' || next == 'i' || next == 'y' ? 's' : 'k';
+                    if (next == 'k') i++;
+                    break;
+                case 'p':
+                    if (next == 'h') {
+                        c = 'f';
+                        i++;
+                    }
+                    break;
+                case 's':
+                    if (next == 'h') {
+                        sb.append("sh");
+                        i++;
+                        continue;
+                    }
+                    break;
+                case 'h':
+                    // Aspiration after a consonant is mostly lost in recognition
+                    if (sb.length() > 0 && !isVowel(sb.charAt(sb.length() - 1))) continue;
+                    break;
+                case 'w':
+                    c = 'v';
+                    break;
+                case 'z':
+                    c = 'j';
+                    break;
+                case 'q':
+                    c = 'k';
+                    break;
+                case 'x':
+                    sb.append('k');
+                    c = 's';
+                    break;
+                case 'e':
+                    if (next == 'e') {
+                        c = 'i';
+                        i++;
+                    }
+                    break;
+                case 'o':
+                    if (next == 'o') {
+                        c = 'u';
+                        i++;
+                    }
+                    break;
+                case 'y':
+                    // A trailing y sounds like i: "Bombay"/"Bambai" aside, "Dilly"/"Dilli"
+                    if (next == 0 || !Character.isLetter(next)) c = 'i';
+                    break;
+                default:
+                    break;
+            }
+            if (sb.length() > 0 && sb.charAt(sb.length() - 1) == c) continue;
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A second fold for search-as-you-type, where the folded start of a word must be the
+     * start of the folded word. key() is not: its rules look ahead ("c" before "e", a
+     * trailing "y"), so "gay" keys to "gai" while "गया" keys to "gaya". This one only looks
+     * back: doubled letters collapse and h after a consonant drops. An anusvara before a
+     * labial is spelled m ("मुंबई" as "mumbai"), a final one is dropped, and so is a final a
+     * after a consonant, so "krishna" and "कृष्ण" both fold to "krisn".
+     */
+    public static String prefixKey(String text) {
+        String latin = transliterate(foldAnusvara(text));
+        StringBuilder sb = new StringBuilder(latin.length());
+        for (int i = 0; i < latin.length(); i++) {
+            char c = latin.charAt(i);
+            if (!Character.isLetterOrDigit(c)) continue;
+            switch (c) {
+                case 'h':
+                    if (sb.length() > 0 && !isVowel(sb.charAt(sb.length() - 1))) continue;
+                    break;
+                case 'w':
+                    c = 'v';
+                    break;
+                case 'z':
+                    c = 'j';
+                    break;
+                case 'q':
+                    c = 'k';
+                    break;
+                case 'x':
+                    sb.append('k');
+                    c = 's';
+                    break;
+                default:
+                    break;
+            }
+            if (sb.length() > 0 && sb.charAt(sb.length() - 1) == c) continue;
+            sb.append(c);
+        }
+        int last = sb.length() - 1;
+        if (last > 0 && sb.charAt(last) == 'a' && !isVowel(sb.charAt(last - 1))
+                && Character.isLetter(sb.charAt(last - 1))) {
+            sb.setLength(last);
+        }
+        return sb.toString();
+    }
+
+    // Spells an anusvara before pa..ma as ma with a virama, which transliterates to "m". A
+    // word-final one is dropped, as Latin spellings mostly leave the nasal out ("nahi") and a
+    // half-typed word cannot tell yet which consonant follows.
+    private static String foldAnusvara(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 4);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < INDIC_FIRST || c > INDIC_LAST || ((c - INDIC_FIRST) & 0x7F) != 0x02) {
+                sb.append(c);
+                continue;
+            }
+            int block = c - 0x02;
+            int nextOffset = i + 1 < text.length() ? text.charAt(i + 1) - block : -1;
+            if (nextOffset >= 0x2A && nextOffset <= 0x2E) {
+                sb.append((char) (block + 0x2E)).append((char) (block + 0x4D));
+            } else if (i + 1 < text.length() && Character.isLetter(text.charAt(i + 1))) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Phonetic code of a key: the first sound, then consonant classes with vowels, h and y
+     * dropped and repeats collapsed. Classes follow Indic articulation, so dental and
+     * retroflex stops, voiced and unvoiced pairs and aspirates fall together.
+     */
+    public static String code(String key) {
+        StringBuilder sb = new StringBuilder(key.length());
+        char last = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            char cls;
+            if (Character.isDigit(c)) {
+                cls = c;
+            } else if (isVowel(c)) {
+                if (i == 0) sb.append('A');
+                last = 0;
+                continue;
+            } else {
+                switch (c) {
+                    case 'k': case 'g': cls = 'K'; break;
+                    case 'c': case 'j': cls = 'J'; break;
+                    case 't': case 'd': cls = 'T'; break;
+                    case 'p': case 'b': case 'f': cls = 'P'; break;
+                    case 'v': cls = 'V'; break;
+                    case 's': cls = 'S'; break;
+                    case 'm': cls = 'M'; break;
+                    case 'n': cls = 'N'; break;
+                    case 'l': cls = 'L'; break;
+                    case 'r': cls = 'R'; break;
+                    default: continue;
+                }
+            }
+            if (cls != last) sb.append(cls);
+            last = cls;
+        }
+        return sb.toString();
+    }
+
+    /** How many edits a key of this length may be off by and still match. */
+    static int maxDistance(int length) {
+        if (length <= 3) return 0;
+        if (length <= 6) return 1;
+        if (length <= 10) return 2;
+        return 3;
+    }
+
+    /**
+     * Optimal string alignment distance (Levenshtein plus adjacent transpositions), or
+     * bound + 1 as soon as it is clear the distance exceeds bound.
+     */
+    static int distance(String a, String b, int bound) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > bound) return bound + 1;
+        int[] prev2 = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] row = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+        for (int i = 1; i <= n; i++) {
+            row[0] = i;
+            int rowMin = row[0];
+            int from = Math.max(1, i - bound);
+            int to = Math.min(m, i + bound);
+            if (from > 1) row[from - 1] = bound + 1;
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(row[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, prev2[j - 2] + 1);
+                }
+                row[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (to < m) row[to + 1] = bound + 1;
+            if (rowMin > bound) return bound + 1;
+            int[] recycled = prev2;
+            prev2 = prev;
+            prev = row;
+            row = recycled;
+        }
+        return Math.min(prev[m], bound + 1);
+    }
+
+    private static boolean isVowel(char c) {
+        return c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u';
+    }
+
+    public static class Match<T> {
+        public final T value;
+        public final String phrase;
+        /** Edit distance between the keys; 0 for an exact key match. */
+        public final int distance;
+
+        Match(T value, String phrase, int distance) {
+            this.value = value;
+            this.phrase = phrase;
+            this.distance = distance;
+        }
+    }
+
+    private static class Entry<T> {
+        final String phrase;
+        final String key;
+        final String code;
+        final long letters;
+        final boolean numeric;
+        final T value;
+
+        Entry(String phrase, String key, T value) {
+            this.phrase = phrase;
+            this.key = key;
+            this.code = code(key);
+            this.letters = letterMask(key);
+            this.numeric = hasDigit(key);
+            this.value = value;
+        }
+    }
+
+    /**
+     * Prebuilt lookup over a set of phrases (accepted answers and their aliases). Exact keys
+     * are a hash lookup; fuzzy candidates are only taken from length buckets the distance
+     * bound can reach.
+     */
+    public static class Index<T> {
+        private final Map<String, List<Entry<T>>> byKey = new HashMap<>();
+        private final List<List<Entry<T>>> byLength = new ArrayList<>();
+        private int size = 0;
+
+        public void add(String phrase, T value) {
+            String key = key(phrase);
+            if (key.isEmpty()) return;
+            Entry<T> entry = new Entry<>(phrase, key, value);
+            List<Entry<T>> sameKey = byKey.get(key);
+            if (sameKey == null) {
+                sameKey = new ArrayList<>(1);
+                byKey.put(key, sameKey);
+            }
+            sameKey.add(entry);
+            while (byLength.size() <= key.length()) {
+                byLength.add(new ArrayList<>());
+            }
+            byLength.get(key.length()).add(entry);
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** All entries accepted by the filter that match the phrase, closest first. */
+        public List<Match<T>> lookup(String phrase, Predicate<T> filter) {
+            List<Match<T>> matches = new ArrayList<>();
+            String key = key(phrase);
+            if (key.isEmpty()) return matches;
+
+            List<Entry<T>> exact = byKey.get(key);
+            if (exact != null) {
+                for (Entry<T> entry : exact) {
+                    if (filter.test(entry.value)) matches.add(new Match<>(entry.value, entry.phrase, 0));
+                }
+            }
+            // Numbers are either right or wrong, never close
+            if (hasDigit(key)) return matches;
+
+            String code = code(key);
+            long letters = letterMask(key);
+            int bound = maxDistance(key.length());
+            int widest = bound + 1;
+            int from = Math.max(0, key.length() - widest);
+            int to = Math.min(byLength.size() - 1, key.length() + widest);
+            for (int length = from; length <= to; length++) {
+                for (Entry<T> entry : byLength.get(length)) {
+                    if (entry.numeric || entry.key.equals(key) || !filter.test(entry.value)) continue;
+                    // Both sides have to allow the distance, or short keys would swallow long ones
+                    int allowed = Math.min(bound, maxDistance(entry.key.length()));
+                    boolean sameCode = entry.code.equals(code);
+                    if (sameCode) allowed++;
+                    if (allowed == 0) continue;
+                    // One edit changes at most two letters of the letter set, which is far
+                    // cheaper to check than running the distance
+                    if (Long.bitCount(letters ^ entry.letters) > 2 * allowed) continue;
+                    int d = distance(key, entry.key, allowed);
+                    if (d <= allowed) matches.add(new Match<>(entry.value, entry.phrase, d));
+                }
+            }
+            matches.sort((a, b) -> Integer.compare(a.distance, b.distance));
+            return matches;
+        }
+    }
+
+    private static long letterMask(String key) {
+        long mask = 0;
+        for (int i = 0; i < key.length(); i++) {
+            mask |= 1L << (key.charAt(i) & 63);
+        }
+        return mask;
+    }
+
+    private static boolean hasDigit(String key) {
+        for (int i = 0; i < key.length(); i++) {
+            if (Character.isDigit(key.charAt(i))) return true;
+        }
+        return false;
+    }
+}
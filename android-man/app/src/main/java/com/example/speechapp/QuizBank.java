@@ -0,0 +1,205 @@
+package com.example.speechapp;
+
+import android.content.Context;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * On-device question bank, loaded once from assets/quiz_bank.json. Every accepted and known
+ * wrong answer is normalized at load time and added to a per-language PhoneticMatcher index,
+ * so grading an answer is a normalization of the user's text, a few set lookups and, for
+ * recognizer misspellings, one index query.
+ */
+public class QuizBank {
+    public static final String ASSET_NAME = "quiz_bank.json";
+    private static final String DEFAULT_LANGUAGE = "english";
+
+    private static final Map<String, String> NUMBER_WORDS = new HashMap<>();
+    static {
+        String[] units = {"zero", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine", "ten",
+            "eleven", "twelve", "thirteen", "fourteen", "fifteen", "sixteen", "seventeen", "eighteen", "nineteen",
+            "twenty"};
+        for (int i = 0; i < units.length; i++) {
+            NUMBER_WORDS.put(units[i], String.valueOf(i));
+        }
+        String[] tens = {"thirty", "forty", "fifty", "sixty", "seventy", "eighty", "ninety"};
+        for (int i = 0; i < tens.length; i++) {
+            NUMBER_WORDS.put(tens[i], String.valueOf((i + 3) * 10));
+        }
+        NUMBER_WORDS.put("hundred", "100");
+    }
+
+    public static class Question {
+        public final String text;
+        public final String answer;
+        public final String explanation;
+        final Set<String> accepted = new HashSet<>();
+        final Set<String> wrong = new HashSet<>();
+        final boolean numeric;
+
+        Question(String text, List<String> answers, List<String> wrongAnswers, String explanation) {
+            this.text = text;
+            this.answer = answers.get(0);
+            this.explanation = explanation;
+            boolean numeric = false;
+            for (String answer : answers) {
+                String normalized = normalize(answer);
+                accepted.add(normalized);
+                numeric |= isNumber(normalized);
+            }
+            for (String answer : wrongAnswers) {
+                wrong.add(normalize(answer));
+            }
+            this.numeric = numeric;
+        }
+    }
+
+    public static class Phrases {
+        final String[] correct;
+        final String[] incorrect;
+        final String[] cheer;
+        final String[] console;
+        final String answerIs;
+        final String unchecked;
+
+        Phrases(JSONObject json) throws JSONException {
+            correct = strings(json.getJSONArray("correct")).toArray(new String[0]);
+            incorrect = strings(json.getJSONArray("incorrect")).toArray(new String[0]);
+            cheer = strings(json.getJSONArray("cheer")).toArray(new String[0]);
+            console = strings(json.getJSONArray("console")).toArray(new String[0]);
+            answerIs = json.getString("answer_is");
+            unchecked = json.getString("unchecked");
+        }
+    }
+
+    /** An accepted or known wrong answer to one question, as stored in the phonetic index. */
+    static class Answer {
+        final Question question;
+        final boolean accepted;
+
+        Answer(Question question, boolean accepted) {
+            this.question = question;
+            this.accepted = accepted;
+        }
+    }
+
+    public static class Deck {
+        public final String language;
+        public final List<Question> questions;
+        final Phrases phrases;
+        final PhoneticMatcher.Index<Answer> index = new PhoneticMatcher.Index<>();
+
+        Deck(String language, List<Question> questions, Phrases phrases) {
+            this.language = language;
+            this.questions = Collections.unmodifiableList(questions);
+            this.phrases = phrases;
+            for (Question question : questions) {
+                for (String answer : question.accepted) {
+                    index.add(answer, new Answer(question, true));
+                }
+                for (String answer : question.wrong) {
+                    index.add(answer, new Answer(question, false));
+                }
+            }
+        }
+    }
+
+    private final Map<String, Deck> decks = new HashMap<>();
+
+    private QuizBank() {}
+
+    public static QuizBank load(Context context) throws IOException, JSONException {
+        try (InputStream in = context.getAssets().open(ASSET_NAME)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return parse(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    static QuizBank parse(String json) throws JSONException {
+        QuizBank bank = new QuizBank();
+        JSONObject languages = new JSONObject(json).getJSONObject("languages");
+        JSONArray names = languages.names();
+        for (int i = 0; names != null && i < names.length(); i++) {
+            String language = names.getString(i);
+            JSONObject deck = languages.getJSONObject(language);
+            JSONArray questions = deck.getJSONArray("questions");
+            List<Question> parsed = new ArrayList<>(questions.length());
+            for (int j = 0; j < questions.length(); j++) {
+                JSONObject q = questions.getJSONObject(j);
+                JSONArray wrong = q.optJSONArray("w");
+                parsed.add(new Question(q.getString("q"), strings(q.getJSONArray("a")),
+                        wrong != null ? strings(wrong) : Collections.emptyList(), q.optString("x", "")));
+            }
+            bank.decks.put(language, new Deck(language, parsed, new Phrases(deck.getJSONObject("phrases"))));
+        }
+        return bank;
+    }
+
+    /** The deck for a chat language; Hindi mode replies in plain English, so it shares that deck. */
+    public Deck deck(String language) {
+        Deck deck = decks.get(language);
+        return deck != null ? deck : decks.get(DEFAULT_LANGUAGE);
+    }
+
+    // Lowercase letters, digits and combining marks (Indic vowel signs) separated by single
+    // spaces, without a leading article and with English number words as digits
+    static String normalize(String text) {
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(folded.length());
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= folded.length(); i++) {
+            char c = i < folded.length() ? folded.charAt(i) : ' ';
+            int type = Character.getType(c);
+            if (Character.isLetterOrDigit(c) || type == Character.NON_SPACING_MARK
+                    || type == Character.COMBINING_SPACING_MARK) {
+                token.append(c);
+                continue;
+            }
+            // Apostrophes join contractions instead of splitting them
+            if ((c == '\'' || c == '’') && token.length() > 0) continue;
+            if (token.length() == 0) continue;
+            String word = token.toString();
+            token.setLength(0);
+            if (sb.length() == 0 && (word.equals("the") || word.equals("a") || word.equals("an"))) continue;
+            String number = NUMBER_WORDS.get(word);
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(number != null ? number : word);
+        }
+        return sb.toString();
+    }
+
+    static boolean isNumber(String normalized) {
+        if (normalized.isEmpty()) return false;
+        for (int i = 0; i < normalized.length(); i++) {
+            if (!Character.isDigit(normalized.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static List<String> strings(JSONArray array) throws JSONException {
+        List<String> strings = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            strings.add(array.getString(i));
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.speechapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Runs a quiz from the on-device QuizBank. Questions come from the bank and answers that
+ * clearly match an accepted (or a known wrong) answer are graded locally; only answers the
+ * engine cannot decide go to the model, which gets the question and accepted answers as
+ * context. Replies use the same JSON shape as the model's quiz replies, so they flow through
+ * the same history and display path.
+ *
+ * Not thread-safe; GeminiAPI only calls it from its request executor.
+ */
+public class QuizEngine {
+    public enum Verdict {
+        CORRECT,
+        INCORRECT,
+        UNDECIDED
+    }
+
+    private static final String[] NEGATIONS = {"not", "no", "isnt", "nahi", "nahin", "na"};
+    // Longer replies are sentences; fuzzy matching their words would find answers by accident
+    private static final int MAX_FUZZY_TOKENS = 4;
+    private static final int MAX_WINDOW_TOKENS = 3;
+
+    private final QuizBank bank;
+    private final SeenQuestions seen;
+    private final Random random = new Random();
+    private QuizBank.Deck deck;
+    private List<QuizBank.Question> order = Collections.emptyList();
+    private int nextIndex = 0;
+    private QuizBank.Question current;
+
+    public QuizEngine(QuizBank bank, SeenQuestions seen) {
+        this.bank = bank;
+        this.seen = seen;
+    }
+
+    /** Starts a fresh round in the given language and returns the opening reply. */
+    public String start(String language) throws JSONException {
+        deck = bank.deck(language);
+        // Questions asked in earlier sessions go to the back of the round
+        List<QuizBank.Question> fresh = new ArrayList<>();
+        List<QuizBank.Question> asked = new ArrayList<>();
+        for (QuizBank.Question question : deck.questions) {
+            (seen.contains(question.text) ? asked : fresh).add(question);
+        }
+        Collections.shuffle(fresh, random);
+        Collections.shuffle(asked, random);
+        order = fresh;
+        order.addAll(asked);
+        nextIndex = 0;
+        current = null;
+        return reply(null, null, null, advance());
+    }
+
+    public void stop() {
+        deck = null;
+        current = null;
+    }
+
+    /** True while the last question asked came from the bank, so its answer can be graded here. */
+    public boolean isActive() {
+        return current != null;
+    }
+
+    public String getCurrentQuestion() {
+        return current != null ? current.text : null;
+    }
+
+    /**
+     * Grades the answer to the current question and returns the full reply, or null if the
+     * answer needs the model (undecided, or the bank has no further question to ask).
+     */
+    public String answer(String input) throws JSONException {
+        if (current == null) return null;
+        Verdict verdict = grade(deck, current, input);
+        if (verdict == Verdict.UNDECIDED || nextIndex >= order.size()) return null;
+
+        QuizBank.Phrases phrases = deck.phrases;
+        String evaluation;
+        String feedback;
+        if (verdict == Verdict.CORRECT) {
+            evaluation = pick(phrases.correct);
+            feedback = pick(phrases.cheer);
+        } else {
+            evaluation = pick(phrases.incorrect) + " " + String.format(phrases.answerIs, current.answer);
+            feedback = pick(phrases.console);
+        }
+        QuizBank.Question answered = current;
+        return reply(verdict == Verdict.CORRECT ? "correct" : "incorrect",
+                join(evaluation, answered.explanation), feedback, advance());
+    }
+
+    /** The user's answer with the question and accepted answers, so the model grades it consistently. */
+    public String contextFor(String input) {
+        return "Quiz question: " + current.text + "\nAccepted answer: " + current.answer
+                + "\nUser's answer: " + input;
+    }
+
+    /**
+     * Takes over the model's verdict on an undecided answer but asks the next question from
+     * the bank, so the following answer can again be graded locally. Once the bank is used
+     * up the model's own question stands and the engine steps aside.
+     */
+    public String continueFrom(String modelReply) throws JSONException {
+        QuizBank.Question next = advance();
+        if (next == null) return modelReply;
+        int start = modelReply.indexOf('{');
+        int end = modelReply.lastIndexOf('}') + 1;
+        if (start < 0 || end <= start) {
+            return reply(null, modelReply, null, next);
+        }
+        JSONObject json = new JSONObject(modelReply.substring(start, end));
+        return json.put("next_question", next.text).toString();
+    }
+
+    /** Reveals the answer to the current question and moves on; null when no bank question is open. */
+    public String skip() throws JSONException {
+        if (current == null) return null;
+        QuizBank.Question skipped = current;
+        return reply("skipped", join(String.format(deck.phrases.answerIs, skipped.answer), skipped.explanation),
+                null, advance());
+    }
+
+    /** Used when the model cannot be reached: reveal the answer unchecked and move on. */
+    public String unchecked() throws JSONException {
+        QuizBank.Question answered = current;
+        QuizBank.Question next = advance();
+        return reply("unchecked", join(String.format(deck.phrases.unchecked, answered.answer), answered.explanation),
+                pick(deck.phrases.console), next);
+    }
+
+    static Verdict grade(QuizBank.Deck deck, QuizBank.Question question, String input) {
+        String answer = QuizBank.normalize(input);
+        if (answer.isEmpty()) return Verdict.UNDECIDED;
+        if (question.accepted.contains(answer)) return Verdict.CORRECT;
+        if (question.wrong.contains(answer)) return Verdict.INCORRECT;
+
+        // "I think it's Paris" style answers, unless they hedge or negate
+        String padded = " " + answer + " ";
+        for (String negation : NEGATIONS) {
+            if (padded.contains(" " + negation + " ")) return Verdict.UNDECIDED;
+        }
+        boolean right = containsAny(padded, question.accepted);
+        boolean wrong = containsAny(padded, question.wrong);
+        if (right != wrong) return right ? Verdict.CORRECT : Verdict.INCORRECT;
+        if (right) return Verdict.UNDECIDED;
+
+        // Recognizer spellings ("Dilli", "Bangalore", "दिल्ली") of an accepted or wrong answer
+        Verdict fuzzy = fuzzyGrade(deck, question, answer);
+        if (fuzzy != Verdict.UNDECIDED) return fuzzy;
+
+        // A bare number for a numeric question needs no interpretation
+        if (question.numeric && QuizBank.isNumber(answer)) return Verdict.INCORRECT;
+        return Verdict.UNDECIDED;
+    }
+
+    private static Verdict fuzzyGrade(QuizBank.Deck deck, QuizBank.Question question, String answer) {
+        String[] tokens = answer.split(" ");
+        if (tokens.length > MAX_FUZZY_TOKENS) return Verdict.UNDECIDED;
+        int bestRight = Integer.MAX_VALUE;
+        int bestWrong = Integer.MAX_VALUE;
+        for (int start = 0; start < tokens.length; start++) {
+            StringBuilder window = new StringBuilder();
+            for (int end = start; end < tokens.length && end - start < MAX_WINDOW_TOKENS; end++) {
+                if (window.length() > 0) window.append(' ');
+                window.append(tokens[end]);
+                for (PhoneticMatcher.Match<QuizBank.Answer> match
+                        : deck.index.lookup(window.toString(), a -> a.question == question)) {
+                    if (match.value.accepted) {
+                        bestRight = Math.min(bestRight, match.distance);
+                    } else {
+                        bestWrong = Math.min(bestWrong, match.distance);
+                    }
+                }
+            }
+        }
+        if (bestRight < bestWrong) return Verdict.CORRECT;
+        if (bestWrong < bestRight) return Verdict.INCORRECT;
+        return Verdict.UNDECIDED;
+    }
+
+    private static boolean containsAny(String padded, Set<String> answers) {
+        for (String answer : answers) {
+            if (padded.contains(" " + answer + " ")) return true;
+        }
+        return false;
+    }
+
+    private QuizBank.Question advance() {
+        current = nextIndex < order.size() ? order.get(nextIndex++) : null;
+        if (current != null) seen.add(current.text);
+        return current;
+    }
+
+    private String pick(String[] options) {
+        return options[random.nextInt(options.length)];
+    }
+
+    private static String join(String first, String second) {
+        return second == null || second.isEmpty() ? first : first + " " + second;
+    }
+
+    private static String reply(String evaluation, String explanation, String feedback, QuizBank.Question next)
+            throws JSONException {
+        JSONObject json = new JSONObject();
+        if (evaluation != null) json.put("evaluation", evaluation);
+        if (explanation != null) json.put("explanation", explanation);
+        if (feedback != null) json.put("encouraging_feedback", feedback);
+        if (next != null) json.put("next_question", next.text);
+        return json.toString();
+    }
+}
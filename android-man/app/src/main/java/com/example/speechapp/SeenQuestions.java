@@ -0,0 +1,229 @@
+package com.example.speechapp;
+
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Remembers which quiz questions were already asked, across sessions, in a fixed amount of
+ * memory. A Bloom filter over the normalized text catches exact repeats among the last
+ * BLOOM_CAPACITY questions; MinHash signatures of the most recent RING_CAPACITY questions
+ * catch rewordings ("Which city is the capital of France?" after "What is the capital of
+ * France?"). Words are folded with PhoneticMatcher.key first, so a question asked again in
+ * Hinglish or another spelling still counts as seen.
+ *
+ * Not thread-safe; GeminiAPI only calls it from its request executor.
+ */
+public class SeenQuestions {
+    private static final String TAG = "SeenQuestions";
+    private static final int VERSION = 1;
+    private static final int HASHES = 32;
+    private static final int RING_CAPACITY = 8192;
+    private static final int BLOOM_BITS = 1 << 20;
+    private static final int BLOOM_PROBES = 7;
+    // At 1M bits and 7 probes this keeps false positives under 0.1%
+    private static final int BLOOM_CAPACITY = 65536;
+    // Estimated Jaccard similarity of the character trigrams in the two questions' content words
+    private static final int NEAR_DUPLICATE_MATCHES = HASHES * 6 / 10;
+    private static final int SAVE_EVERY = 5;
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "what", "whats", "which", "who", "whom", "whose", "where", "when", "why", "how", "is", "are", "was",
+            "were", "the", "a", "an", "of", "in", "on", "at", "to", "for", "by", "from", "do", "does", "did",
+            "there", "that", "this", "it", "its", "our", "your", "you", "called", "known", "named", "as",
+            "kya", "hai", "hain", "tha", "ki", "ka", "ke", "ko", "mein", "kaun", "kaunsa", "kahan", "kab",
+            "kitne", "kitna", "kis", "se"));
+
+    private final File file;
+    private final long[] bloom = new long[BLOOM_BITS / 64];
+    private int bloomCount = 0;
+    private final short[] signatures = new short[RING_CAPACITY * HASHES];
+    private int ringSize = 0;
+    private int ringNext = 0;
+    private int unsaved = 0;
+
+    private SeenQuestions(File file) {
+        this.file = file;
+    }
+
+    /** Loads the store from the file, or starts empty if it is missing or unreadable. */
+    public static SeenQuestions load(File file) {
+        SeenQuestions seen = new SeenQuestions(file);
+        if (!file.exists()) return seen;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != VERSION) return seen;
+            seen.bloomCount = in.readInt();
+            for (int i = 0; i < seen.bloom.length; i++) {
+                seen.bloom[i] = in.readLong();
+            }
+            seen.ringSize = in.readInt();
+            seen.ringNext = in.readInt();
+            for (int i = 0; i < seen.ringSize * HASHES; i++) {
+                seen.signatures[i] = in.readShort();
+            }
+            Log.d(TAG, "Loaded " + seen.ringSize + " recent questions, " + seen.bloomCount + " in the filter");
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error loading seen questions, starting empty", e);
+            return new SeenQuestions(file);
+        }
+        return seen;
+    }
+
+    /** True if this question, or a close rewording of it, was asked before. */
+    public boolean contains(String question) {
+        String key = key(question);
+        if (key.isEmpty()) return false;
+        return bloomContains(hash64(key)) || nearDuplicate(signature(key));
+    }
+
+    /** Records a question as asked; saved to disk every few additions. */
+    public void add(String question) {
+        String key = key(question);
+        if (key.isEmpty()) return;
+        long hash = hash64(key);
+        if (!bloomContains(hash)) {
+            // A full filter only forgets; the ring still holds the recent questions
+            if (bloomCount >= BLOOM_CAPACITY) {
+                Arrays.fill(bloom, 0);
+                bloomCount = 0;
+            }
+            bloomAdd(hash);
+            bloomCount++;
+        }
+        System.arraycopy(signature(key), 0, signatures, ringNext * HASHES, HASHES);
+        ringNext = (ringNext + 1) % RING_CAPACITY;
+        ringSize = Math.min(ringSize + 1, RING_CAPACITY);
+        if (++unsaved >= SAVE_EVERY) save();
+    }
+
+    public void save() {
+        if (unsaved == 0) return;
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(VERSION);
+            out.writeInt(bloomCount);
+            for (long word : bloom) {
+                out.writeLong(word);
+            }
+            out.writeInt(ringSize);
+            out.writeInt(ringNext);
+            for (int i = 0; i < ringSize * HASHES; i++) {
+                out.writeShort(signatures[i]);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving seen questions", e);
+            return;
+        }
+        if (tmp.renameTo(file)) {
+            unsaved = 0;
+        } else {
+            Log.e(TAG, "Error replacing " + file);
+        }
+    }
+
+    private boolean nearDuplicate(short[] signature) {
+        for (int entry = 0; entry < ringSize; entry++) {
+            int base = entry * HASHES;
+            int matches = 0;
+            int misses = 0;
+            for (int i = 0; i < HASHES; i++) {
+                if (signatures[base + i] == signature[i]) {
+                    if (++matches >= NEAR_DUPLICATE_MATCHES) return true;
+                } else if (++misses > HASHES - NEAR_DUPLICATE_MATCHES) {
+                    break;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Lowest 16 bits of each of HASHES minimum hashes over the trigrams inside each word.
+    // The numbers in the question are mixed into every slot, so "7 times 8" never matches
+    // "6 times 8" however similar the rest is.
+    private static short[] signature(String key) {
+        int[] minimums = new int[HASHES];
+        Arrays.fill(minimums, Integer.MAX_VALUE);
+        StringBuilder numbers = new StringBuilder();
+        for (String word : key.split(" ")) {
+            if (QuizBank.isNumber(word)) numbers.append(word).append(' ');
+            String padded = " " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                long hash = hash64(padded.substring(i, i + 3));
+                int h1 = (int) hash;
+                int h2 = (int) (hash >>> 32) | 1;
+                for (int j = 0; j < HASHES; j++) {
+                    int h = mix(h1 + j * h2) & Integer.MAX_VALUE;
+                    if (h < minimums[j]) minimums[j] = h;
+                }
+            }
+        }
+        int salt = numbers.length() > 0 ? (int) hash64(numbers.toString()) : 0;
+        short[] signature = new short[HASHES];
+        for (int j = 0; j < HASHES; j++) {
+            signature[j] = (short) (minimums[j] ^ salt);
+        }
+        return signature;
+    }
+
+    private boolean bloomContains(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < BLOOM_PROBES; i++) {
+            int bit = (h1 + i * h2) & (BLOOM_BITS - 1);
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    private void bloomAdd(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < BLOOM_PROBES; i++) {
+            int bit = (h1 + i * h2) & (BLOOM_BITS - 1);
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    // Normalized content words, each folded to its cross-script spelling key. Question words
+    // and fillers are dropped so that only the subject of the question is compared.
+    static String key(String question) {
+        StringBuilder sb = new StringBuilder();
+        for (String word : QuizBank.normalize(question).split(" ")) {
+            String folded = PhoneticMatcher.key(word);
+            if (folded.isEmpty() || STOP_WORDS.contains(word) || STOP_WORDS.contains(folded)) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(folded);
+        }
+        return sb.toString();
+    }
+
+    // FNV-1a, then a finalizer so both halves are usable as independent hashes
+    private static long hash64(String s) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
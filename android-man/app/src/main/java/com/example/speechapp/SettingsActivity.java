@@ -18,18 +18,17 @@ public class SettingsActivity extends AppCompatActivity {
                 .commit();
     }
 
-    public static class SettingsFragment extends PreferenceFragmentCompat implements SharedPreferences.OnSharedPreferenceChangeListener {
-        private GeminiAPI geminiAPI;
+    // Changes are pushed to the live GeminiAPI by AppServices, which listens to these preferences
+    public static class SettingsFragment extends PreferenceFragmentCompat {
 
         @Override
         public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
             setPreferencesFromResource(R.xml.preferences, rootKey);
-            geminiAPI = new GeminiAPI(requireContext());
 
             // Initialize quiz mode preference
             SwitchPreference quizPref = findPreference("quiz_mode");
             if (quizPref != null) {
-                quizPref.setChecked(geminiAPI.isQuizMode());
+                SpeechApp.services(requireContext()).whenGeminiAPIReady(api -> quizPref.setChecked(api.isQuizMode()));
             }
 
             // Update language preference summary when changed
@@ -45,31 +44,5 @@ public class SettingsActivity extends AppCompatActivity {
                 languagePref.setSummary(prefs.getString("language", "english"));
             }
         }
-
-        @Override
-        public void onResume() {
-            super.onResume();
-            getPreferenceScreen().getSharedPreferences().registerOnSharedPreferenceChangeListener(this);
-        }
-
-        @Override
-        public void onPause() {
-            super.onPause();
-            getPreferenceScreen().getSharedPreferences().unregisterOnSharedPreferenceChangeListener(this);
-        }
-
-        @Override
-        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-            if (key.equals("api_key")) {
-                String apiKey = sharedPreferences.getString(key, "");
-                geminiAPI.setApiKey(apiKey);
-            } else if (key.equals("quiz_mode")) {
-                boolean quizMode = sharedPreferences.getBoolean(key, false);
-                geminiAPI.setQuizMode(quizMode);
-            } else if (key.equals("language")) {
-                String language = sharedPreferences.getString(key, "english");
-                geminiAPI.setLanguage(language);
-            }
-        }
     }
 }
@@ -0,0 +1,109 @@
+package com.example.speechapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Hands-free helper that fires a speculative Gemini request once the partial transcript
+ * has stopped changing for a while. If the final transcript matches, the speculative reply
+ * is promoted; if speech continues, the request is cancelled.
+ */
+public class SpeculativeTurn {
+    private static final String TAG = "SpeculativeTurn";
+    public static final long DEFAULT_STABLE_WINDOW_MILLIS = 900;
+
+    private final GeminiAPI geminiAPI;
+    private final Handler handler;
+    private long stableWindowMillis = DEFAULT_STABLE_WINDOW_MILLIS;
+    private String pendingText = "";
+    private GeminiAPI.Speculation speculation;
+    private final Runnable fireSpeculation = this::fire;
+
+    public SpeculativeTurn(GeminiAPI geminiAPI) {
+        this.geminiAPI = geminiAPI;
+        this.handler = new Handler(Looper.getMainLooper());
+    }
+
+    public void setStableWindowMillis(long stableWindowMillis) {
+        this.stableWindowMillis = stableWindowMillis;
+    }
+
+    // Must be called on the main thread, like all other methods here.
+    public void onPartial(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty() || normalized.equals(normalize(pendingText))) return;
+        pendingText = text;
+
+        if (speculation != null && !normalize(speculation.getUserInput()).equals(normalized)) {
+            // Speech continued, the in-flight guess is stale
+            speculation.cancel();
+            speculation = null;
+        }
+        handler.removeCallbacks(fireSpeculation);
+        handler.postDelayed(fireSpeculation, stableWindowMillis);
+    }
+
+    /**
+     * Hands the final transcript over. Returns true if a matching speculative reply was
+     * promoted and will be delivered to the callback; otherwise the caller sends the turn.
+     */
+    public boolean onFinal(String finalText, GeminiAPI.GeminiCallback callback) {
+        handler.removeCallbacks(fireSpeculation);
+        GeminiAPI.Speculation current = speculation;
+        speculation = null;
+        pendingText = "";
+        if (current == null) return false;
+
+        if (normalize(current.getUserInput()).equals(normalize(finalText))) {
+            Log.d(TAG, "Promoting speculative response for: " + finalText);
+            current.promote(callback);
+            return true;
+        }
+        current.cancel();
+        return false;
+    }
+
+    public void cancel() {
+        handler.removeCallbacks(fireSpeculation);
+        if (speculation != null) {
+            speculation.cancel();
+            speculation = null;
+        }
+        pendingText = "";
+    }
+
+    /** Asks again for the in-flight guess, e.g. after a language switch made its prompt stale. */
+    public void respeculate() {
+        if (speculation == null) return;
+        String text = speculation.getUserInput();
+        speculation.cancel();
+        speculation = geminiAPI.speculate(text);
+    }
+
+    private void fire() {
+        if (speculation != null || pendingText.isEmpty()) return;
+        Log.d(TAG, "Transcript stable for " + stableWindowMillis + " ms, speculating: " + pendingText);
+        speculation = geminiAPI.speculate(pendingText);
+    }
+
+    static String normalize(String text) {
+        if (text == null) return "";
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c) || Character.getType(c) == Character.NON_SPACING_MARK
+                    || Character.getType(c) == Character.COMBINING_SPACING_MARK) {
+                if (pendingSpace && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(Character.toLowerCase(c));
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return sb.toString();
+    }
+}
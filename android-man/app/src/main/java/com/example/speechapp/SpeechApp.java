@@ -0,0 +1,27 @@
+package com.example.speechapp;
+
+import android.app.Application;
+import android.content.Context;
+
+public class SpeechApp extends Application {
+    private AppServices services;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        StartupTrace.markApplicationCreated();
+        services = new AppServices(this);
+        // Built in the background while the first activity inflates its layout
+        services.prewarm();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        services.getMemoryBudget().onTrimMemory(level);
+    }
+
+    public static AppServices services(Context context) {
+        return ((SpeechApp) context.getApplicationContext()).services;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.speechapp;
+
+import java.util.Locale;
+
+/**
+ * Minimal text-to-speech engine contract used by SpeechOutputStage, so the platform
+ * TextToSpeech can be swapped for a fake in JVM tests. Utterances play in enqueue order.
+ */
+public interface SpeechEngine {
+    interface Listener {
+        void onUtteranceStart(String utteranceId);
+        void onUtteranceDone(String utteranceId);
+    }
+
+    void setListener(Listener listener);
+    void setLanguage(Locale locale);
+    void enqueue(String utteranceId, String text);
+    void stop();
+    void shutdown();
+}
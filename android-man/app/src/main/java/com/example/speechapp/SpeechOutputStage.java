@@ -0,0 +1,160 @@
+package com.example.speechapp;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Speaks bot replies sentence by sentence. Text is appended as it becomes available and
+ * every complete sentence is queued to the engine right away, so playback starts after the
+ * first sentence instead of after the whole reply. bargeIn() drops everything immediately;
+ * bargeInUnlessSpeaking() does so only while nothing is playing.
+ *
+ * Time to first audio is measured from beginReply() to the engine starting the first
+ * sentence. The clock is injectable so a fake engine can measure it on a plain JVM.
+ */
+public class SpeechOutputStage implements SpeechEngine.Listener {
+
+    public interface Listener {
+        void onTimeToFirstAudio(long millis);
+    }
+
+    private final SpeechEngine engine;
+    private final LongSupplier nanoClock;
+    private final StringBuilder pending = new StringBuilder();
+    private Listener listener;
+    private int utteranceCounter = 0;
+    private long replyStartedAt = -1;
+    private String firstUtteranceId;
+    private String lastUtteranceId;
+    private String lastDoneUtteranceId;
+
+    public SpeechOutputStage(SpeechEngine engine) {
+        this(engine, System::nanoTime);
+    }
+
+    public SpeechOutputStage(SpeechEngine engine, LongSupplier nanoClock) {
+        this.engine = engine;
+        this.nanoClock = nanoClock;
+        engine.setListener(this);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized void beginReply() {
+        pending.setLength(0);
+        replyStartedAt = nanoClock.getAsLong();
+        firstUtteranceId = null;
+    }
+
+    public synchronized void append(String chunk) {
+        if (chunk == null || chunk.isEmpty()) return;
+        pending.append(chunk);
+        emitSentences(false);
+    }
+
+    public synchronized void endReply() {
+        emitSentences(true);
+    }
+
+    /** Convenience for replies that arrive complete. */
+    public void speak(String text) {
+        beginReply();
+        append(text);
+        endReply();
+    }
+
+    public void bargeIn() {
+        synchronized (this) {
+            pending.setLength(0);
+            replyStartedAt = -1;
+            firstUtteranceId = null;
+            lastUtteranceId = null;
+        }
+        engine.stop();
+    }
+
+    /**
+     * Barge-in for detectors that also hear our own playback, like the recognizer's start of
+     * speech without the VAD: ignored while a sentence is queued or playing. Returns whether
+     * it barged in.
+     */
+    public boolean bargeInUnlessSpeaking() {
+        if (isSpeaking()) return false;
+        bargeIn();
+        return true;
+    }
+
+    /** True from the first queued sentence until the engine finishes the last one. */
+    public synchronized boolean isSpeaking() {
+        return lastUtteranceId != null && !lastUtteranceId.equals(lastDoneUtteranceId);
+    }
+
+    @Override
+    public void onUtteranceStart(String utteranceId) {
+        long millis;
+        synchronized (this) {
+            if (replyStartedAt < 0 || !utteranceId.equals(firstUtteranceId)) return;
+            millis = (nanoClock.getAsLong() - replyStartedAt) / 1000000L;
+            replyStartedAt = -1;
+        }
+        if (listener != null) {
+            listener.onTimeToFirstAudio(millis);
+        }
+    }
+
+    @Override
+    public synchronized void onUtteranceDone(String utteranceId) {
+        lastDoneUtteranceId = utteranceId;
+    }
+
+    // A sentence ends at . ! ? or the Devanagari danda followed by whitespace, or at a line
+    // break. A terminator at the very end of the buffer waits for more text unless final.
+    private void emitSentences(boolean endOfReply) {
+        int start = 0;
+        int length = pending.length();
+        for (int i = 0; i < length; i++) {
+            char c = pending.charAt(i);
+            boolean boundary;
+            if (c == '\n') {
+                boundary = true;
+            } else if (c == '.' || c == '!' || c == '?' || c == '।') {
+                boundary = i + 1 < length && Character.isWhitespace(pending.charAt(i + 1));
+            } else {
+                boundary = false;
+            }
+            if (boundary) {
+                enqueue(pending.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (endOfReply) {
+            enqueue(pending.substring(start));
+            pending.setLength(0);
+        } else {
+            pending.delete(0, start);
+        }
+    }
+
+    private void enqueue(String sentence) {
+        String text = cleanForSpeech(sentence);
+        if (text.isEmpty()) return;
+        String id = "reply-" + (++utteranceCounter);
+        if (firstUtteranceId == null) {
+            firstUtteranceId = id;
+        }
+        lastUtteranceId = id;
+        engine.enqueue(id, text);
+    }
+
+    // Markdown markers read out loud sound like noise
+    static String cleanForSpeech(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '*' || c == '#' || c == '`' || c == '_' || c == '>') continue;
+            sb.append(c);
+        }
+        return sb.toString().trim();
+    }
+}
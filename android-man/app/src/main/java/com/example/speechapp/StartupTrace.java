@@ -0,0 +1,83 @@
+package com.example.speechapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.os.Process;
+import android.os.SystemClock;
+import androidx.core.content.pm.PackageInfoCompat;
+import java.util.Arrays;
+
+/**
+ * Cold-start timings measured from process start: when the application finished onCreate,
+ * when the first frame was drawn and when the chat became interactive. The last few starts
+ * are kept per build (version name and code) so a regression shows up as a jump between
+ * builds rather than as one slow start.
+ */
+public final class StartupTrace {
+    private static final String PREF_NAME = "StartupTrace";
+    private static final int SAMPLES_PER_BUILD = 10;
+
+    private static long applicationCreatedAt = -1;
+    private static boolean coldStartReported = false;
+
+    private StartupTrace() {}
+
+    static void markApplicationCreated() {
+        applicationCreatedAt = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Records the first cold start of this process and returns a one-line summary, or null
+     * if this process already reported (activity recreated, warm start).
+     */
+    static String reportColdStart(Context context, long firstFrameAt, long interactiveAt) {
+        if (coldStartReported || applicationCreatedAt < 0) return null;
+        coldStartReported = true;
+
+        long processStart = Process.getStartElapsedRealtime();
+        long application = applicationCreatedAt - processStart;
+        long firstFrame = firstFrameAt - processStart;
+        long interactive = interactiveAt - processStart;
+
+        String build = buildName(context);
+        SharedPreferences prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        String history = prefs.getString(build, "");
+        String sample = firstFrame + "/" + interactive;
+        String[] samples = history.isEmpty() ? new String[0] : history.split(",");
+        int keep = Math.min(samples.length, SAMPLES_PER_BUILD - 1);
+        StringBuilder updated = new StringBuilder(sample);
+        for (int i = 0; i < keep; i++) {
+            updated.append(',').append(samples[i]);
+        }
+        prefs.edit().putString(build, updated.toString()).apply();
+
+        return "Cold start " + build + ": application " + application + " ms, first frame "
+                + firstFrame + " ms, interactive " + interactive + " ms"
+                + " (median of last " + (keep + 1) + ": " + median(updated.toString()) + ")";
+    }
+
+    private static String median(String history) {
+        String[] samples = history.split(",");
+        long[] firstFrames = new long[samples.length];
+        long[] interactives = new long[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            String[] parts = samples[i].split("/");
+            firstFrames[i] = Long.parseLong(parts[0]);
+            interactives[i] = Long.parseLong(parts[1]);
+        }
+        Arrays.sort(firstFrames);
+        Arrays.sort(interactives);
+        int middle = samples.length / 2;
+        return firstFrames[middle] + "/" + interactives[middle] + " ms";
+    }
+
+    private static String buildName(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            return info.versionName + " (" + PackageInfoCompat.getLongVersionCode(info) + ")";
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.speechapp;
+
+/**
+ * The system prompt for each mode and language. Pure Java, so ReplayLoad sends exactly
+ * what GeminiAPI sends.
+ */
+public final class SystemPrompt {
+    /** The values of the language preference. */
+    public static final String[] LANGUAGES = {"english", "hindi", "hinglish", "kannada", "telugu"};
+
+    private static final String QUIZ_PROMPT_START = "You are a friendly AI assistant. ";
+    private static final String QUIZ_PROMPT_END = " When in quiz mode: Ask one question at a time, wait for answers. " +
+            "ALWAYS format your response EXACTLY in JSON format with schema " +
+            "{'evaluation': 'evaluation text', 'explanation': 'explanation text', 'encouraging_feedback': 'feedback text', 'next_question': 'question text', " +
+            "'backup_questions': ['two other new questions, used if next_question was already asked']}";
+
+    private SystemPrompt() {
+    }
+
+    public static String build(boolean quizMode, String language) {
+        String prompt = "";
+        if (quizMode) {
+            prompt += QUIZ_PROMPT_START;
+            prompt += "You are in quiz mode. Start a fun quiz about general knowledge. Ask one question at a time. ";
+            prompt += languageInstruction(language) + QUIZ_PROMPT_END;
+        } else {
+            prompt += "You are in conversation mode. Have a natural conversation. ";
+            prompt += languageInstruction(language);
+        }
+        return prompt;
+    }
+
+    private static String languageInstruction(String language) {
+        switch (language) {
+            case "hindi":
+                return "Please respond in simple English that can be easily transliterated to Hindi. " +
+                       "Use short, clear sentences and avoid complex words.";
+            case "hinglish":
+                return "Please respond in Hinglish (mix of Hindi and English). " +
+                       "Use casual language with common Hindi words mixed with English. " +
+                       "For example: 'Kya plan hai weekend ka?' or 'Movie kaisi thi?'";
+            case "kannada":
+                return "Please respond in simple Kannada written in Kannada script.";
+            case "telugu":
+                return "Please respond in simple Telugu written in Telugu script.";
+            default: // english
+                return "Please respond in clear English.";
+        }
+    }
+}
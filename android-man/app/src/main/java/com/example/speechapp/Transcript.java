@@ -0,0 +1,149 @@
+package com.example.speechapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dictation transcript made of committed segments (one per recognizer session) followed by
+ * a mutable tail holding the current partial result. Every word is rendered followed by a
+ * single space, so character offsets can be computed from word lengths alone.
+ *
+ * Partial updates are diffed word by word against the tail only (common prefix and suffix),
+ * which yields at most one replace/insert edit whose cost depends on the utterance, not on
+ * the length of the whole transcript. Edits are numbered, so a reader that re-renders the
+ * whole text can tell which queued edits it already holds. Not thread-safe; use from the
+ * recognizer thread.
+ */
+public class Transcript {
+
+    public static final class Edit {
+        public final int start;
+        public final int end;
+        public final String text;
+        // Increases with every edit, across resets
+        public final long revision;
+
+        Edit(int start, int end, String text, long revision) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+            this.revision = revision;
+        }
+
+        @Override
+        public String toString() {
+            return "Edit[" + start + "," + end + ") -> \"" + text + "\"";
+        }
+    }
+
+    private final StringBuilder committedText = new StringBuilder();
+    private List<String> tail = Collections.emptyList();
+    private long revision = 0;
+
+    /** Replaces the partial tail with the recognizer's latest hypothesis. Null if nothing changed. */
+    public Edit updatePartial(String partialText) {
+        List<String> words = split(partialText);
+        Edit edit = diff(tail, words);
+        tail = words;
+        return edit;
+    }
+
+    /**
+     * Settles the current utterance with the recognizer's final text (or the last partial when
+     * the final text is empty) and starts a new empty tail. Returns the edit turning the last
+     * partial into the final text, or null if they are identical.
+     */
+    public Edit commit(String finalText) {
+        Edit edit = null;
+        if (finalText != null && !finalText.trim().isEmpty()) {
+            edit = updatePartial(finalText);
+        }
+        commitPartial();
+        return edit;
+    }
+
+    /** Keeps whatever the tail holds, used when a recognizer session ends without results. */
+    public void commitPartial() {
+        if (tail.isEmpty()) return;
+        for (String word : tail) {
+            committedText.append(word).append(' ');
+        }
+        tail = Collections.emptyList();
+    }
+
+    public void reset() {
+        revision++;
+        committedText.setLength(0);
+        tail = Collections.emptyList();
+    }
+
+    public String getPartialText() {
+        return join(tail, 0, tail.size()).trim();
+    }
+
+    public String getText() {
+        return (committedText + join(tail, 0, tail.size())).trim();
+    }
+
+    /** The text the edits render, trailing space included, so offsets line up with it. */
+    public String getRenderedText() {
+        return committedText + join(tail, 0, tail.size());
+    }
+
+    /** The revision of the last edit or reset; getRenderedText() reflects every edit up to it. */
+    public long getRevision() {
+        return revision;
+    }
+
+    private Edit diff(List<String> oldWords, List<String> newWords) {
+        int oldSize = oldWords.size();
+        int newSize = newWords.size();
+        int prefix = 0;
+        while (prefix < oldSize && prefix < newSize && oldWords.get(prefix).equals(newWords.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < oldSize - prefix && suffix < newSize - prefix
+                && oldWords.get(oldSize - 1 - suffix).equals(newWords.get(newSize - 1 - suffix))) {
+            suffix++;
+        }
+        if (prefix == oldSize && prefix == newSize) return null;
+
+        int start = committedText.length() + renderedLength(oldWords, 0, prefix);
+        int end = start + renderedLength(oldWords, prefix, oldSize - suffix);
+        return new Edit(start, end, join(newWords, prefix, newSize - suffix), ++revision);
+    }
+
+    private static int renderedLength(List<String> words, int from, int to) {
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            length += words.get(i).length() + 1;
+        }
+        return length;
+    }
+
+    private static String join(List<String> words, int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            sb.append(words.get(i)).append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static List<String> split(String text) {
+        if (text == null) return Collections.emptyList();
+        List<String> words = new ArrayList<>();
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            while (i < n && Character.isWhitespace(text.charAt(i))) i++;
+            int start = i;
+            while (i < n && !Character.isWhitespace(text.charAt(i))) i++;
+            if (i > start) {
+                words.add(text.substring(start, i));
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.speechapp;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * The part of a model turn that does not depend on Android: the request is shaped for the
+ * link the LinkEstimator reports (history window, output budget, compression), routed to
+ * a model for its request class, and sent with one failover when that model is rate
+ * limited or failing (429/5xx). Every attempt's outcome goes into the ModelRouter stats.
+ * GeminiAPI sends each turn through it, and so does ReplayLoad on a desktop JVM.
+ *
+ * Thread-safe if the history, estimator and router are, which they are.
+ */
+public class TurnPipeline {
+    public static final String START_QUIZ_INPUT = "start quiz";
+
+    /** One call to the backend; returns null when the turn was cancelled before it went out. */
+    public interface Call {
+        String execute(LlmRequest request) throws Exception;
+    }
+
+    /** Sees the routing decisions, for the debug log. */
+    public interface Listener {
+        default void onRoute(ModelRouter.Route route, LlmRequest request) {}
+
+        default void onFailover(ModelRouter.Route route, String failedModel, HttpException e) {}
+    }
+
+    private final ConversationHistory history;
+    private final LinkEstimator linkEstimator;
+    private final ModelRouter modelRouter;
+    private final LongSupplier clock;
+    private volatile Listener listener = new Listener() {};
+
+    public TurnPipeline(ConversationHistory history, LinkEstimator linkEstimator, ModelRouter modelRouter) {
+        this(history, linkEstimator, modelRouter, () -> System.nanoTime() / 1_000_000);
+    }
+
+    public TurnPipeline(ConversationHistory history, LinkEstimator linkEstimator, ModelRouter modelRouter,
+                        LongSupplier clock) {
+        this.history = history;
+        this.linkEstimator = linkEstimator;
+        this.modelRouter = modelRouter;
+        this.clock = clock;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener != null ? listener : new Listener() {};
+    }
+
+    // Shaped for the current link: on a slow one the history window, the output budget and
+    // (through compression) the body all shrink
+    public LlmRequest newRequest(String systemPrompt, String userInput, String userText) {
+        LlmRequest request = new LlmRequest(systemPrompt, userText);
+        LinkEstimator.Profile profile = linkEstimator.profile();
+        request.linkProfile = profile;
+        request.maxOutputTokens = profile.maxOutputTokens;
+        request.compressBody = profile.compress;
+        // A new quiz starts without the history
+        if (!userInput.equals(START_QUIZ_INPUT)) {
+            String recent = history.recent(profile.historyTurns).replace("User: ", "").replace("Assistant: ", "");
+            request.history = "Previous conversation:\n" + recent;
+        }
+        return request;
+    }
+
+    public static ModelRouter.RequestClass classify(String userInput, LlmRequest request, boolean quizMode) {
+        if (request.audio != null) return ModelRouter.RequestClass.AUDIO;
+        if (userInput.equals(START_QUIZ_INPUT)) return ModelRouter.RequestClass.QUIZ_START;
+        return quizMode ? ModelRouter.RequestClass.QUIZ_ANSWER : ModelRouter.RequestClass.CHAT;
+    }
+
+    /**
+     * Routes the request and sends it, failing over once to the route's fallback model on a
+     * retryable HttpException. Returns null if the call reports the turn cancelled.
+     */
+    public String send(LlmBackend backend, ModelRouter.RequestClass requestClass, LlmRequest request,
+                       Call call, BooleanSupplier cancelled) throws Exception {
+        ModelRouter.Route route = modelRouter.route(requestClass);
+        request.maxOutputTokens = Math.min(route.maxOutputTokens, request.maxOutputTokens);
+        if (backend.supportsModelRouting()) {
+            request.model = route.model;
+        }
+        Listener listener = this.listener;
+        listener.onRoute(route, request);
+
+        try {
+            return attempt(backend, request, call, cancelled);
+        } catch (HttpException e) {
+            if (request.model == null || route.fallback == null || !e.isRetryable()) throw e;
+            listener.onFailover(route, request.model, e);
+            request.model = route.fallback;
+            return attempt(backend, request, call, cancelled);
+        }
+    }
+
+    private String attempt(LlmBackend backend, LlmRequest request, Call call, BooleanSupplier cancelled)
+            throws Exception {
+        String statsKey = request.model != null ? request.model : backend.getName();
+        long startedAt = clock.getAsLong();
+        try {
+            String generatedText = call.execute(request);
+            if (generatedText != null) {
+                modelRouter.record(statsKey, clock.getAsLong() - startedAt, true);
+            }
+            return generatedText;
+        } catch (Exception e) {
+            // A cancelled call says nothing about the model
+            if (!cancelled.getAsBoolean()) {
+                modelRouter.record(statsKey, clock.getAsLong() - startedAt, false);
+            }
+            throw e;
+        }
+    }
+}
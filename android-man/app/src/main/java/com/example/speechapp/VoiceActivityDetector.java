@@ -0,0 +1,122 @@
+package com.example.speechapp;
+
+/**
+ * Energy + zero-crossing voice activity detector for 16-bit mono PCM frames.
+ *
+ * Each frame is classified as speech when its energy is well above an adaptive noise floor
+ * and its zero-crossing rate looks like voice rather than hiss. A few consecutive speech
+ * frames start an utterance; a longer run of non-speech frames (the hangover) ends it.
+ * Plain Java with no Android dependencies, so it can be driven from recorded PCM on a JVM.
+ */
+public class VoiceActivityDetector {
+    public static final int EVENT_NONE = 0;
+    public static final int EVENT_SPEECH_START = 1;
+    public static final int EVENT_SPEECH_END = 2;
+
+    private static final double FULL_SCALE_SQUARED = 32768.0 * 32768.0;
+    private static final float SILENCE_DB = -96f;
+
+    private final float marginDb;
+    private final float minSpeechDb;
+    private final float maxZeroCrossingRate;
+    private final int onsetFrames;
+    private final int hangoverFrames;
+
+    private float noiseFloorDb = -60f;
+    private float lastEnergyDb = SILENCE_DB;
+    private float lastZeroCrossingRate = 0f;
+    private boolean inSpeech = false;
+    private int speechRun = 0;
+    private int silenceRun = 0;
+
+    public VoiceActivityDetector() {
+        // 20 ms frames: 60 ms to trigger, 800 ms of quiet to end
+        this(12f, -55f, 0.35f, 3, 40);
+    }
+
+    public VoiceActivityDetector(float marginDb, float minSpeechDb, float maxZeroCrossingRate,
+                                 int onsetFrames, int hangoverFrames) {
+        this.marginDb = marginDb;
+        this.minSpeechDb = minSpeechDb;
+        this.maxZeroCrossingRate = maxZeroCrossingRate;
+        this.onsetFrames = onsetFrames;
+        this.hangoverFrames = hangoverFrames;
+    }
+
+    /** Feeds one frame and returns EVENT_SPEECH_START, EVENT_SPEECH_END or EVENT_NONE. */
+    public int process(short[] samples, int offset, int length) {
+        if (length <= 0) return EVENT_NONE;
+
+        long sumSquares = 0;
+        int crossings = 0;
+        short previous = samples[offset];
+        for (int i = offset; i < offset + length; i++) {
+            short sample = samples[i];
+            sumSquares += (long) sample * sample;
+            if ((sample >= 0) != (previous >= 0)) {
+                crossings++;
+            }
+            previous = sample;
+        }
+        double meanSquare = (double) sumSquares / length;
+        lastEnergyDb = meanSquare > 0 ? (float) (10 * Math.log10(meanSquare / FULL_SCALE_SQUARED)) : SILENCE_DB;
+        lastZeroCrossingRate = (float) crossings / length;
+
+        boolean speechFrame = isSpeechFrame(lastEnergyDb, lastZeroCrossingRate);
+        if (!speechFrame) {
+            updateNoiseFloor(lastEnergyDb);
+        }
+
+        if (!inSpeech) {
+            speechRun = speechFrame ? speechRun + 1 : 0;
+            if (speechRun >= onsetFrames) {
+                inSpeech = true;
+                silenceRun = 0;
+                return EVENT_SPEECH_START;
+            }
+        } else {
+            silenceRun = speechFrame ? 0 : silenceRun + 1;
+            if (silenceRun >= hangoverFrames) {
+                inSpeech = false;
+                speechRun = 0;
+                return EVENT_SPEECH_END;
+            }
+        }
+        return EVENT_NONE;
+    }
+
+    public boolean isInSpeech() {
+        return inSpeech;
+    }
+
+    public float getLastEnergyDb() {
+        return lastEnergyDb;
+    }
+
+    public float getLastZeroCrossingRate() {
+        return lastZeroCrossingRate;
+    }
+
+    public float getNoiseFloorDb() {
+        return noiseFloorDb;
+    }
+
+    public void reset() {
+        inSpeech = false;
+        speechRun = 0;
+        silenceRun = 0;
+    }
+
+    private boolean isSpeechFrame(float energyDb, float zeroCrossingRate) {
+        float threshold = Math.max(minSpeechDb, noiseFloorDb + marginDb);
+        if (energyDb < threshold) return false;
+        // Hiss and fans cross zero constantly; let them through only when clearly loud
+        return zeroCrossingRate <= maxZeroCrossingRate || energyDb >= threshold + marginDb / 2;
+    }
+
+    private void updateNoiseFloor(float energyDb) {
+        // Follow drops quickly and rises slowly, so speech doesn't drag the floor up
+        float rate = energyDb < noiseFloorDb ? 0.1f : 0.005f;
+        noiseFloorDb += (energyDb - noiseFloorDb) * rate;
+    }
+}
@@ -1,24 +1,45 @@
 package com.example.speechapp;
 
-import android.animation.ValueAnimator;
 import android.content.Context;
+import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.drawable.GradientDrawable;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
 import android.util.AttributeSet;
-import android.view.LayoutInflater;
+import android.view.Choreographer;
 import android.view.View;
-import android.view.animation.AccelerateDecelerateInterpolator;
-import android.widget.FrameLayout;
-import android.widget.ImageView;
-import java.util.Random;
-
-public class VoiceInputView extends FrameLayout {
-    private View voiceAnimationContainer;
-    private ImageView micIcon;
-    private View[] voiceBars;
-    private ValueAnimator[] animators;
-    private Random random;
-    private int currentColor = Color.parseColor("#4285F4"); // Google Blue
+
+/**
+ * Mic button that draws its circle, mic icon and level bars itself in a single onDraw.
+ * While listening one Choreographer callback samples the amplitude and eases the bars
+ * towards it; nothing is allocated per frame and the loop stops when listening stops.
+ */
+public class VoiceInputView extends View implements Choreographer.FrameCallback {
+    private static final float MIN_BAR_SCALE = 0.3f;
+    // Per-bar weights so the three bars don't move in lockstep
+    private static final float[] BAR_WEIGHTS = {0.7f, 1.0f, 0.85f};
+    private static final float BAR_WIDTH_DP = 3f;
+    private static final float BAR_HEIGHT_DP = 15f;
+    private static final float BAR_GAP_DP = 2f;
+    private static final float MIC_SIZE_DP = 24f;
+    // Fraction of the remaining distance the bars cover each frame
+    private static final float SMOOTHING = 0.35f;
+    private static final float SETTLED_EPSILON = 0.002f;
+
+    private final Paint circlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint barPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF barRect = new RectF();
+    private final float[] barScales = new float[BAR_WEIGHTS.length];
+    private Drawable micIcon;
+    private float barWidth;
+    private float barHeight;
+    private float barGap;
+    private float micSize;
+    private VoiceStatus currentStatus;
+    private AmplitudeSlot amplitudeSource;
+    private float targetAmplitude = 0f;
+    private boolean frameLoopRunning = false;
 
     public enum VoiceStatus {
         IDLE(Color.parseColor("#4285F4")), // Blue
@@ -51,104 +72,125 @@ public class VoiceInputView extends FrameLayout {
         setClickable(true);
         setFocusable(true);
 
-        LayoutInflater.from(getContext()).inflate(R.layout.voice_input_view, this, true);
-        voiceAnimationContainer = findViewById(R.id.voiceAnimationContainer);
-        micIcon = findViewById(R.id.micIcon);
-        
-        // Initialize voice bars
-        voiceBars = new View[]{
-            findViewById(R.id.voiceBar1),
-            findViewById(R.id.voiceBar2),
-            findViewById(R.id.voiceBar3)
-        };
-
-        animators = new ValueAnimator[voiceBars.length];
-        random = new Random();
-        
+        float density = getResources().getDisplayMetrics().density;
+        barWidth = BAR_WIDTH_DP * density;
+        barHeight = BAR_HEIGHT_DP * density;
+        barGap = BAR_GAP_DP * density;
+        micSize = MIC_SIZE_DP * density;
+
+        barPaint.setColor(Color.WHITE);
+        micIcon = getContext().getDrawable(android.R.drawable.ic_btn_speak_now);
+        if (micIcon != null) {
+            micIcon = micIcon.mutate();
+            micIcon.setTint(Color.WHITE);
+        }
+        resetBars();
+
         // Set initial state
         setStatus(VoiceStatus.IDLE);
-        voiceAnimationContainer.setVisibility(View.GONE);
-        micIcon.setVisibility(View.VISIBLE);
+    }
+
+    // Bars follow the latest value in this slot, sampled once per display frame.
+    public void setAmplitudeSource(AmplitudeSlot source) {
+        this.amplitudeSource = source;
     }
 
     public void startAnimation() {
-        voiceAnimationContainer.setVisibility(View.VISIBLE);
-        micIcon.setVisibility(View.GONE);
         setStatus(VoiceStatus.LISTENING);
-        for (int i = 0; i < voiceBars.length; i++) {
-            startBarAnimation(i);
+        if (!frameLoopRunning) {
+            frameLoopRunning = true;
+            Choreographer.getInstance().postFrameCallback(this);
         }
     }
 
     public void stopAnimation() {
-        for (ValueAnimator animator : animators) {
-            if (animator != null) {
-                animator.cancel();
-            }
-        }
-        voiceAnimationContainer.setVisibility(View.GONE);
-        micIcon.setVisibility(View.VISIBLE);
+        stopFrameLoop();
+        targetAmplitude = 0f;
+        resetBars();
         setStatus(VoiceStatus.IDLE);
     }
 
     public void setStatus(VoiceStatus status) {
-        currentColor = status.getColor();
-        updateBackgroundColor(currentColor);
-        
-        switch (status) {
-            case LISTENING:
-                voiceAnimationContainer.setVisibility(View.VISIBLE);
-                micIcon.setVisibility(View.GONE);
-                for (View bar : voiceBars) {
-                    bar.setBackgroundColor(Color.WHITE);
-                }
-                break;
-            case PROCESSING:
-            case ERROR:
-            case IDLE:
-                voiceAnimationContainer.setVisibility(View.GONE);
-                micIcon.setVisibility(View.VISIBLE);
-                break;
-        }
+        if (status == currentStatus) return;
+        currentStatus = status;
+        circlePaint.setColor(status.getColor());
+        invalidate();
     }
 
-    private void updateBackgroundColor(int color) {
-        setBackgroundResource(R.drawable.circle_background);
-        getBackground().setColorFilter(color, android.graphics.PorterDuff.Mode.SRC_IN);
+    public void updateWithAmplitude(float amplitude) {
+        targetAmplitude = amplitude;
     }
 
-    private void startBarAnimation(int index) {
-        if (animators[index] != null) {
-            animators[index].cancel();
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!frameLoopRunning) return;
+        if (amplitudeSource != null) {
+            targetAmplitude = amplitudeSource.get();
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < barScales.length; i++) {
+            // Scale amplitude to a reasonable range (0.3 - 1.0)
+            float target = MIN_BAR_SCALE + (targetAmplitude * BAR_WEIGHTS[i] * (1f - MIN_BAR_SCALE));
+            float delta = target - barScales[i];
+            if (Math.abs(delta) > SETTLED_EPSILON) {
+                barScales[i] += delta * SMOOTHING;
+                changed = true;
+            }
         }
+        if (changed) {
+            invalidate();
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
 
-        View bar = voiceBars[index];
-        float minScale = 0.3f;
-        float maxScale = 1.0f;
-        int duration = 600 + random.nextInt(400); // Random duration between 600-1000ms
-
-        ValueAnimator animator = ValueAnimator.ofFloat(minScale, maxScale);
-        animator.setDuration(duration);
-        animator.setRepeatCount(ValueAnimator.INFINITE);
-        animator.setRepeatMode(ValueAnimator.REVERSE);
-        animator.setInterpolator(new AccelerateDecelerateInterpolator());
-        animator.addUpdateListener(animation -> {
-            float scale = (float) animation.getAnimatedValue();
-            bar.setScaleY(scale);
-        });
-
-        animator.setStartDelay(index * 100); // Sequential delay for bars
-        animator.start();
-        animators[index] = animator;
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (micIcon != null) {
+            int half = (int) (Math.min(micSize, Math.min(w, h)) / 2);
+            micIcon.setBounds(w / 2 - half, h / 2 - half, w / 2 + half, h / 2 + half);
+        }
     }
 
-    public void updateWithAmplitude(float amplitude) {
-        if (voiceAnimationContainer.getVisibility() == View.VISIBLE) {
-            // Scale amplitude to a reasonable range (0.3 - 1.0)
-            float scaledAmplitude = 0.3f + (amplitude * 0.7f);
-            for (View bar : voiceBars) {
-                bar.setScaleY(scaledAmplitude);
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        float cx = getWidth() / 2f;
+        float cy = getHeight() / 2f;
+        canvas.drawCircle(cx, cy, Math.min(cx, cy), circlePaint);
+
+        if (currentStatus == VoiceStatus.LISTENING) {
+            float totalWidth = barScales.length * barWidth + (barScales.length - 1) * barGap;
+            float left = cx - totalWidth / 2f;
+            float radius = barWidth / 2f;
+            for (float scale : barScales) {
+                float halfHeight = barHeight * scale / 2f;
+                barRect.set(left, cy - halfHeight, left + barWidth, cy + halfHeight);
+                canvas.drawRoundRect(barRect, radius, radius, barPaint);
+                left += barWidth + barGap;
             }
+        } else if (micIcon != null) {
+            micIcon.draw(canvas);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        stopFrameLoop();
+    }
+
+    private void stopFrameLoop() {
+        if (frameLoopRunning) {
+            frameLoopRunning = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    private void resetBars() {
+        for (int i = 0; i < barScales.length; i++) {
+            barScales[i] = MIN_BAR_SCALE;
         }
     }
 }
@@ -2,44 +2,80 @@ package com.example.speechapp;
 
 import android.content.Context;
 import android.content.Intent;
+import android.media.AudioFormat;
 import android.media.AudioManager;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.speech.RecognitionListener;
 import android.speech.RecognizerIntent;
 import android.speech.SpeechRecognizer;
+import android.text.TextUtils;
 import android.util.Log;
+import androidx.annotation.RequiresApi;
+import java.io.IOException;
 import java.util.ArrayList;
 
 public class VoiceManager implements RecognitionListener {
     private static final String TAG = "VoiceManager";
     private static final int MAX_RETRIES = 3;
+    private static final int CONTINUOUS_SILENCE_LENGTH_MILLIS = 10000;
+    private static final int GATED_SILENCE_LENGTH_MILLIS = 1500;
     private final Context context;
     private final VoiceCallback callback;
-    private SpeechRecognizer speechRecognizer;
+    private final DoubleBufferedRecognizer recognizers;
     private final Handler handler;
     private boolean isListening = false;
-    private String sessionPartialText = "";
-    private String lastPartialResult = "";
+    private final Transcript transcript = new Transcript();
     private final String[] supportedLanguages = {"en-US", "hi-IN", "kn-IN", "te-IN"};
     private int retryCount = 0;
+    private boolean handsFree = false;
     private AudioManager audioManager;
+    private final AmplitudeSlot amplitude = new AmplitudeSlot();
+    private VoiceInputView.VoiceStatus lastStatus = VoiceInputView.VoiceStatus.IDLE;
+    private final AudioCaptureStage captureStage;
+    private boolean vadGating = false;
+    private boolean gatedSession = false;
+    private boolean gatedRecognitionActive = false;
+    private ParcelFileDescriptor audioSource;
+    private boolean audioTurns = false;
+    private AudioTurnEncoder audioTurnEncoder;
+    private long lastSpeechEndedAt = 0;
 
     public interface VoiceCallback {
-        void onPartialSpeechResult(String textSoFar, String newText);
+        void onPartialSpeechResult(String utteranceText, Transcript.Edit edit);
         void onSpeechResult(String fullText);
         void onSpeechError(String error);
         void onListeningStarted();
         void onListeningStopped();
         void onLanguageDetected(String language);
         void onStatusChanged(VoiceInputView.VoiceStatus status);
+        void onRecognizerHandover(long gapMillis);
+        void onAudioUtterance(byte[] audio, String mimeType, long speechEndedAt);
+        // heardByVad is false for the recognizer's own detection, which can't tell the user
+        // from the app's reply playing through the speaker
+        void onUserSpeechStarted(boolean heardByVad);
     }
 
     public VoiceManager(Context context, VoiceCallback callback) {
         this.context = context;
         this.callback = callback;
         this.handler = new Handler(Looper.getMainLooper());
+        this.recognizers = new DoubleBufferedRecognizer(context, handler, this, callback::onRecognizerHandover);
+        this.captureStage = new AudioCaptureStage(handler, amplitude, new AudioCaptureStage.Listener() {
+            @Override
+            public void onSpeechStart() {
+                onVoiceActivityStart();
+            }
+
+            @Override
+            public void onSpeechEnd() {
+                onVoiceActivityEnd();
+            }
+        });
         audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
         if (audioManager != null) {
             // Disable system sounds for speech recognition
@@ -47,21 +83,7 @@ public class VoiceManager implements RecognitionListener {
         }
     }
 
-    private void initializeSpeechRecognizer() {
-        if (speechRecognizer != null) {
-            speechRecognizer.destroy();
-        }
-        speechRecognizer = SpeechRecognizer.createSpeechRecognizer(context);
-        speechRecognizer.setRecognitionListener(this);
-    }
-
-    private void startNewRecognition() {
-        Log.d(TAG, "Starting new recognition");
-        lastPartialResult = "";
-        
-        
-        initializeSpeechRecognizer();
-
+    private Intent buildRecognizerIntent() {
         Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
         intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
         
@@ -70,54 +92,78 @@ public class VoiceManager implements RecognitionListener {
         intent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 1);
         intent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true);
         intent.putExtra(RecognizerIntent.EXTRA_CALLING_PACKAGE, context.getPackageName());
-        intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_COMPLETE_SILENCE_LENGTH_MILLIS, 10000);
+        intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_COMPLETE_SILENCE_LENGTH_MILLIS,
+                gatedSession ? GATED_SILENCE_LENGTH_MILLIS : CONTINUOUS_SILENCE_LENGTH_MILLIS);
         //intent.putExtra(RecognizerIntent.EXTRA_PREFER_OFFLINE, true);
+        return intent;
+    }
+
+    private void startNewRecognition() {
+        Log.d(TAG, "Starting new recognition");
+        // A restarted session keeps what was heard so far, its partials start a new segment
+        transcript.commitPartial();
 
         try {
-            speechRecognizer.startListening(intent);
+            recognizers.start(buildRecognizerIntent());
         } catch (Exception e) {
             Log.e(TAG, "Error starting speech recognition", e);
             handleError("Error starting speech recognition", -1, false, true, false);
         }
-        
+    }
+
+    private void handoverRecognition() {
+        Log.d(TAG, "Handing over to standby recognizer");
+
+        try {
+            recognizers.handover(buildRecognizerIntent());
+        } catch (Exception e) {
+            Log.e(TAG, "Error handing over speech recognition", e);
+            handleError("Error starting speech recognition", -1, true, true, false);
+        }
+    }
+
+    /** The dictation as rendered into the input field, edit offsets count from its start. */
+    public String getTranscriptText() {
+        return transcript.getRenderedText();
+    }
+
+    /** The revision of the last edit getTranscriptText() includes. */
+    public long getTranscriptRevision() {
+        return transcript.getRevision();
+    }
+
+    /** Starts the dictation over, used once the field it was written into is sent or cleared. */
+    public void resetTranscript() {
+        transcript.reset();
     }
 
     public void startListening() {
         if (isListening) return;
         isListening = true;
-        sessionPartialText = "";
+        transcript.reset();
         retryCount = 0;  // Reset retry count when starting new listening session
         callback.onListeningStarted();
-        callback.onStatusChanged(VoiceInputView.VoiceStatus.LISTENING);
-        startNewRecognition();
+        updateStatus(VoiceInputView.VoiceStatus.LISTENING);
+        gatedSession = (vadGating || audioTurns) && captureStage.start();
+        if (gatedSession) {
+            Log.d(TAG, "Waiting for speech");
+        } else {
+            startNewRecognition();
+        }
     }
 
     public void stopListening() {
         Log.d(TAG, "Stopping listening");
         if (!isListening) return;
         isListening = false;
-        if (speechRecognizer != null) {
-            try {
-                speechRecognizer.stopListening();  // Try to stop gracefully first
-                handler.postDelayed(() -> {
-                    if (speechRecognizer != null) {
-                        speechRecognizer.destroy();
-                        speechRecognizer = null;
-                    }
-                }, 100);  // Give it a moment to stop gracefully
-            } catch (Exception e) {
-                Log.e(TAG, "Error stopping speech recognizer", e);
-                if (speechRecognizer != null) {
-                    speechRecognizer.destroy();
-                    speechRecognizer = null;
-                }
-            }
-        }
+        recognizers.stop();
+        releaseCapture();
+        amplitude.reset();
         if (audioManager != null) {
             audioManager.adjustStreamVolume(AudioManager.STREAM_SYSTEM, AudioManager.ADJUST_UNMUTE, 0);
         }
         callback.onListeningStopped();
-        callback.onStatusChanged(VoiceInputView.VoiceStatus.IDLE);
+        updateStatus(VoiceInputView.VoiceStatus.IDLE);
     }
 
     public void toggleListening() {
@@ -129,10 +175,138 @@ public class VoiceManager implements RecognitionListener {
         }
     }
 
+    // In hands-free mode every utterance is delivered as a final result and the partial
+    // text starts over, instead of accumulating into one dictation session.
+    public void setHandsFree(boolean handsFree) {
+        this.handsFree = handsFree;
+    }
+
+    // When enabled, a cheap on-device VAD listens first and the platform recognizer is only
+    // started once speech begins, instead of running (and timing out) on silence.
+    public void setVadGating(boolean vadGating) {
+        this.vadGating = vadGating;
+    }
+
+    // Audio turns skip the platform recognizer: each utterance detected by the VAD is
+    // encoded and handed to the callback for a direct audio request to Gemini.
+    public void setAudioTurns(boolean audioTurns) {
+        this.audioTurns = audioTurns;
+    }
+
+    // SystemClock.elapsedRealtime() of the last end of speech, for latency measurements
+    public long getLastSpeechEndedAt() {
+        return lastSpeechEndedAt;
+    }
+
+    public AmplitudeSlot getAmplitude() {
+        return amplitude;
+    }
+
+    // Only forward real transitions; onRmsChanged reports LISTENING many times a second.
+    private void updateStatus(VoiceInputView.VoiceStatus status) {
+        if (status == lastStatus) return;
+        lastStatus = status;
+        callback.onStatusChanged(status);
+    }
+
+    private void onVoiceActivityStart() {
+        if (!isListening || !gatedSession || gatedRecognitionActive || audioTurnEncoder != null) return;
+        callback.onUserSpeechStarted(true);
+        if (audioTurns) {
+            Log.d(TAG, "Speech detected, encoding audio turn");
+            audioTurnEncoder = new AudioTurnEncoder(handler, (audio, mimeType, durationMillis) -> {
+                audioTurnEncoder = null;
+                if (isListening) {
+                    callback.onAudioUtterance(audio, mimeType, lastSpeechEndedAt);
+                }
+            });
+            captureStage.streamTo(audioTurnEncoder);
+            return;
+        }
+        gatedRecognitionActive = true;
+        transcript.commitPartial();
+
+        Intent intent = buildRecognizerIntent();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && attachCapturedAudio(intent)) {
+            Log.d(TAG, "Speech detected, streaming pre-roll to recognizer");
+        } else {
+            // The recognizer needs the microphone itself, so the pre-roll can't be replayed
+            Log.d(TAG, "Speech detected, handing microphone to recognizer");
+            captureStage.stop();
+        }
+
+        try {
+            recognizers.handover(intent);
+        } catch (Exception e) {
+            Log.e(TAG, "Error starting speech recognition", e);
+            handleError("Error starting speech recognition", -1, true, true, false);
+        }
+    }
+
+    private void onVoiceActivityEnd() {
+        if (audioTurnEncoder != null) {
+            lastSpeechEndedAt = SystemClock.elapsedRealtime();
+            // The encoder finishes on its own thread and posts the audio back
+            captureStage.stopStreaming();
+        } else if (gatedRecognitionActive) {
+            // End of stream lets the recognizer finalize without waiting for its own timeout
+            captureStage.stopStreaming();
+        }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
+    private boolean attachCapturedAudio(Intent intent) {
+        try {
+            ParcelFileDescriptor[] pipe = ParcelFileDescriptor.createPipe();
+            closeAudioSource();
+            audioSource = pipe[0];
+            intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE, pipe[0]);
+            intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_CHANNEL_COUNT, 1);
+            intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_ENCODING, AudioFormat.ENCODING_PCM_16BIT);
+            intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_SAMPLING_RATE, AudioCaptureStage.SAMPLE_RATE);
+            captureStage.streamTo(AudioCaptureStage.pipeSink(pipe[1]));
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Could not create audio pipe", e);
+            return false;
+        }
+    }
+
+    // Recognition for one utterance is over, go back to waiting for speech
+    private void finishGatedRecognition() {
+        gatedRecognitionActive = false;
+        captureStage.stopStreaming();
+        closeAudioSource();
+        if (isListening && !captureStage.isRunning() && !captureStage.start()) {
+            Log.w(TAG, "Microphone unavailable for detection, falling back to continuous recognition");
+            gatedSession = false;
+            startNewRecognition();
+        }
+    }
+
+    private void releaseCapture() {
+        captureStage.stop();
+        gatedRecognitionActive = false;
+        audioTurnEncoder = null;
+        closeAudioSource();
+    }
+
+    private void closeAudioSource() {
+        if (audioSource != null) {
+            try {
+                audioSource.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing audio source", e);
+            }
+            audioSource = null;
+        }
+    }
+
     private void restartRecognition() {
-        if (speechRecognizer != null) {
-            speechRecognizer.destroy();
-            speechRecognizer = null;
+        recognizers.reset();
+        if (gatedSession) {
+            finishGatedRecognition();
+            return;
         }
 
         handler.postDelayed(this::startNewRecognition, 10);
@@ -153,11 +327,13 @@ public class VoiceManager implements RecognitionListener {
                 callback.onSpeechError(message);
             //}
 
-            callback.onStatusChanged(VoiceInputView.VoiceStatus.ERROR);
+            updateStatus(VoiceInputView.VoiceStatus.ERROR);
             
             isListening = false;
+            releaseCapture();
+            amplitude.reset();
             callback.onListeningStopped();
-            callback.onStatusChanged(VoiceInputView.VoiceStatus.IDLE);
+            updateStatus(VoiceInputView.VoiceStatus.IDLE);
         }
     }
 
@@ -166,13 +342,19 @@ public class VoiceManager implements RecognitionListener {
     public void onReadyForSpeech(Bundle params) {}
 
     @Override
-    public void onBeginningOfSpeech() {}
+    public void onBeginningOfSpeech() {
+        // Already reported by the VAD in gated sessions
+        if (!gatedSession) {
+            callback.onUserSpeechStarted(false);
+        }
+    }
 
     @Override
     public void onRmsChanged(float rmsdB) {
         if (isListening) {
             float normalizedRms = Math.min(1.0f, Math.max(0.0f, rmsdB / 10.0f));
-            callback.onStatusChanged(VoiceInputView.VoiceStatus.LISTENING);
+            amplitude.set(normalizedRms);
+            updateStatus(VoiceInputView.VoiceStatus.LISTENING);
         }
     }
 
@@ -185,6 +367,7 @@ public class VoiceManager implements RecognitionListener {
     @Override
     public void onEndOfSpeech() {
         Log.d(TAG, "End of speech");
+        lastSpeechEndedAt = SystemClock.elapsedRealtime();
     }
 
     @Override
@@ -193,6 +376,12 @@ public class VoiceManager implements RecognitionListener {
         // Only handle error if we're still in listening mode
         if (!isListening) return;
 
+        if (gatedSession && (error == SpeechRecognizer.ERROR_NO_MATCH || error == SpeechRecognizer.ERROR_SPEECH_TIMEOUT)) {
+            // Nothing usable was said, the VAD waits for the next utterance
+            finishGatedRecognition();
+            return;
+        }
+
         String errorMessage = null;
         boolean canRestart = true;
         boolean shouldReinitSpeechRecognizer = false;
@@ -240,9 +429,30 @@ public class VoiceManager implements RecognitionListener {
     @Override
     public void onResults(Bundle results) {
         Log.d(TAG, "Got speech results");
-        //callback.onSpeechResult(text);
         if (isListening) {
-            restartRecognition();
+            if (gatedSession) {
+                finishGatedRecognition();
+            } else {
+                handoverRecognition();
+            }
+        }
+
+        String finalText = firstResult(results);
+        // Classified locally so the reply request already carries the right language mode
+        String language = LanguageIdentifier.identify(finalText);
+        if (language != null) {
+            callback.onLanguageDetected(language);
+        }
+        Transcript.Edit edit = transcript.commit(finalText);
+        if (edit != null) {
+            callback.onPartialSpeechResult(finalText, edit);
+        }
+        if (handsFree) {
+            // Each utterance is its own turn, the next one starts from an empty transcript
+            transcript.reset();
+            if (!TextUtils.isEmpty(finalText)) {
+                callback.onSpeechResult(finalText.trim());
+            }
         }
     }
 
@@ -253,33 +463,17 @@ public class VoiceManager implements RecognitionListener {
                 return;
             }
 
-            ArrayList<String> resultList = partialResults.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
-            if (resultList == null || resultList.isEmpty()) {
-                return;
-            }
-
-            String partialText = resultList.get(0);
-            if (partialText == null || partialText.isEmpty()) {
+            String partialText = firstResult(partialResults);
+            if (TextUtils.isEmpty(partialText)) {
                 return;
             }
 
             Log.d(TAG, "Partial text: " + partialText);
-            String newText;
-
-            // Handle cases where the new partial text might be shorter
-            if (partialText.length() >= lastPartialResult.length() && partialText.startsWith(lastPartialResult)) {
-                // Normal case - append new text
-                newText = partialText.substring(lastPartialResult.length()).trim();
-            } else {
-                // Text changed or reset - use new text
-                newText = partialText.trim();
-            }
-            
-            sessionPartialText += " " + newText;
-
-            if (!newText.isEmpty()) {
-                callback.onPartialSpeechResult(sessionPartialText.trim(), newText);
-                lastPartialResult = partialText;
+            // Recognizers revise earlier words, so diff against the current utterance
+            // instead of assuming the new text extends the old one
+            Transcript.Edit edit = transcript.updatePartial(partialText);
+            if (edit != null) {
+                callback.onPartialSpeechResult(transcript.getPartialText(), edit);
             }
         } catch (Exception e) {
             Log.e(TAG, "Error processing partial results", e);
@@ -289,8 +483,17 @@ public class VoiceManager implements RecognitionListener {
     @Override
     public void onEvent(int eventType, Bundle params) {}
 
+    private static String firstResult(Bundle results) {
+        if (results == null) return null;
+        ArrayList<String> resultList = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+        if (resultList == null || resultList.isEmpty()) return null;
+        return resultList.get(0);
+    }
+
     public void destroy() {
         stopListening();
         handler.removeCallbacksAndMessages(null);
+        recognizers.destroy();
+        releaseCapture();
     }
 }
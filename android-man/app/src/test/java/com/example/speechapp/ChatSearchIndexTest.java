@@ -0,0 +1,93 @@
+package com.example.speechapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class ChatSearchIndexTest {
+    // Latin spelling, the same word in Devanagari
+    private static final String[][] PAIRS = {
+        {"gaya", "गया"},
+        {"mumbai", "मुंबई"},
+        {"krishna", "कृष्ण"},
+        {"dilli", "दिल्ली"},
+    };
+
+    @Test
+    public void pairsFoldToTheSameKey() {
+        for (String[] pair : PAIRS) {
+            assertEquals(pair[0], PhoneticMatcher.prefixKey(pair[0]), PhoneticMatcher.prefixKey(pair[1]));
+        }
+    }
+
+    @Test
+    public void everyTypedPrefixFoldsToAPrefixOfTheWord() {
+        for (String[] pair : PAIRS) {
+            for (String word : pair) {
+                String whole = PhoneticMatcher.prefixKey(word);
+                for (int end = 1; end < word.length(); end++) {
+                    String typed = PhoneticMatcher.prefixKey(word.substring(0, end));
+                    assertTrue(word.substring(0, end) + " folds to " + typed + ", not a prefix of " + whole,
+                            whole.startsWith(typed));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void anusvaraBeforeLabialFoldsToM() {
+        assertEquals("mumbai", PhoneticMatcher.prefixKey("मुंबई"));
+        assertEquals("kamp", PhoneticMatcher.prefixKey("कंप"));
+        // Before other consonants it stays n
+        assertEquals("hindi", PhoneticMatcher.prefixKey("हिंदी"));
+        // At the end of a word it is dropped, as Latin spellings mostly leave it out
+        assertEquals(PhoneticMatcher.prefixKey("nahi"), PhoneticMatcher.prefixKey("नहीं"));
+    }
+
+    @Test
+    public void finalSchwaIsDroppedFromBothScripts() {
+        assertEquals("krisn", PhoneticMatcher.prefixKey("krishna"));
+        assertEquals("krisn", PhoneticMatcher.prefixKey("कृष्ण"));
+        assertEquals("gay", PhoneticMatcher.prefixKey("gaya"));
+        assertEquals("gay", PhoneticMatcher.prefixKey("गया"));
+    }
+
+    @Test
+    public void halfTypedLatinFindsDevanagariMessages() {
+        ChatSearchIndex index = new ChatSearchIndex();
+        index.add(1, "वो घर गया");
+        index.add(2, "मुंबई में बारिश");
+        index.add(3, "कृष्ण की कहानी");
+
+        assertEquals(Collections.singletonList(1L), index.search("gay", 10));
+        assertEquals(Collections.singletonList(2L), index.search("mumb", 10));
+        assertEquals(Collections.singletonList(2L), index.search("mumbai", 10));
+        assertEquals(Collections.singletonList(3L), index.search("krishn", 10));
+        assertEquals(Collections.singletonList(3L), index.search("krishna", 10));
+    }
+
+    @Test
+    public void halfTypedDevanagariFindsLatinMessages() {
+        ChatSearchIndex index = new ChatSearchIndex();
+        index.add(1, "he is gaya from home");
+        index.add(2, "mumbai rains");
+        index.add(3, "krishna story");
+
+        assertEquals(Collections.singletonList(1L), index.search("गया", 10));
+        assertEquals(Collections.singletonList(2L), index.search("मुंब", 10));
+        assertEquals(Collections.singletonList(3L), index.search("कृष्ण", 10));
+    }
+
+    @Test
+    public void completedWordsMatchWholeTermsOnly() {
+        ChatSearchIndex index = new ChatSearchIndex();
+        index.add(1, "mumbai rains");
+        index.add(2, "mumbaikar rains");
+
+        assertEquals(Arrays.asList(2L, 1L), index.search("mumbai", 10));
+        assertEquals(Collections.singletonList(1L), index.search("mumbai ", 10));
+    }
+}
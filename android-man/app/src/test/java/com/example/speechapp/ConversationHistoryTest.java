@@ -0,0 +1,86 @@
+package com.example.speechapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ConversationHistoryTest {
+    private static ConversationHistory history(int turns) {
+        ConversationHistory history = new ConversationHistory();
+        for (int i = 1; i <= turns; i++) {
+            history.record("q" + i, "a" + i);
+        }
+        return history;
+    }
+
+    @Test
+    public void windowHoldsTheLastTurns() {
+        ConversationHistory history = history(10);
+        assertEquals("User: q10\nAssistant: a10\n\n", history.recent(1));
+        assertEquals("User: q9\nAssistant: a9\n\nUser: q10\nAssistant: a10\n\n", history.recent(2));
+        String all = history.toString();
+        assertEquals(all.substring(all.indexOf("User: q5")), history.recent(6));
+    }
+
+    @Test
+    public void zeroTurnsIsEmpty() {
+        assertEquals("", history(3).recent(0));
+    }
+
+    @Test
+    public void windowPastTheStartIsEverything() {
+        ConversationHistory history = history(3);
+        assertEquals(history.toString(), history.recent(3));
+        assertEquals(history.toString(), history.recent(4));
+    }
+
+    // The GOOD link profile asks for Integer.MAX_VALUE turns
+    @Test(timeout = 1000)
+    public void unboundedWindowEndsAtTheStart() {
+        ConversationHistory history = history(200);
+        assertEquals(history.toString(), history.recent(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void emptyHistory() {
+        assertEquals("", new ConversationHistory().recent(Integer.MAX_VALUE));
+        assertEquals("", new ConversationHistory().recent(2));
+    }
+
+    @Test
+    public void startQuizStartsOver() {
+        ConversationHistory history = history(3);
+        history.record("start quiz", "{\"next_question\": \"Q1\"}");
+        history.record("Delhi", "ok");
+        assertEquals("User: start quiz\nAssistant: {\"next_question\": \"Q1\"}\n\nUser: Delhi\nAssistant: ok\n\n",
+                history.toString());
+        assertEquals("User: Delhi\nAssistant: ok\n\n", history.recent(1));
+    }
+
+    @Test
+    public void trimKeepsWholeNewestTurns() {
+        ConversationHistory history = history(10);
+        history.trim(0.5f);
+        String trimmed = history.toString();
+        assertTrue(trimmed.startsWith("User: "));
+        assertTrue(trimmed.endsWith("User: q10\nAssistant: a10\n\n"));
+        assertTrue(trimmed.length() <= history(10).length() / 2);
+        history.trim(0f);
+        assertEquals("", history.toString());
+    }
+
+    @Test
+    public void versionMovesWithEveryTurnButNotWithTrimming() {
+        ConversationHistory history = history(2);
+        long version = history.version();
+        history.trim(0.5f);
+        assertEquals(version, history.version());
+        history.record("q3", "a3");
+        assertNotEquals(version, history.version());
+        version = history.version();
+        history.clear();
+        assertNotEquals(version, history.version());
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.speechapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class IntentDetectorTest {
+    private final IntentDetector commands = IntentDetector.commands();
+
+    private IntentDetector.Intent command(String text) {
+        IntentDetector.Result result = commands.detect(text);
+        return result != null ? result.intent : null;
+    }
+
+    @Test
+    public void phrasesMatchInsideAShortSentence() {
+        assertEquals(IntentDetector.Intent.STOP_QUIZ, command("Stop the quiz!"));
+        assertEquals(IntentDetector.Intent.STOP_QUIZ, command("okay please end the quiz now"));
+        assertEquals(IntentDetector.Intent.NEXT_QUESTION, command("agla sawal"));
+        assertEquals(IntentDetector.Intent.START_QUIZ, command("Can we start a quiz?"));
+    }
+
+    @Test
+    public void wholePhrasesOnlyMatchTheEntireText() {
+        assertEquals(IntentDetector.Intent.STOP_QUIZ, command("stop"));
+        assertEquals(IntentDetector.Intent.STOP_QUIZ, command("  Stop. "));
+        assertEquals(IntentDetector.Intent.NEXT_QUESTION, command("pass"));
+        assertNull(command("please stop"));
+        assertNull(command("I pass the shop every day"));
+        assertNull(command("next time"));
+    }
+
+    @Test
+    public void longerUtterancesAreNotCommands() {
+        assertEquals(IntentDetector.Intent.STOP_QUIZ, command("can you please stop the quiz"));
+        assertNull(command("could you please stop the quiz now"));
+        assertNull(command("I was going to stop the quiz but then I did not"));
+    }
+
+    @Test
+    public void devanagariIsFoldedWithOrWithoutNukta() {
+        assertEquals(IntentDetector.Intent.START_QUIZ, command("क्विज शुरू करो"));
+        assertEquals(IntentDetector.Intent.START_QUIZ, command("क्विज़ शुरू करो"));
+        assertEquals(IntentDetector.Intent.STOP_QUIZ, command("क्विज़ बंद करो।"));
+        assertEquals(IntentDetector.Intent.NEXT_QUESTION, command("अगला प्रश्न"));
+    }
+
+    @Test
+    public void languageSwitchCarriesTheTarget() {
+        IntentDetector.Result result = commands.detect("Switch to Hindi please");
+        assertEquals(IntentDetector.Intent.SWITCH_LANGUAGE, result.intent);
+        assertEquals("hindi", result.language);
+        assertEquals("kannada", commands.detect("kannada mein bolo").language);
+    }
+
+    @Test
+    public void negatedPhrasesDoNotCount() {
+        assertNull(command("don't stop the quiz"));
+        assertNull(command("dont skip this question"));
+        assertNull(command("do not end the quiz"));
+        assertNull(command("don't start a new quiz"));
+        assertNull(command("अभी मत अगला सवाल"));
+    }
+
+    @Test
+    public void negationEndsAtAClauseBreak() {
+        assertEquals(IntentDetector.Intent.NEXT_QUESTION, command("nahi, agla sawal"));
+        assertEquals(IntentDetector.Intent.STOP_QUIZ, command("not now. stop the quiz"));
+    }
+
+    @Test
+    public void negationOnlyReachesAFewWords() {
+        assertEquals(IntentDetector.Intent.QUIZ_ENDED, IntentDetector.replies()
+                .detect("You did not miss a single one, well done. The quiz is over").intent);
+        assertEquals(IntentDetector.Intent.QUIZ_ENDED, IntentDetector.replies()
+                .detect("Not bad at all for a first try and that is the end of the quiz").intent);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.speechapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class LanguageIdentifierTest {
+    @Test
+    public void englishSentences() {
+        assertEquals(LanguageIdentifier.ENGLISH, LanguageIdentifier.identify("Can you explain that once more"));
+        assertEquals(LanguageIdentifier.ENGLISH, LanguageIdentifier.identify("I think the answer is Jupiter"));
+    }
+
+    @Test
+    public void hinglishSentences() {
+        assertEquals(LanguageIdentifier.HINGLISH, LanguageIdentifier.identify("mujhe iska jawab nahi pata"));
+        assertEquals(LanguageIdentifier.HINGLISH, LanguageIdentifier.identify("kya aap phir se samjha sakte ho"));
+    }
+
+    @Test
+    public void indicScripts() {
+        assertEquals(LanguageIdentifier.HINDI, LanguageIdentifier.identify("भारत की राजधानी क्या है"));
+        assertEquals(LanguageIdentifier.KANNADA, LanguageIdentifier.identify("ನೀವು ಹೇಗಿದ್ದೀರಿ ಇವತ್ತು ಹೇಳಿ"));
+        assertEquals(LanguageIdentifier.TELUGU, LanguageIdentifier.identify("మీరు ఎలా ఉన్నారు ఈ రోజు"));
+    }
+
+    // Quiz answers are single words, and a name says nothing about the user's language
+    @Test
+    public void shortAnswersAreUndecided() {
+        assertNull(LanguageIdentifier.identify("Paris"));
+        assertNull(LanguageIdentifier.identify("dilli"));
+        assertNull(LanguageIdentifier.identify("जवाब"));
+        assertNull(LanguageIdentifier.identify("Mount Everest"));
+        assertNull(LanguageIdentifier.identify("don't know"));
+    }
+
+    // Names and mixed phrases score close to both models
+    @Test
+    public void closeCallsAreUndecided() {
+        assertNull(LanguageIdentifier.identify("Rahul Dravid Sachin Tendulkar"));
+        assertNull(LanguageIdentifier.identify("quiz start karo please"));
+        assertNull(LanguageIdentifier.identify("Taj Mahal Agra"));
+    }
+
+    @Test
+    public void nothingToGoOn() {
+        assertNull(LanguageIdentifier.identify(null));
+        assertNull(LanguageIdentifier.identify(""));
+        assertNull(LanguageIdentifier.identify("42 17 2024"));
+    }
+}
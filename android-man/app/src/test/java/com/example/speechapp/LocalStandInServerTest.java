@@ -0,0 +1,109 @@
+package com.example.speechapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LocalStandInServerTest {
+    private static final String GENERATE = "/v1beta/models/standin:generateContent";
+    private static final String TURN = "{\"contents\":[{\"role\":\"user\",\"parts\":[{\"text\":\"Hi\"}]}]}";
+
+    private LocalStandInServer server;
+    private final List<Throwable> logged = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new LocalStandInServer();
+        server.setLogger((message, error) -> {
+            synchronized (logged) {
+                logged.add(error);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    // Raw request, so the headers can be anything; returns the status line
+    private String send(String contentLength, byte[] body, boolean gzipped) throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            String head = "POST " + GENERATE + " HTTP/1.1\r\nHost: localhost\r\n"
+                    + (contentLength != null ? "Content-Length: " + contentLength + "\r\n" : "")
+                    + (gzipped ? "Content-Encoding: gzip\r\n" : "") + "\r\n";
+            out.write(head.getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.flush();
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int c;
+            while ((c = in.read()) != -1 && c != '\n') {
+                line.write(c);
+            }
+            return line.toString("US-ASCII").trim();
+        }
+    }
+
+    private String sendTurn() throws IOException {
+        byte[] body = TURN.getBytes(StandardCharsets.UTF_8);
+        return send(String.valueOf(body.length), body, false);
+    }
+
+    @Test
+    public void answersAWellFormedTurn() throws IOException {
+        assertEquals("HTTP/1.1 200 OK", sendTurn());
+    }
+
+    @Test
+    public void malformedContentLengthIsABadRequest() throws IOException {
+        assertEquals("HTTP/1.1 400 Bad Request", send("twelve", new byte[0], false));
+        assertEquals("HTTP/1.1 400 Bad Request", send("-5", new byte[0], false));
+        assertEquals("HTTP/1.1 200 OK", sendTurn());
+    }
+
+    @Test
+    public void hugeContentLengthIsRefusedWithoutAllocating() throws IOException {
+        assertEquals("HTTP/1.1 413 Payload Too Large", send("2147483647", new byte[0], false));
+        assertEquals("HTTP/1.1 413 Payload Too Large", send("99999999999999", new byte[0], false));
+        assertEquals("HTTP/1.1 200 OK", sendTurn());
+    }
+
+    @Test
+    public void gzipBombIsRefused() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            byte[] zeros = new byte[1024 * 1024];
+            for (int i = 0; i < 16; i++) {
+                gzip.write(zeros);
+            }
+        }
+        byte[] body = compressed.toByteArray();
+        assertEquals("HTTP/1.1 413 Payload Too Large", send(String.valueOf(body.length), body, true));
+    }
+
+    @Test
+    public void garbageBodyIsLoggedNotThrown() throws IOException {
+        byte[] body = "not gzip".getBytes(StandardCharsets.US_ASCII);
+        // The worker logs the failure and closes the connection without an answer
+        assertEquals("", send(String.valueOf(body.length), body, true));
+        assertEquals("HTTP/1.1 200 OK", sendTurn());
+        synchronized (logged) {
+            assertTrue(logged.size() >= 1);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.speechapp;
+
+import java.util.Random;
+
+/** Small synthetic 16 kHz PCM clips for the audio tests, built from fixed seeds. */
+final class PcmFixtures {
+    // The capture format of AudioCaptureStage: 16 kHz mono, 20 ms frames
+    static final int SAMPLE_RATE = 16000;
+    static final int FRAME = SAMPLE_RATE / 50;
+
+    private PcmFixtures() {
+    }
+
+    /** Room tone around -69 dBFS. */
+    static short[] silence(int frames, long seed) {
+        return noise(frames, 20, seed);
+    }
+
+    /** Wideband noise crossing zero about every other sample. */
+    static short[] noise(int frames, int amplitude, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[frames * FRAME];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (random.nextInt(2 * amplitude + 1) - amplitude);
+        }
+        return samples;
+    }
+
+    /** A voiced vowel: 150 Hz with two harmonics, around -20 dBFS. */
+    static short[] voice(int frames) {
+        short[] samples = new short[frames * FRAME];
+        for (int i = 0; i < samples.length; i++) {
+            double t = 2 * Math.PI * 150 * i / SAMPLE_RATE;
+            samples[i] = (short) (4000 * Math.sin(t) + 1500 * Math.sin(2 * t) + 700 * Math.sin(3 * t));
+        }
+        return samples;
+    }
+
+    static short[] concat(short[]... clips) {
+        int length = 0;
+        for (short[] clip : clips) {
+            length += clip.length;
+        }
+        short[] samples = new short[length];
+        int at = 0;
+        for (short[] clip : clips) {
+            System.arraycopy(clip, 0, samples, at, clip.length);
+            at += clip.length;
+        }
+        return samples;
+    }
+}
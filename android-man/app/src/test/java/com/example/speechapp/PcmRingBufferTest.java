@@ -0,0 +1,93 @@
+package com.example.speechapp;
+
+import static com.example.speechapp.PcmFixtures.FRAME;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class PcmRingBufferTest {
+    private static short[] ramp(int from, int length) {
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (short) (from + i);
+        }
+        return samples;
+    }
+
+    @Test
+    public void readsOldestFirstBeforeFilling() {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        buffer.write(ramp(0, 5), 0, 5);
+        short[] dest = new short[8];
+        assertEquals(5, buffer.read(dest));
+        assertArrayEquals(ramp(0, 5), Arrays.copyOf(dest, 5));
+    }
+
+    @Test
+    public void keepsTheNewestSamplesAcrossTheWrap() {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        buffer.write(ramp(0, 5), 0, 5);
+        buffer.write(ramp(5, 6), 0, 6);
+        short[] dest = new short[8];
+        assertEquals(8, buffer.read(dest));
+        assertArrayEquals(ramp(3, 8), dest);
+        assertEquals(8, buffer.size());
+    }
+
+    @Test
+    public void writeLargerThanTheBufferKeepsItsTail() {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        buffer.write(ramp(0, 3), 0, 3);
+        buffer.write(ramp(100, 20), 0, 20);
+        short[] dest = new short[8];
+        assertEquals(8, buffer.read(dest));
+        assertArrayEquals(ramp(112, 8), dest);
+    }
+
+    @Test
+    public void smallerDestinationGetsTheNewestSamples() {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        buffer.write(ramp(0, 10), 0, 10);
+        short[] dest = new short[3];
+        assertEquals(3, buffer.read(dest));
+        assertArrayEquals(ramp(7, 3), dest);
+    }
+
+    @Test
+    public void clearEmptiesTheBuffer() {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        buffer.write(ramp(0, 10), 0, 10);
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.read(new short[8]));
+    }
+
+    // What AudioCaptureStage does: the ring runs ahead of the VAD, so the words that
+    // triggered it are still buffered when speech is detected
+    @Test
+    public void preRollHoldsTheSpeechOnset() {
+        // 500 ms, the pre-roll AudioCaptureStage keeps
+        PcmRingBuffer preRoll = new PcmRingBuffer(PcmFixtures.SAMPLE_RATE / 2);
+        VoiceActivityDetector vad = new VoiceActivityDetector();
+        short[] silence = PcmFixtures.silence(50, 12);
+        short[] clip = PcmFixtures.concat(silence, PcmFixtures.voice(10));
+
+        short[] copy = new short[preRoll.capacity()];
+        int count = -1;
+        for (int frame = 0; frame * FRAME < clip.length; frame++) {
+            preRoll.write(clip, frame * FRAME, FRAME);
+            if (vad.process(clip, frame * FRAME, FRAME) == VoiceActivityDetector.EVENT_SPEECH_START) {
+                count = preRoll.read(copy);
+                break;
+            }
+        }
+
+        // 500 ms of audio, ending with the three voiced frames that started the utterance
+        assertEquals(8000, count);
+        int onset = count - 3 * FRAME;
+        assertArrayEquals(Arrays.copyOfRange(clip, silence.length - onset, silence.length + 3 * FRAME), copy);
+        assertArrayEquals(PcmFixtures.voice(3), Arrays.copyOfRange(copy, onset, count));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.speechapp;
+
+import java.util.Arrays;
+
+/**
+ * Lookup latency of PhoneticMatcher against the crowded fixture index of PhoneticMatcherTest.
+ * A desktop JVM entry point in the test source set, not a unit test:
+ *
+ *   java -cp <test classes>:<main classes> com.example.speechapp.PhoneticMatcherBenchmark [decoys]
+ */
+public class PhoneticMatcherBenchmark {
+    public static void main(String[] args) {
+        int decoys = args.length > 0 ? Integer.parseInt(args[0]) : PhoneticMatcherTest.DECOYS;
+        PhoneticMatcher.Index<String> index = PhoneticMatcherTest.crowdedIndex(decoys);
+        System.out.println("Index: " + index.size() + " phrases (" + decoys + " decoys)");
+
+        // Warm up, then time unfiltered lookups so every decoy is a real candidate
+        String[] queries = new String[PhoneticMatcherTest.FIXTURES.length];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = PhoneticMatcherTest.FIXTURES[i][0];
+        }
+        for (int i = 0; i < 20000; i++) {
+            index.lookup(queries[i % queries.length], value -> true);
+        }
+        int runs = 20000;
+        long[] nanos = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long startedAt = System.nanoTime();
+            index.lookup(queries[i % queries.length], value -> true);
+            nanos[i] = System.nanoTime() - startedAt;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("Lookup: p50 %.1f µs, p95 %.1f µs, p99 %.1f µs, max %.1f µs%n",
+                nanos[runs / 2] / 1000.0, nanos[runs * 95 / 100] / 1000.0,
+                nanos[runs * 99 / 100] / 1000.0, nanos[runs - 1] / 1000.0);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.speechapp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Accuracy fixtures for PhoneticMatcher. Every fixture is a recognizer spelling and the
+ * answer it must resolve to, or null when it must not match anything. The index holds the
+ * answers, their native-script aliases and synthetic name-like decoys, so lookups run
+ * against a realistically crowded index. PhoneticMatcherBenchmark times the same lookups.
+ */
+public class PhoneticMatcherTest {
+    static final String[] ANSWERS = {
+        "new delhi", "delhi", "mumbai", "kolkata", "chennai", "bengaluru", "mysuru", "hyderabad", "agra",
+        "porbandar", "gangotri", "kerala", "karnataka", "mars", "jupiter", "saturn", "mercury", "ganga",
+        "rabindranath tagore", "jawaharlal nehru", "abdul kalam", "kuvempu", "carbon dioxide", "diamond",
+        "sitar", "tabla", "peacock", "tiger", "mount everest", "leonardo da vinci", "michelangelo", "france",
+        "7", "12", "206",
+    };
+
+    // Per-answer aliases, indexed under the answer they stand for
+    static final String[][] ALIASES = {
+        {"ಬೆಂಗಳೂರು", "bengaluru"},
+        {"ಕುವೆಂಪು", "kuvempu"},
+        {"హైదరాబాద్", "hyderabad"},
+        {"पोरबंदर", "porbandar"},
+    };
+
+    static final String[][] FIXTURES = {
+        // Recognizer and transliteration spellings
+        {"dilli", "delhi"},
+        {"dehli", "delhi"},
+        {"dilly", "delhi"},
+        {"nyu delhi", "new delhi"},
+        {"newdelhi", "new delhi"},
+        {"bangalore", "bengaluru"},
+        {"bengalooru", "bengaluru"},
+        {"mysore", "mysuru"},
+        {"haidrabad", "hyderabad"},
+        {"hyderbad", "hyderabad"},
+        {"kolkatta", "kolkata"},
+        {"chenai", "chennai"},
+        {"mumbay", "mumbai"},
+        {"aagra", "agra"},
+        {"porbander", "porbandar"},
+        {"gangotri", "gangotri"},
+        {"kerela", "kerala"},
+        {"karnatak", "karnataka"},
+        {"marz", "mars"},
+        {"jupitar", "jupiter"},
+        {"satarn", "saturn"},
+        {"mercuri", "mercury"},
+        {"gunga", "ganga"},
+        {"ravindranath tagore", "rabindranath tagore"},
+        {"rabindranath thakur", "rabindranath tagore"},
+        {"jawahar lal nehru", "jawaharlal nehru"},
+        {"abdul kalaam", "abdul kalam"},
+        {"kuvempu", "kuvempu"},
+        {"carbon di oxide", "carbon dioxide"},
+        {"dimond", "diamond"},
+        {"sitaar", "sitar"},
+        {"peacok", "peacock"},
+        {"taiger", "tiger"},
+        {"mount everast", "mount everest"},
+        {"leonardo davinci", "leonardo da vinci"},
+        {"michael angelo", "michelangelo"},
+        {"frans", "france"},
+        // Native script against Latin answers and the other way round
+        {"दिल्ली", "delhi"},
+        {"आगरा", "agra"},
+        {"बेंगलुरु", "bengaluru"},
+        {"ಕುವೆಂಪು", "kuvempu"},
+        {"ಮೈಸೂರು", "mysuru"},
+        {"హైదరాబాదు", "hyderabad"},
+        {"पोरबन्दर", "porbandar"},
+        // Must not match
+        {"7", "7"},
+        {"8", null},
+        {"201", null},
+        {"paris", null},
+        {"london", null},
+        {"venus", null},
+        {"lion", null},
+        {"i", null},
+        {"ok", null},
+        {"capital", null},
+        // A real near-homophone: "tabla" heard as "table" should still land on it
+        {"table", "tabla"},
+    };
+
+    static final int DECOYS = 5000;
+
+    static PhoneticMatcher.Index<String> crowdedIndex(int decoys) {
+        PhoneticMatcher.Index<String> index = new PhoneticMatcher.Index<>();
+        for (String answer : ANSWERS) {
+            index.add(answer, answer);
+        }
+        for (String[] alias : ALIASES) {
+            index.add(alias[0], alias[1]);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < decoys; i++) {
+            String decoy = decoy(random);
+            index.add(decoy, "decoy:" + decoy);
+        }
+        return index;
+    }
+
+    @Test
+    public void fixturesResolveToTheirAnswers() {
+        PhoneticMatcher.Index<String> index = crowdedIndex(DECOYS);
+        List<String> failures = new ArrayList<>();
+        for (String[] fixture : FIXTURES) {
+            String expected = fixture[1];
+            List<PhoneticMatcher.Match<String>> matches = index.lookup(fixture[0],
+                    value -> !value.startsWith("decoy:"));
+            String actual = matches.isEmpty() ? null : matches.get(0).value;
+            if (expected == null ? actual != null : !expected.equals(actual)) {
+                failures.add(fixture[0] + ": expected " + expected + ", got " + actual
+                        + " (key " + PhoneticMatcher.key(fixture[0]) + ", code "
+                        + PhoneticMatcher.code(PhoneticMatcher.key(fixture[0])) + ")");
+            }
+        }
+        assertEquals("", String.join("\n", failures));
+    }
+
+    // Pronounceable consonant-vowel strings of place-name length
+    private static String decoy(Random random) {
+        String consonants = "bcdfghjklmnprstvy";
+        String vowels = "aeiou";
+        int syllables = 2 + random.nextInt(3);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            sb.append(consonants.charAt(random.nextInt(consonants.length())));
+            sb.append(vowels.charAt(random.nextInt(vowels.length())));
+            if (random.nextInt(4) == 0) {
+                sb.append(consonants.charAt(random.nextInt(consonants.length())));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.speechapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class QuizBankTest {
+    @Test
+    public void everyDeckLoadsWithItsPhrases() throws Exception {
+        QuizBank bank = QuizFixtures.bank();
+        for (String language : new String[] {"english", "hinglish", "kannada", "telugu"}) {
+            QuizBank.Deck deck = bank.deck(language);
+            assertEquals(language, deck.language);
+            assertFalse(deck.questions.isEmpty());
+            assertTrue(deck.phrases.correct.length > 0);
+            assertTrue(deck.phrases.answerIs.contains("%s"));
+        }
+    }
+
+    @Test
+    public void hindiSharesTheEnglishDeck() throws Exception {
+        assertEquals("english", QuizFixtures.bank().deck("hindi").language);
+    }
+
+    @Test
+    public void firstAcceptedAnswerIsTheOneShown() throws Exception {
+        QuizBank.Question question = QuizFixtures.question(QuizFixtures.bank().deck("english"),
+                "What is the capital of India?");
+        assertEquals("New Delhi", question.answer);
+        assertTrue(question.accepted.contains("delhi"));
+        assertTrue(question.wrong.contains("mumbai"));
+        assertFalse(question.numeric);
+    }
+
+    @Test
+    public void normalizeFoldsCaseArticlesAndNumberWords() {
+        assertEquals("heart", QuizBank.normalize("The Heart."));
+        assertEquals("7", QuizBank.normalize("Seven"));
+        assertEquals("0 degrees", QuizBank.normalize("zero degrees"));
+        assertEquals("its mars", QuizBank.normalize("It's Mars!"));
+        assertEquals("ನವ ದೆಹಲಿ", QuizBank.normalize("  ನವ   ದೆಹಲಿ "));
+    }
+}
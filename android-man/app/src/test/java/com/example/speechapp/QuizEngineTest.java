@@ -0,0 +1,115 @@
+package com.example.speechapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class QuizEngineTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static QuizEngine.Verdict grade(String language, String question, String input) throws Exception {
+        QuizBank.Deck deck = QuizFixtures.bank().deck(language);
+        return QuizEngine.grade(deck, QuizFixtures.question(deck, question), input);
+    }
+
+    private static QuizEngine.Verdict grade(String question, String input) throws Exception {
+        return grade("english", question, input);
+    }
+
+    @Test
+    public void acceptedAnswersAreCorrect() throws Exception {
+        assertEquals(QuizEngine.Verdict.CORRECT, grade("What is the capital of India?", "New Delhi"));
+        assertEquals(QuizEngine.Verdict.CORRECT, grade("What is the capital of India?", "delhi"));
+        assertEquals(QuizEngine.Verdict.CORRECT, grade("Which organ pumps blood through the body?", "The heart."));
+        assertEquals(QuizEngine.Verdict.CORRECT, grade("Which planet is known as the Red Planet?", "I think it's Mars"));
+    }
+
+    @Test
+    public void knownWrongAnswersAreIncorrect() throws Exception {
+        assertEquals(QuizEngine.Verdict.INCORRECT, grade("What is the capital of India?", "Mumbai"));
+        assertEquals(QuizEngine.Verdict.INCORRECT, grade("Which planet is known as the Red Planet?", "it is Jupiter"));
+        assertEquals(QuizEngine.Verdict.INCORRECT, grade("Who painted the Mona Lisa?", "Picasso"));
+    }
+
+    @Test
+    public void misspelledAliasesAreMatchedPhonetically() throws Exception {
+        assertEquals(QuizEngine.Verdict.CORRECT, grade("What is the capital of India?", "Dilli"));
+        assertEquals(QuizEngine.Verdict.CORRECT, grade("Who was the first Prime Minister of India?", "Nehroo"));
+        assertEquals(QuizEngine.Verdict.CORRECT, grade("Which state is called the Spice Garden of India?", "Kerela"));
+        assertEquals(QuizEngine.Verdict.INCORRECT, grade("What is the capital of India?", "Kolkatta"));
+    }
+
+    @Test
+    public void numbersGivenInWordsAreGradedAsNumbers() throws Exception {
+        assertEquals(QuizEngine.Verdict.CORRECT, grade("How many continents are there?", "seven"));
+        assertEquals(QuizEngine.Verdict.CORRECT, grade("What is the square root of 144?", "Twelve"));
+        assertEquals(QuizEngine.Verdict.CORRECT, grade("At what temperature in Celsius does water freeze?", "zero degrees"));
+        // A bare number for a numeric question is wrong without asking the model
+        assertEquals(QuizEngine.Verdict.INCORRECT, grade("How many continents are there?", "six"));
+        assertEquals(QuizEngine.Verdict.CORRECT, grade("hinglish", "Ek hafte mein kitne din hote hain?", "saat"));
+    }
+
+    @Test
+    public void hedgedOrMixedAnswersGoToTheModel() throws Exception {
+        assertEquals(QuizEngine.Verdict.UNDECIDED, grade("What is the capital of India?", "not Mumbai"));
+        assertEquals(QuizEngine.Verdict.UNDECIDED, grade("What is the capital of India?", "Delhi or Mumbai"));
+        assertEquals(QuizEngine.Verdict.UNDECIDED, grade("What is the capital of India?", ""));
+        assertEquals(QuizEngine.Verdict.UNDECIDED, grade("Who is known as the Missile Man of India?", "no idea"));
+    }
+
+    @Test
+    public void scriptAnswersInTheKannadaDeck() throws Exception {
+        assertEquals(QuizEngine.Verdict.CORRECT, grade("kannada", "ಕರ್ನಾಟಕದ ರಾಜಧಾನಿ ಯಾವುದು?", "ಬೆಂಗಳೂರು"));
+        assertEquals(QuizEngine.Verdict.CORRECT, grade("kannada", "ಕರ್ನಾಟಕದ ರಾಜಧಾನಿ ಯಾವುದು?", "Bangalore"));
+        assertEquals(QuizEngine.Verdict.INCORRECT, grade("kannada", "ಕರ್ನಾಟಕದ ರಾಜಧಾನಿ ಯಾವುದು?", "Mysore"));
+    }
+
+    @Test
+    public void roundAsksFromTheBankAndGradesLocally() throws Exception {
+        SeenQuestions seen = SeenQuestions.load(new File(folder.getRoot(), "seen"));
+        QuizEngine engine = new QuizEngine(QuizFixtures.bank(), seen);
+
+        JSONObject opening = new JSONObject(engine.start("english"));
+        String first = opening.getString("next_question");
+        assertEquals(first, engine.getCurrentQuestion());
+        assertTrue(seen.contains(first));
+
+        String answer = QuizFixtures.question(QuizFixtures.bank().deck("english"), first).answer;
+        JSONObject reply = new JSONObject(engine.answer(answer));
+        assertEquals("correct", reply.getString("evaluation"));
+        assertEquals(engine.getCurrentQuestion(), reply.getString("next_question"));
+
+        JSONObject skipped = new JSONObject(engine.skip());
+        assertEquals("skipped", skipped.getString("evaluation"));
+    }
+
+    @Test
+    public void undecidedAnswersAreLeftToTheModel() throws Exception {
+        QuizEngine engine = new QuizEngine(QuizFixtures.bank(),
+                SeenQuestions.load(new File(folder.getRoot(), "seen")));
+        engine.start("english");
+
+        assertNull(engine.answer("hmm, let me think about that one"));
+        assertNotNull(engine.getCurrentQuestion());
+    }
+
+    @Test
+    public void questionsSeenBeforeComeLast() throws Exception {
+        QuizBank.Deck deck = QuizFixtures.bank().deck("telugu");
+        SeenQuestions seen = SeenQuestions.load(new File(folder.getRoot(), "seen"));
+        for (QuizBank.Question question : deck.questions.subList(1, deck.questions.size())) {
+            seen.add(question.text);
+        }
+        QuizEngine engine = new QuizEngine(QuizFixtures.bank(), seen);
+
+        assertEquals(deck.questions.get(0).text, new JSONObject(engine.start("telugu")).getString("next_question"));
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.speechapp;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/** The app's own quiz_bank.json, read from the source tree so tests grade the shipped entries. */
+final class QuizFixtures {
+    // Unit tests run from the module directory
+    private static final String ASSET_PATH = "src/main/assets/" + QuizBank.ASSET_NAME;
+
+    private static QuizBank bank;
+
+    private QuizFixtures() {
+    }
+
+    static synchronized QuizBank bank() throws IOException {
+        if (bank == null) {
+            bank = QuizBank.parse(new String(Files.readAllBytes(Paths.get(ASSET_PATH)), StandardCharsets.UTF_8));
+        }
+        return bank;
+    }
+
+    static QuizBank.Question question(QuizBank.Deck deck, String text) {
+        for (QuizBank.Question question : deck.questions) {
+            if (question.text.equals(text)) return question;
+        }
+        throw new IllegalArgumentException("Not in the " + deck.language + " deck: " + text);
+    }
+}
@@ -0,0 +1,536 @@
+package com.example.speechapp;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.GzipSink;
+import okio.Okio;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Replays recorded conversations against LocalStandInServer under scripted server and
+ * network conditions, and reports turn latency percentiles, throughput, allocation and
+ * error rates, so a client-side change can be compared run against run. ReplayLoadTest
+ * runs short scenarios with the unit tests; main() takes options for a full run on a
+ * desktop JVM, with the test classpath:
+ *
+ *   java -cp <test classpath> com.example.speechapp.ReplayLoad [--users 8 --latency 200,900 --stream sse ...]
+ *
+ * GeminiAPI itself needs an Android runtime, so each simulated user sends its turns through
+ * the TurnPipeline GeminiAPI uses (link-shaped request and history window, ModelRouter with
+ * one failover on 429/5xx), with SystemPrompt, gzip bodies and the backend's wire format.
+ * The quiz bank and repeat suppression are left out; quiz turns all go to the model.
+ *
+ * --conversations takes JSON lines, {"mode": "chat" or "quiz", "language": ..., "turns": [...]}.
+ * Without it a built-in set covers both modes in every language.
+ */
+public class ReplayLoad {
+    private static final String USAGE = "Options: --users N --rounds N --warmup N --conversations FILE"
+            + " --backend gemini|openai --stream none|chunked|sse --latency MS[,MS...] --link-delay MS"
+            + " --bandwidth KB_PER_SECOND --chunks N --chunk-delay MS --fail429 RATE --fail5xx RATE --seed N";
+
+    private static final String[][] CHAT_TURNS = {
+        {"english", "Hi, how are you today?", "Can you suggest a good book for the weekend?",
+            "What is it about?", "Is there a movie of it?", "Thanks, talk to you later."},
+        {"hindi", "नमस्ते, आप कैसे हैं?", "मुझे एक अच्छी किताब बताइए", "वह किस बारे में है?",
+            "क्या उस पर फ़िल्म बनी है?", "धन्यवाद, फिर मिलते हैं"},
+        {"hinglish", "Hi yaar, kya haal hai?", "Weekend ke liye koi achhi book batao",
+            "Ye kis baare mein hai?", "Iski movie bhi bani hai kya?", "Thanks, baad mein baat karte hain"},
+        {"kannada", "ನಮಸ್ಕಾರ, ಹೇಗಿದ್ದೀರಿ?", "ಒಂದು ಒಳ್ಳೆಯ ಪುಸ್ತಕ ಹೇಳಿ", "ಅದು ಯಾವುದರ ಬಗ್ಗೆ?",
+            "ಅದರ ಸಿನಿಮಾ ಇದೆಯಾ?", "ಧನ್ಯವಾದಗಳು"},
+        {"telugu", "నమస్కారం, ఎలా ఉన్నారు?", "ఒక మంచి పుస్తకం చెప్పండి", "అది దేని గురించి?",
+            "దాని సినిమా ఉందా?", "ధన్యవాదాలు"},
+    };
+
+    // "next question" is GeminiAPI.NEXT_QUESTION_INPUT, the skip button's input
+    private static final String[][] QUIZ_TURNS = {
+        {"english", "start quiz", "New Delhi", "I think it is Mars", "next question", "seven", "Rabindranath Tagore"},
+        {"hindi", "start quiz", "दिल्ली", "मंगल", "next question", "सात", "रवींद्रनाथ टैगोर"},
+        {"hinglish", "start quiz", "mujhe lagta hai Delhi", "Mars hai na", "next question", "saat", "Tagore ji"},
+        {"kannada", "start quiz", "ದೆಹಲಿ", "ಮಂಗಳ", "next question", "ಏಳು", "ಕುವೆಂಪು"},
+        {"telugu", "start quiz", "ఢిల్లీ", "అంగారకుడు", "next question", "ఏడు", "హైదరాబాద్"},
+    };
+
+    static class Conversation {
+        final boolean quiz;
+        final String language;
+        final List<String> turns;
+
+        Conversation(boolean quiz, String language, List<String> turns) {
+            this.quiz = quiz;
+            this.language = language;
+            this.turns = turns;
+        }
+
+        String label() {
+            return (quiz ? "quiz" : "chat") + "/" + language;
+        }
+    }
+
+    static class Options {
+        int users = 4;
+        int rounds = 3;
+        int warmup = 1;
+        String conversations;
+        String backend = "gemini";
+        String stream = "none";
+        LocalStandInServer.Conditions conditions = new LocalStandInServer.Conditions();
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            LocalStandInServer.Conditions conditions = options.conditions;
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + args[i]);
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--users":
+                        options.users = Integer.parseInt(value);
+                        break;
+                    case "--rounds":
+                        options.rounds = Integer.parseInt(value);
+                        break;
+                    case "--warmup":
+                        options.warmup = Integer.parseInt(value);
+                        break;
+                    case "--conversations":
+                        options.conversations = value;
+                        break;
+                    case "--backend":
+                        options.backend = value;
+                        break;
+                    case "--stream":
+                        options.stream = value;
+                        break;
+                    case "--latency":
+                        String[] parts = value.split(",");
+                        conditions.latenciesMillis = new long[parts.length];
+                        for (int j = 0; j < parts.length; j++) {
+                            conditions.latenciesMillis[j] = Long.parseLong(parts[j].trim());
+                        }
+                        break;
+                    case "--link-delay":
+                        conditions.linkDelayMillis = Long.parseLong(value);
+                        break;
+                    case "--bandwidth":
+                        conditions.bytesPerSecond = Long.parseLong(value) * 1024;
+                        break;
+                    case "--chunks":
+                        conditions.chunks = Integer.parseInt(value);
+                        break;
+                    case "--chunk-delay":
+                        conditions.chunkDelayMillis = Long.parseLong(value);
+                        break;
+                    case "--fail429":
+                        conditions.rate429 = Double.parseDouble(value);
+                        break;
+                    case "--fail5xx":
+                        conditions.rate5xx = Double.parseDouble(value);
+                        break;
+                    case "--seed":
+                        conditions.seed = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (!Arrays.asList("none", "chunked", "sse").contains(options.stream)) {
+                throw new IllegalArgumentException("Unknown stream mode " + options.stream);
+            }
+            if (!options.backend.equals("gemini") && !options.backend.equals("openai")) {
+                throw new IllegalArgumentException("Unknown backend " + options.backend);
+            }
+            if (options.stream.equals("sse") && !options.backend.equals("gemini")) {
+                throw new IllegalArgumentException("SSE streaming needs the gemini backend");
+            }
+            conditions.chunked = options.stream.equals("chunked");
+            return options;
+        }
+
+        String describe() {
+            LocalStandInServer.Conditions c = conditions;
+            return "Conditions: latency " + Arrays.toString(c.latenciesMillis) + " ms, link delay "
+                    + c.linkDelayMillis + " ms, bandwidth "
+                    + (c.bytesPerSecond > 0 ? c.bytesPerSecond / 1024 + " KB/s" : "uncapped") + ", stream " + stream
+                    + (stream.equals("none") ? "" : " (" + c.chunks + " pieces, " + c.chunkDelayMillis + " ms apart)")
+                    + String.format(Locale.ROOT, ", faults %.1f%% 429 + %.1f%% 503, seed %d",
+                            c.rate429 * 100, c.rate5xx * 100, c.seed);
+        }
+    }
+
+    // Per user, so recording needs no locking; merged once the users are done
+    static class Stats {
+        final Map<String, Samples> latencies = new TreeMap<>();
+        final Samples all = new Samples();
+        final Samples firstByte = new Samples();
+        final Map<String, Integer> errors = new TreeMap<>();
+        int turns = 0;
+        int failovers = 0;
+        long requestBytes = 0;
+        long responseBytes = 0;
+        long allocatedBytes = 0;
+
+        void turn(String mode, long millis) {
+            latencies.computeIfAbsent(mode, key -> new Samples()).add(millis);
+            all.add(millis);
+        }
+
+        void error(String kind) {
+            errors.merge(kind, 1, Integer::sum);
+        }
+
+        void addAll(Stats other) {
+            for (Map.Entry<String, Samples> entry : other.latencies.entrySet()) {
+                latencies.computeIfAbsent(entry.getKey(), key -> new Samples()).addAll(entry.getValue());
+            }
+            all.addAll(other.all);
+            firstByte.addAll(other.firstByte);
+            for (Map.Entry<String, Integer> entry : other.errors.entrySet()) {
+                errors.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+            turns += other.turns;
+            failovers += other.failovers;
+            requestBytes += other.requestBytes;
+            responseBytes += other.responseBytes;
+            allocatedBytes += other.allocatedBytes;
+        }
+
+        int errorCount() {
+            int count = 0;
+            for (int n : errors.values()) {
+                count += n;
+            }
+            return count;
+        }
+    }
+
+    static class Samples {
+        long[] values = new long[64];
+        int count = 0;
+
+        void add(long value) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = value;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        String percentiles() {
+            if (count == 0) return "n=0";
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            return "n=" + count + " p50=" + percentile(sorted, 50) + " ms p90=" + percentile(sorted, 90)
+                    + " ms p95=" + percentile(sorted, 95) + " ms p99=" + percentile(sorted, 99)
+                    + " ms max=" + sorted[count - 1] + " ms";
+        }
+
+        private static long percentile(long[] sorted, int p) {
+            int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+
+    // One user's conversation state, kept the way GeminiAPI keeps it
+    private class Session {
+        final Conversation conversation;
+        final String systemPrompt;
+        final ConversationHistory history = new ConversationHistory();
+        final TurnPipeline pipeline = new TurnPipeline(history, linkEstimator, modelRouter);
+
+        Session(Conversation conversation, Stats stats) {
+            this.conversation = conversation;
+            this.systemPrompt = SystemPrompt.build(conversation.quiz, conversation.language);
+            pipeline.setListener(new TurnPipeline.Listener() {
+                @Override
+                public void onFailover(ModelRouter.Route route, String failedModel, HttpException e) {
+                    stats.failovers++;
+                }
+            });
+        }
+    }
+
+    private final Options options;
+    private final LinkEstimator linkEstimator = new LinkEstimator();
+    private final ModelRouter modelRouter = new ModelRouter();
+    private final OkHttpClient client;
+    private final LlmBackend backend;
+    private final boolean sse;
+    private final com.sun.management.ThreadMXBean threads;
+
+    ReplayLoad(Options options, LocalStandInServer server) {
+        this.options = options;
+        this.client = new OkHttpClient.Builder()
+                .eventListenerFactory(linkEstimator.listenerFactory())
+                .build();
+        this.backend = options.backend.equals("openai")
+                ? new OpenAiCompatibleBackend(server.getOpenAiBaseUrl(), null, null)
+                : new GeminiRestBackend("Local stand-in", server.getGeminiBaseUrl(), () -> "standin");
+        this.sse = options.stream.equals("sse");
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.threads = bean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        List<Conversation> conversations;
+        try {
+            options = Options.parse(args);
+            conversations = options.conversations != null ? load(options.conversations) : builtIn();
+        } catch (IllegalArgumentException | IOException | JSONException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        replay(options, conversations);
+    }
+
+    /** Runs the warm-up and the measured replay against a fresh stand-in server and prints the report. */
+    static Stats replay(Options options, List<Conversation> conversations) throws IOException, InterruptedException {
+        LocalStandInServer server = new LocalStandInServer();
+        server.setLogger((message, error) -> {
+            System.err.println(message);
+            if (error != null) error.printStackTrace();
+        });
+        server.setConditions(options.conditions);
+        server.start();
+        try {
+            // Warms the JIT; a fresh client, estimator and router then start the measured run clean
+            if (options.warmup > 0) {
+                new ReplayLoad(options, server).run(conversations, 1, options.warmup);
+            }
+            long gcCount = gcCount();
+            long gcMillis = gcMillis();
+            ReplayLoad replay = new ReplayLoad(options, server);
+            long startedAt = System.nanoTime();
+            Stats stats = replay.run(conversations, options.users, options.rounds);
+            double seconds = (System.nanoTime() - startedAt) / 1e9;
+            replay.report(stats, conversations.size(), seconds, gcCount() - gcCount, gcMillis() - gcMillis);
+            System.out.println(server.describe() + " (warm-up included)");
+            return stats;
+        } finally {
+            server.stop();
+        }
+    }
+
+    // Each user replays every conversation per round, starting at a different one, so the
+    // modes and languages are mixed at any moment
+    Stats run(List<Conversation> conversations, int users, int rounds) throws InterruptedException {
+        Stats[] perUser = new Stats[users];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[users];
+        for (int u = 0; u < users; u++) {
+            int user = u;
+            perUser[user] = new Stats();
+            workers[user] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int round = 0; round < rounds; round++) {
+                    for (int c = 0; c < conversations.size(); c++) {
+                        Session session = new Session(conversations.get((c + user) % conversations.size()),
+                                perUser[user]);
+                        for (String userInput : session.conversation.turns) {
+                            turn(session, userInput, perUser[user]);
+                        }
+                    }
+                }
+            }, "ReplayUser-" + user);
+            workers[user].start();
+        }
+        start.countDown();
+        Stats total = new Stats();
+        for (int u = 0; u < users; u++) {
+            workers[u].join();
+            total.addAll(perUser[u]);
+        }
+        return total;
+    }
+
+    private void turn(Session session, String userInput, Stats stats) {
+        long allocatedBefore = allocatedBytes();
+        long startedAt = System.nanoTime();
+        stats.turns++;
+        LlmRequest request = session.pipeline.newRequest(session.systemPrompt, userInput, userInput);
+        try {
+            String generatedText = session.pipeline.send(backend,
+                    TurnPipeline.classify(userInput, request, session.conversation.quiz), request,
+                    attempt -> execute(attempt, stats), () -> false);
+            long millis = (System.nanoTime() - startedAt) / 1_000_000;
+            stats.turn(session.conversation.label(), millis);
+            linkEstimator.recordTurn(request.linkProfile, millis);
+            session.history.record(userInput, generatedText);
+        } catch (HttpException e) {
+            stats.error("HTTP " + e.code);
+        } catch (IOException e) {
+            stats.error(e.getClass().getSimpleName());
+        } catch (JSONException e) {
+            stats.error("unparseable reply");
+        } catch (Exception e) {
+            stats.error(e.getClass().getSimpleName());
+        }
+        stats.allocatedBytes += allocatedBytes() - allocatedBefore;
+    }
+
+    private String execute(LlmRequest llmRequest, Stats stats) throws IOException, JSONException, HttpException {
+        Request request = backend.buildRequest(llmRequest);
+        if (llmRequest.compressBody && backend.acceptsCompressedRequests()) {
+            request = compress(request);
+        }
+        if (sse) {
+            // The same body, asked for as a stream of partial candidates
+            request = request.newBuilder()
+                    .url(request.url().toString().replace(":generateContent?", ":streamGenerateContent?alt=sse&"))
+                    .build();
+        }
+        stats.requestBytes += request.body().contentLength();
+
+        long sentAt = System.nanoTime();
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                byte[] body = response.body().bytes();
+                stats.responseBytes += body.length;
+                throw new HttpException(response.code(), new String(body, StandardCharsets.UTF_8));
+            }
+            if (sse) {
+                return readEvents(response.body().source(), sentAt, stats);
+            }
+            stats.firstByte.add((System.nanoTime() - sentAt) / 1_000_000);
+            byte[] body = response.body().bytes();
+            stats.responseBytes += body.length;
+            return backend.parseReply(new String(body, StandardCharsets.UTF_8));
+        }
+    }
+
+    // Joins the text of every event; first byte is taken at the first event
+    private String readEvents(BufferedSource source, long sentAt, Stats stats) throws IOException, JSONException {
+        StringBuilder text = new StringBuilder();
+        boolean first = true;
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            stats.responseBytes += line.getBytes(StandardCharsets.UTF_8).length + 2;
+            if (!line.startsWith("data:")) continue;
+            if (first) {
+                stats.firstByte.add((System.nanoTime() - sentAt) / 1_000_000);
+                first = false;
+            }
+            text.append(backend.parseReply(line.substring(5).trim()));
+        }
+        if (first) throw new JSONException("Stream ended without events");
+        return text.toString();
+    }
+
+    // As GeminiAPI.compress: gzipped up front, so the request keeps a Content-Length
+    private static Request compress(Request request) throws IOException {
+        RequestBody body = request.body();
+        Buffer compressed = new Buffer();
+        try (BufferedSink sink = Okio.buffer(new GzipSink(compressed))) {
+            body.writeTo(sink);
+        }
+        return request.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .post(RequestBody.create(compressed.readByteString(), body.contentType()))
+                .build();
+    }
+
+    private void report(Stats stats, int conversations, double seconds, long gcCount, long gcMillis) {
+        int errors = stats.errorCount();
+        System.out.println(String.format(Locale.ROOT, "Replay: %d users x %d rounds of %d conversations, %d turns in %.1f s (%s backend)",
+                options.users, options.rounds, conversations, stats.turns, seconds, options.backend));
+        System.out.println(options.describe());
+        System.out.println("Turn latency: " + stats.all.percentiles());
+        for (Map.Entry<String, Samples> entry : stats.latencies.entrySet()) {
+            System.out.println("  " + entry.getKey() + ": " + entry.getValue().percentiles());
+        }
+        System.out.println("First byte: " + stats.firstByte.percentiles());
+        System.out.println(String.format(Locale.ROOT, "Throughput: %.1f turns/s, sent %.1f KB/s, received %.1f KB/s",
+                (stats.turns - errors) / seconds, stats.requestBytes / 1024.0 / seconds,
+                stats.responseBytes / 1024.0 / seconds));
+        System.out.println(threads == null ? "Allocation: not measurable on this JVM"
+                : String.format(Locale.ROOT, "Allocation: %.1f KB per turn on the user threads; GC %d collections, %d ms",
+                        stats.allocatedBytes / 1024.0 / Math.max(1, stats.turns), gcCount, gcMillis));
+        System.out.println(String.format(Locale.ROOT, "Errors: %d of %d turns (%.1f%%), %d failovers",
+                errors, stats.turns, 100.0 * errors / Math.max(1, stats.turns), stats.failovers));
+        for (Map.Entry<String, Integer> entry : stats.errors.entrySet()) {
+            System.out.println("  " + entry.getKey() + ": " + entry.getValue());
+        }
+        System.out.println(linkEstimator.summary());
+        System.out.println(modelRouter.summary());
+    }
+
+    private long allocatedBytes() {
+        return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static List<Conversation> load(String file) throws IOException, JSONException {
+        List<Conversation> conversations = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            JSONObject json = new JSONObject(line);
+            JSONArray turns = json.getJSONArray("turns");
+            List<String> inputs = new ArrayList<>();
+            for (int i = 0; i < turns.length(); i++) {
+                inputs.add(turns.getString(i));
+            }
+            conversations.add(new Conversation(json.optString("mode", "chat").equals("quiz"),
+                    json.optString("language", "english"), inputs));
+        }
+        if (conversations.isEmpty()) throw new IOException("No conversations in " + file);
+        return conversations;
+    }
+
+    static List<Conversation> builtIn() {
+        List<Conversation> conversations = new ArrayList<>();
+        for (String[] turns : CHAT_TURNS) {
+            conversations.add(new Conversation(false, turns[0], Arrays.asList(turns).subList(1, turns.length)));
+        }
+        for (String[] turns : QUIZ_TURNS) {
+            conversations.add(new Conversation(true, turns[0], Arrays.asList(turns).subList(1, turns.length)));
+        }
+        return conversations;
+    }
+}
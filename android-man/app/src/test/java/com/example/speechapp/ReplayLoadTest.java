@@ -0,0 +1,81 @@
+package com.example.speechapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Short ReplayLoad scenarios against the local stand-in server, so a change that breaks
+ * the turn pipeline under load, streaming or server faults fails with the unit tests.
+ * Latencies are kept low; full runs go through ReplayLoad.main.
+ */
+public class ReplayLoadTest {
+    private static ReplayLoad.Stats replay(String... args) throws Exception {
+        return ReplayLoad.replay(ReplayLoad.Options.parse(args), ReplayLoad.builtIn());
+    }
+
+    private static int turnsPerRound() {
+        int turns = 0;
+        for (ReplayLoad.Conversation conversation : ReplayLoad.builtIn()) {
+            turns += conversation.turns.size();
+        }
+        return turns;
+    }
+
+    @Test
+    public void everyTurnIsAnsweredOnACleanLink() throws Exception {
+        ReplayLoad.Stats stats = replay("--users", "2", "--rounds", "1", "--warmup", "0", "--latency", "5,20");
+
+        assertEquals(2 * turnsPerRound(), stats.turns);
+        assertEquals(stats.errors.toString(), 0, stats.errorCount());
+        assertEquals(stats.turns, stats.all.count);
+        assertEquals(0, stats.failovers);
+    }
+
+    @Test
+    public void streamedRepliesAreJoined() throws Exception {
+        ReplayLoad.Stats stats = replay("--users", "1", "--rounds", "1", "--warmup", "0", "--stream", "sse",
+                "--chunks", "4");
+
+        assertEquals(stats.errors.toString(), 0, stats.errorCount());
+        assertEquals(stats.turns, stats.firstByte.count);
+    }
+
+    @Test
+    public void openAiBackendAnswersEveryTurn() throws Exception {
+        ReplayLoad.Stats stats = replay("--users", "1", "--rounds", "1", "--warmup", "0", "--backend", "openai",
+                "--stream", "chunked");
+
+        assertEquals(stats.errors.toString(), 0, stats.errorCount());
+        assertEquals(turnsPerRound(), stats.turns);
+    }
+
+    @Test
+    public void rateLimitedTurnsFailOver() throws Exception {
+        ReplayLoad.Stats stats = replay("--users", "2", "--rounds", "1", "--warmup", "0", "--fail429", "0.3",
+                "--seed", "7");
+
+        assertTrue(stats.failovers > 0);
+        // A turn only fails when its fallback is limited too
+        assertTrue(stats.errors.toString(), stats.errorCount() < stats.failovers);
+        for (String error : stats.errors.keySet()) {
+            assertEquals("HTTP 429", error);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sseNeedsTheGeminiBackend() {
+        ReplayLoad.Options.parse(new String[] {"--backend", "openai", "--stream", "sse"});
+    }
+
+    @Test
+    public void builtInSetCoversBothModesInEveryLanguage() {
+        List<ReplayLoad.Conversation> conversations = ReplayLoad.builtIn();
+        long quiz = conversations.stream().filter(conversation -> conversation.quiz).count();
+
+        assertEquals(10, conversations.size());
+        assertEquals(5, quiz);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.speechapp;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SeenQuestionsTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File file() {
+        return new File(folder.getRoot(), "seen_questions.bin");
+    }
+
+    @Test
+    public void exactRepeatIsSeen() {
+        SeenQuestions seen = SeenQuestions.load(file());
+        seen.add("What is the capital of India?");
+
+        assertTrue(seen.contains("What is the capital of India?"));
+        assertTrue(seen.contains("what is the CAPITAL of india"));
+        assertFalse(seen.contains("Which planet is known as the Red Planet?"));
+    }
+
+    @Test
+    public void rewordedRepeatIsSeen() {
+        SeenQuestions seen = SeenQuestions.load(file());
+        seen.add("What is the capital of France?");
+        seen.add("Who wrote the national anthem of India?");
+
+        assertTrue(seen.contains("Which city is the capital of France?"));
+        assertTrue(seen.contains("France ki capital kya hai?"));
+        assertTrue(seen.contains("Who was it that wrote India's national anthem?"));
+        assertFalse(seen.contains("What is the capital of Japan?"));
+    }
+
+    @Test
+    public void questionsThatDifferOnlyInANumberStayDistinct() {
+        SeenQuestions seen = SeenQuestions.load(file());
+        seen.add("What is 7 times 8?");
+
+        assertTrue(seen.contains("What is seven times 8?"));
+        assertFalse(seen.contains("What is 6 times 8?"));
+        assertFalse(seen.contains("What is 7 times 9?"));
+    }
+
+    @Test
+    public void storeSurvivesSaveAndLoad() {
+        SeenQuestions seen = SeenQuestions.load(file());
+        seen.add("What is the capital of India?");
+        seen.add("How many bones are there in the adult human body?");
+        seen.save();
+
+        SeenQuestions reloaded = SeenQuestions.load(file());
+        assertTrue(reloaded.contains("What is the capital of India?"));
+        assertTrue(reloaded.contains("How many bones does an adult human body have?"));
+        assertFalse(reloaded.contains("Which planet is closest to the Sun?"));
+    }
+
+    @Test
+    public void unreadableFileStartsEmpty() throws Exception {
+        Files.write(file().toPath(), new byte[] {0, 0, 0, 1, 0});
+
+        SeenQuestions seen = SeenQuestions.load(file());
+        assertFalse(seen.contains("What is the capital of India?"));
+        seen.add("What is the capital of India?");
+        assertTrue(seen.contains("What is the capital of India?"));
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.speechapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.junit.Test;
+
+public class SpeechOutputStageTest {
+    /** Records what is queued; the test decides when utterances start and finish. */
+    private static class FakeSpeechEngine implements SpeechEngine {
+        final List<String> ids = new ArrayList<>();
+        final List<String> texts = new ArrayList<>();
+        int stops = 0;
+        Listener listener;
+
+        @Override
+        public void setListener(Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void setLanguage(Locale locale) {
+        }
+
+        @Override
+        public void enqueue(String utteranceId, String text) {
+            ids.add(utteranceId);
+            texts.add(text);
+        }
+
+        @Override
+        public void stop() {
+            stops++;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        void play(int index) {
+            listener.onUtteranceStart(ids.get(index));
+            listener.onUtteranceDone(ids.get(index));
+        }
+    }
+
+    private final FakeSpeechEngine engine = new FakeSpeechEngine();
+    private long nowNanos = 0;
+    private final SpeechOutputStage stage = new SpeechOutputStage(engine, () -> nowNanos);
+    private final List<Long> timesToFirstAudio = new ArrayList<>();
+
+    {
+        stage.setListener(timesToFirstAudio::add);
+    }
+
+    private void advanceMillis(long millis) {
+        nowNanos += millis * 1000000L;
+    }
+
+    @Test
+    public void firstSentencePlaysBeforeTheReplyEnds() {
+        stage.beginReply();
+        stage.append("Hello there. How are");
+        assertEquals(List.of("Hello there."), engine.texts);
+        stage.append(" you? Fine");
+        stage.endReply();
+        assertEquals(List.of("Hello there.", "How are you?", "Fine"), engine.texts);
+    }
+
+    @Test
+    public void terminatorAtTheEndWaitsForMoreText() {
+        stage.beginReply();
+        stage.append("Version 2.");
+        assertTrue(engine.texts.isEmpty());
+        stage.append("5 is out.");
+        stage.endReply();
+        assertEquals(List.of("Version 2.5 is out."), engine.texts);
+    }
+
+    @Test
+    public void timeToFirstAudioRunsFromBeginReplyToTheFirstStart() {
+        stage.beginReply();
+        advanceMillis(300);
+        stage.append("First sentence. Second");
+        advanceMillis(120);
+        engine.listener.onUtteranceStart(engine.ids.get(0));
+        stage.endReply();
+        advanceMillis(900);
+        engine.listener.onUtteranceStart(engine.ids.get(1));
+        assertEquals(List.of(420L), timesToFirstAudio);
+    }
+
+    @Test
+    public void bargeInStopsPlaybackAndDropsTheRest() {
+        stage.beginReply();
+        stage.append("One. Two three");
+        stage.bargeIn();
+        assertEquals(1, engine.stops);
+        // The stopped sentence starting late is not the reply's first audio
+        engine.listener.onUtteranceStart(engine.ids.get(0));
+        stage.endReply();
+        assertEquals(List.of("One."), engine.texts);
+        assertTrue(timesToFirstAudio.isEmpty());
+        assertFalse(stage.isSpeaking());
+    }
+
+    @Test
+    public void speakingUntilTheLastSentenceIsDone() {
+        assertFalse(stage.isSpeaking());
+        stage.speak("One. Two.");
+        assertTrue(stage.isSpeaking());
+        engine.play(0);
+        assertTrue(stage.isSpeaking());
+        engine.play(1);
+        assertFalse(stage.isSpeaking());
+    }
+
+    // The recognizer's start of speech fires on our own reply when the VAD isn't gating
+    @Test
+    public void recognizerBargeInIsIgnoredWhileSpeaking() {
+        stage.speak("A long answer.");
+        assertFalse(stage.bargeInUnlessSpeaking());
+        assertEquals(0, engine.stops);
+        engine.play(0);
+        assertTrue(stage.bargeInUnlessSpeaking());
+        assertEquals(1, engine.stops);
+    }
+
+    @Test
+    public void recognizerBargeInDropsAReplyNotYetSpoken() {
+        stage.beginReply();
+        stage.append("Still streaming");
+        assertTrue(stage.bargeInUnlessSpeaking());
+        stage.endReply();
+        assertTrue(engine.texts.isEmpty());
+    }
+
+    @Test
+    public void markdownIsNotReadOut() {
+        assertEquals("bold and code", SpeechOutputStage.cleanForSpeech("**bold** and `code`"));
+    }
+}
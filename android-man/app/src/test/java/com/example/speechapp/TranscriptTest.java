@@ -0,0 +1,115 @@
+package com.example.speechapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TranscriptTest {
+    // Applies edits the way the input field does, so offsets are checked against real text
+    private final StringBuilder field = new StringBuilder();
+    private final Transcript transcript = new Transcript();
+
+    private Transcript.Edit apply(Transcript.Edit edit) {
+        if (edit != null) {
+            field.replace(edit.start, edit.end, edit.text);
+        }
+        assertEquals(transcript.getRenderedText(), field.toString());
+        return edit;
+    }
+
+    @Test
+    public void growingPartialAppendsOnlyTheNewWords() {
+        apply(transcript.updatePartial("what is"));
+        Transcript.Edit edit = apply(transcript.updatePartial("what is the capital"));
+
+        assertEquals(8, edit.start);
+        assertEquals(8, edit.end);
+        assertEquals("the capital ", edit.text);
+    }
+
+    @Test
+    public void revisedWordIsReplacedInPlace() {
+        apply(transcript.updatePartial("the capital of in dia"));
+        Transcript.Edit edit = apply(transcript.updatePartial("the capital of India"));
+
+        assertEquals("the capital of ".length(), edit.start);
+        assertEquals("the capital of in dia ".length(), edit.end);
+        assertEquals("India ", edit.text);
+    }
+
+    @Test
+    public void wordInsertedInTheMiddleTouchesOnlyThatSpot() {
+        apply(transcript.updatePartial("capital of India"));
+        Transcript.Edit edit = apply(transcript.updatePartial("capital city of India"));
+
+        assertEquals("capital ".length(), edit.start);
+        assertEquals(edit.start, edit.end);
+        assertEquals("city ", edit.text);
+    }
+
+    @Test
+    public void unchangedPartialIsNoEdit() {
+        apply(transcript.updatePartial("hello there"));
+
+        assertNull(transcript.updatePartial("hello  there "));
+    }
+
+    @Test
+    public void commitSettlesTheFinalTextAndStartsANewTail() {
+        apply(transcript.updatePartial("hello their"));
+        Transcript.Edit edit = apply(transcript.commit("hello there"));
+
+        assertEquals("there ", edit.text);
+        assertEquals("", transcript.getPartialText());
+        // The next utterance is offset past the committed one
+        Transcript.Edit next = apply(transcript.updatePartial("how are you"));
+        assertEquals("hello there ".length(), next.start);
+        assertEquals("hello there how are you", transcript.getText());
+    }
+
+    @Test
+    public void emptyFinalTextKeepsTheLastPartial() {
+        apply(transcript.updatePartial("good morning"));
+
+        assertNull(transcript.commit("  "));
+        assertEquals("good morning", transcript.getText());
+        assertEquals("", transcript.getPartialText());
+    }
+
+    @Test
+    public void commitPartialKeepsTheTailWhenASessionEndsWithoutResults() {
+        apply(transcript.updatePartial("one two"));
+        transcript.commitPartial();
+        apply(transcript.updatePartial("three"));
+
+        assertEquals("one two three", transcript.getText());
+        assertEquals("three", transcript.getPartialText());
+        // Committed words are no longer revised by later partials
+        Transcript.Edit edit = apply(transcript.updatePartial("four"));
+        assertEquals("one two ".length(), edit.start);
+    }
+
+    @Test
+    public void resetStartsOverWithAHigherRevision() {
+        Transcript.Edit first = apply(transcript.updatePartial("first words"));
+        transcript.reset();
+        field.setLength(0);
+
+        assertTrue(transcript.getRevision() > first.revision);
+        assertEquals("", transcript.getRenderedText());
+        Transcript.Edit edit = apply(transcript.updatePartial("again"));
+        assertEquals(0, edit.start);
+        assertTrue(edit.revision > first.revision);
+    }
+
+    @Test
+    public void revisionsCountEveryEdit() {
+        Transcript.Edit a = apply(transcript.updatePartial("a"));
+        Transcript.Edit b = apply(transcript.updatePartial("a b"));
+
+        assertEquals(a.revision + 1, b.revision);
+        assertEquals(b.revision, transcript.getRevision());
+    }
+}
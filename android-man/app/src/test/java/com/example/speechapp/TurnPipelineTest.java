@@ -0,0 +1,208 @@
+package com.example.speechapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import okhttp3.Request;
+import org.junit.Test;
+
+public class TurnPipelineTest {
+    private static class FakeBackend implements LlmBackend {
+        private final boolean routing;
+
+        FakeBackend(boolean routing) {
+            this.routing = routing;
+        }
+
+        @Override
+        public String getName() {
+            return "Fake";
+        }
+
+        @Override
+        public boolean isConfigured() {
+            return true;
+        }
+
+        @Override
+        public boolean supportsAudio() {
+            return true;
+        }
+
+        @Override
+        public boolean supportsModelRouting() {
+            return routing;
+        }
+
+        @Override
+        public Request buildRequest(LlmRequest request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String parseReply(String responseBody) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final ConversationHistory history = new ConversationHistory();
+    private final LinkEstimator linkEstimator = new LinkEstimator();
+    private final ModelRouter modelRouter = new ModelRouter();
+    private final TurnPipeline pipeline = new TurnPipeline(history, linkEstimator, modelRouter);
+
+    private void recordTurns(int count) {
+        for (int i = 1; i <= count; i++) {
+            history.record("question " + i, "answer " + i);
+        }
+    }
+
+    @Test
+    public void goodLinkSendsTheWholeHistory() {
+        recordTurns(8);
+        LlmRequest request = pipeline.newRequest("prompt", "hello", "hello");
+
+        assertEquals(LinkEstimator.Profile.GOOD, request.linkProfile);
+        assertEquals("prompt", request.systemPrompt);
+        assertTrue(request.history.startsWith("Previous conversation:\nquestion 1\nanswer 1\n"));
+        assertTrue(request.history.endsWith("question 8\nanswer 8\n\n"));
+        assertEquals(LlmRequest.DEFAULT_MAX_OUTPUT_TOKENS, request.maxOutputTokens);
+        assertFalse(request.compressBody);
+    }
+
+    @Test
+    public void poorLinkShrinksTheHistoryWindowAndBudget() {
+        recordTurns(8);
+        linkEstimator.addFailure();
+        LlmRequest request = pipeline.newRequest("prompt", "hello", "hello");
+
+        assertEquals(LinkEstimator.Profile.POOR, request.linkProfile);
+        assertEquals("Previous conversation:\nquestion 7\nanswer 7\n\nquestion 8\nanswer 8\n\n", request.history);
+        assertEquals(LinkEstimator.Profile.POOR.maxOutputTokens, request.maxOutputTokens);
+        assertTrue(request.compressBody);
+    }
+
+    @Test
+    public void quizStartLeavesTheHistoryOut() {
+        recordTurns(3);
+        LlmRequest request = pipeline.newRequest("prompt", TurnPipeline.START_QUIZ_INPUT, "start quiz");
+
+        assertNull(request.history);
+    }
+
+    @Test
+    public void classifiesByInputAndMode() {
+        LlmRequest request = new LlmRequest("prompt", "text");
+        assertEquals(ModelRouter.RequestClass.QUIZ_START, TurnPipeline.classify("start quiz", request, true));
+        assertEquals(ModelRouter.RequestClass.QUIZ_ANSWER, TurnPipeline.classify("Delhi", request, true));
+        assertEquals(ModelRouter.RequestClass.CHAT, TurnPipeline.classify("Delhi", request, false));
+        request.audio = new byte[1];
+        assertEquals(ModelRouter.RequestClass.AUDIO, TurnPipeline.classify("[audio]", request, false));
+    }
+
+    @Test
+    public void routedRequestGetsTheModelAndTheSmallerBudget() throws Exception {
+        LlmRequest request = pipeline.newRequest("prompt", "Delhi", "Delhi");
+        List<String> models = new ArrayList<>();
+
+        String reply = pipeline.send(new FakeBackend(true), ModelRouter.RequestClass.QUIZ_ANSWER, request,
+                attempt -> {
+                    models.add(attempt.model);
+                    return "reply";
+                }, () -> false);
+
+        assertEquals("reply", reply);
+        assertEquals(List.of(ModelRouter.FLASH_LITE), models);
+        // The quiz answer budget is below the good link's
+        assertEquals(500, request.maxOutputTokens);
+    }
+
+    @Test
+    public void retryableErrorFailsOverOnce() throws Exception {
+        LlmRequest request = pipeline.newRequest("prompt", "hello", "hello");
+        List<String> models = new ArrayList<>();
+        List<String> failovers = new ArrayList<>();
+        pipeline.setListener(new TurnPipeline.Listener() {
+            @Override
+            public void onFailover(ModelRouter.Route route, String failedModel, HttpException e) {
+                failovers.add(failedModel + " " + e.code);
+            }
+        });
+
+        String reply = pipeline.send(new FakeBackend(true), ModelRouter.RequestClass.CHAT, request, attempt -> {
+            models.add(attempt.model);
+            if (attempt.model.equals(ModelRouter.FLASH)) throw new HttpException(429, "busy");
+            return "reply";
+        }, () -> false);
+
+        assertEquals("reply", reply);
+        assertEquals(List.of(ModelRouter.FLASH, ModelRouter.FLASH_LITE), models);
+        assertEquals(List.of(ModelRouter.FLASH + " 429"), failovers);
+    }
+
+    @Test
+    public void clientErrorIsNotRetried() throws Exception {
+        LlmRequest request = pipeline.newRequest("prompt", "hello", "hello");
+        List<String> models = new ArrayList<>();
+        try {
+            pipeline.send(new FakeBackend(true), ModelRouter.RequestClass.CHAT, request, attempt -> {
+                models.add(attempt.model);
+                throw new HttpException(400, "bad request");
+            }, () -> false);
+            fail("Expected the HTTP 400");
+        } catch (HttpException e) {
+            assertEquals(400, e.code);
+        }
+        assertEquals(1, models.size());
+    }
+
+    @Test
+    public void unroutedBackendHasNoFallback() throws Exception {
+        LlmRequest request = pipeline.newRequest("prompt", "hello", "hello");
+        List<String> models = new ArrayList<>();
+        try {
+            pipeline.send(new FakeBackend(false), ModelRouter.RequestClass.CHAT, request, attempt -> {
+                models.add(attempt.model);
+                throw new HttpException(503, "unavailable");
+            }, () -> false);
+            fail("Expected the HTTP 503");
+        } catch (HttpException e) {
+            assertEquals(503, e.code);
+        }
+        assertEquals(1, models.size());
+        assertNull(models.get(0));
+    }
+
+    private String failAndRouteNext(boolean cancelled) throws Exception {
+        for (int i = 0; i < 6; i++) {
+            LlmRequest request = pipeline.newRequest("prompt", "hello", "hello");
+            try {
+                pipeline.send(new FakeBackend(true), ModelRouter.RequestClass.CHAT, request, attempt -> {
+                    throw new HttpException(400, "bad request");
+                }, () -> cancelled);
+            } catch (HttpException expected) {
+            }
+        }
+        List<String> models = new ArrayList<>();
+        pipeline.send(new FakeBackend(true), ModelRouter.RequestClass.CHAT,
+                pipeline.newRequest("prompt", "hello", "hello"), attempt -> {
+                    models.add(attempt.model);
+                    return "reply";
+                }, () -> false);
+        return models.get(0);
+    }
+
+    @Test
+    public void failuresSteerTheNextRouteAway() throws Exception {
+        assertEquals(ModelRouter.FLASH_LITE, failAndRouteNext(false));
+    }
+
+    @Test
+    public void cancelledCallsSayNothingAboutTheModel() throws Exception {
+        assertEquals(ModelRouter.FLASH, failAndRouteNext(true));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.speechapp;
+
+import static com.example.speechapp.PcmFixtures.FRAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class VoiceActivityDetectorTest {
+    private final VoiceActivityDetector vad = new VoiceActivityDetector();
+
+    // Frame index and event, for every frame that produced one
+    private List<int[]> run(short[] clip) {
+        List<int[]> events = new ArrayList<>();
+        for (int frame = 0; frame * FRAME < clip.length; frame++) {
+            int event = vad.process(clip, frame * FRAME, FRAME);
+            if (event != VoiceActivityDetector.EVENT_NONE) {
+                events.add(new int[]{frame, event});
+            }
+        }
+        return events;
+    }
+
+    @Test
+    public void silenceNeverStartsSpeech() {
+        assertTrue(run(PcmFixtures.silence(100, 1)).isEmpty());
+        assertFalse(vad.isInSpeech());
+        // The floor follows the room tone down from its -60 dB start
+        assertTrue(vad.getNoiseFloorDb() < -65f);
+    }
+
+    @Test
+    public void speechStartsOnTheThirdVoicedFrame() {
+        List<int[]> events = run(PcmFixtures.concat(PcmFixtures.silence(25, 2), PcmFixtures.voice(10)));
+        assertEquals(1, events.size());
+        assertEquals(27, events.get(0)[0]);
+        assertEquals(VoiceActivityDetector.EVENT_SPEECH_START, events.get(0)[1]);
+        assertTrue(vad.isInSpeech());
+    }
+
+    @Test
+    public void blipShorterThanTheOnsetIsIgnored() {
+        short[] clip = PcmFixtures.concat(PcmFixtures.silence(25, 3), PcmFixtures.voice(2),
+                PcmFixtures.silence(25, 4));
+        assertTrue(run(clip).isEmpty());
+        assertFalse(vad.isInSpeech());
+    }
+
+    @Test
+    public void speechEndsAfterTheHangover() {
+        short[] clip = PcmFixtures.concat(PcmFixtures.silence(25, 5), PcmFixtures.voice(50),
+                PcmFixtures.silence(60, 6));
+        List<int[]> events = run(clip);
+        assertEquals(2, events.size());
+        assertEquals(VoiceActivityDetector.EVENT_SPEECH_END, events.get(1)[1]);
+        // 40 quiet frames (800 ms) after the last voiced one
+        assertEquals(25 + 50 + 40 - 1, events.get(1)[0]);
+    }
+
+    @Test
+    public void pauseShorterThanTheHangoverKeepsTheUtterance() {
+        short[] clip = PcmFixtures.concat(PcmFixtures.silence(25, 7), PcmFixtures.voice(20),
+                PcmFixtures.silence(30, 8), PcmFixtures.voice(20));
+        List<int[]> events = run(clip);
+        assertEquals(1, events.size());
+        assertEquals(VoiceActivityDetector.EVENT_SPEECH_START, events.get(0)[1]);
+        assertTrue(vad.isInSpeech());
+    }
+
+    @Test
+    public void moderateHissIsNotSpeech() {
+        // About -52 dBFS: over the energy threshold, but crossing zero like a fan does
+        short[] clip = PcmFixtures.concat(PcmFixtures.silence(25, 9), PcmFixtures.noise(50, 142, 10));
+        assertTrue(run(clip).isEmpty());
+        assertTrue(vad.getLastZeroCrossingRate() > 0.35f);
+    }
+
+    @Test
+    public void resetDropsAnUtteranceInProgress() {
+        run(PcmFixtures.concat(PcmFixtures.silence(25, 11), PcmFixtures.voice(10)));
+        assertTrue(vad.isInSpeech());
+        vad.reset();
+        assertFalse(vad.isInSpeech());
+        List<int[]> events = run(PcmFixtures.voice(3));
+        assertEquals(1, events.size());
+        assertEquals(2, events.get(0)[0]);
+    }
+}